@@ -1,10 +1,16 @@
 package tourbooking.vietvivu.configuration;
 
+import java.time.Duration;
+
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import tourbooking.vietvivu.service.outbound.OutboundGuard;
+import tourbooking.vietvivu.service.outbound.OutboundPolicy;
 import vn.payos.PayOS;
+import vn.payos.core.ClientOptions;
+import vn.payos.exception.APIException;
 
 @Configuration
 public class PayOSConfig {
@@ -17,8 +23,60 @@ public class PayOSConfig {
     @Value("${payos.checksum-key}")
     String checksumKey;
 
+    // The payos-stub profile (test classpath) points this at the local stand-in
+    @Value("${payos.base-url:https://api-merchant.payos.vn}")
+    private String baseUrl;
+
+    @Value("${payos.timeout-ms:5000}")
+    private int timeoutMs;
+
+    // Retries would run inside the caller's timeout; a failed link creation is retried by the customer
+    @Value("${payos.max-retries:0}")
+    private int maxRetries;
+
     @Bean
     public PayOS payOS() {
-        return new PayOS(clientId, apiKey, checksumKey);
+        return new PayOS(ClientOptions.builder()
+                .clientId(clientId)
+                .apiKey(apiKey)
+                .checksumKey(checksumKey)
+                .baseURL(baseUrl)
+                .timeoutMs(timeoutMs)
+                .maxRetries(maxRetries)
+                .build());
+    }
+
+    /**
+     * Limits on the calls to the PayOS API. Rejections of the request itself (4xx other than 429, or a
+     * non-"00" answer) say nothing about PayOS's health and do not count towards opening the circuit.
+     */
+    @Bean
+    public OutboundGuard payOSGuard(
+            @Value("${payos.outbound.max-concurrent:20}") int maxConcurrent,
+            @Value("${payos.outbound.acquire-timeout:PT0.1S}") Duration acquireTimeout,
+            @Value("${payos.outbound.failure-rate:50}") int failureRatePercent,
+            @Value("${payos.outbound.window:20}") int window,
+            @Value("${payos.outbound.minimum-calls:10}") int minimumCalls,
+            @Value("${payos.outbound.open-for:PT30S}") Duration openFor,
+            @Value("${payos.outbound.half-open-calls:3}") int halfOpenCalls) {
+        OutboundPolicy policy = new OutboundPolicy(
+                "payos",
+                maxConcurrent,
+                acquireTimeout,
+                Duration.ofMillis(timeoutMs),
+                failureRatePercent,
+                window,
+                minimumCalls,
+                openFor,
+                halfOpenCalls);
+        return new OutboundGuard(policy, PayOSConfig::isPayOSFailure);
+    }
+
+    private static boolean isPayOSFailure(Throwable error) {
+        if (error instanceof APIException api) {
+            int status = api.getStatusCode().orElse(500);
+            return status >= 500 || status == 429;
+        }
+        return true;
     }
 }
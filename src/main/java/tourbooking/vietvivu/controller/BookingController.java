@@ -1,7 +1,9 @@
 package tourbooking.vietvivu.controller;
 
+import java.time.LocalDate;
 import java.util.List;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -14,9 +16,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import tourbooking.vietvivu.dto.request.BookingRequest;
+import tourbooking.vietvivu.dto.request.BulkBookingRequest;
 import tourbooking.vietvivu.dto.response.ApiResponse;
 import tourbooking.vietvivu.dto.response.BookingResponse;
+import tourbooking.vietvivu.dto.response.BulkBookingResponse;
+import tourbooking.vietvivu.dto.response.CursorPage;
+import tourbooking.vietvivu.enumm.BookingStatus;
 import tourbooking.vietvivu.service.BookingService;
+import tourbooking.vietvivu.service.booking.BookingFilter;
+import tourbooking.vietvivu.service.bulk.BulkBookingService;
+import tourbooking.vietvivu.service.idempotency.IdempotencyService;
 
 @RestController
 @RequestMapping("/bookings")
@@ -26,6 +35,8 @@ import tourbooking.vietvivu.service.BookingService;
 public class BookingController {
 
     BookingService bookingService;
+    BulkBookingService bulkBookingService;
+    IdempotencyService idempotencyService;
 
     @GetMapping
     public ApiResponse<List<BookingResponse>> getMyBookings() {
@@ -34,14 +45,53 @@ public class BookingController {
                 .build();
     }
 
+    @GetMapping("/cursor")
+    public ApiResponse<CursorPage<BookingResponse>> getMyBookingsByCursor(
+            @RequestParam(required = false) BookingStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ApiResponse.<CursorPage<BookingResponse>>builder()
+                .result(bookingService.getMyBookingsByCursor(new BookingFilter(status, from, to), cursor, size))
+                .build();
+    }
+
     @PostMapping
-    ApiResponse<BookingResponse> bookTour(@RequestBody BookingRequest request) {
+    ApiResponse<BookingResponse> bookTour(
+            @RequestBody BookingRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         log.info("Received booking request: {}", request);
-        BookingResponse response = bookingService.bookTour(request);
+        BookingResponse response = idempotencyService.execute(
+                "POST /bookings",
+                idempotencyKey,
+                request,
+                BookingResponse.class,
+                () -> bookingService.bookTour(request));
         log.info("Booking successful: {}", response);
         return ApiResponse.<BookingResponse>builder().result(response).build();
     }
 
+    /**
+     * Group order, e.g. from a travel agency: up to {@value BulkBookingService#MAX_LINES} bookings across tours
+     */
+    @PostMapping("/bulk")
+    @PreAuthorize("isAuthenticated()")
+    public ApiResponse<BulkBookingResponse> bookInBulk(
+            @RequestBody BulkBookingRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        BulkBookingResponse response = idempotencyService.execute(
+                "POST /bookings/bulk",
+                idempotencyKey,
+                request,
+                BulkBookingResponse.class,
+                () -> bulkBookingService.book(request));
+        return ApiResponse.<BulkBookingResponse>builder()
+                .result(response)
+                .message("Booked " + response.getBooked() + " of " + response.getReceived() + " lines")
+                .build();
+    }
+
     @GetMapping("/user/{userId}")
     @PreAuthorize("hasRole('ADMIN')")
     public ApiResponse<List<BookingResponse>> getUserBookings(@PathVariable String userId) {
@@ -50,6 +100,21 @@ public class BookingController {
                 .build();
     }
 
+    @GetMapping("/user/{userId}/cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<CursorPage<BookingResponse>> getUserBookingsByCursor(
+            @PathVariable String userId,
+            @RequestParam(required = false) BookingStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        return ApiResponse.<CursorPage<BookingResponse>>builder()
+                .result(bookingService.getUserBookingsByCursor(
+                        userId, new BookingFilter(status, from, to), cursor, size))
+                .build();
+    }
+
     @GetMapping("/{bookingId}")
     public ApiResponse<BookingResponse> getBookingDetails(@PathVariable String bookingId) {
         return ApiResponse.<BookingResponse>builder()
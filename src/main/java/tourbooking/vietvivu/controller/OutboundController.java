@@ -0,0 +1,35 @@
+package tourbooking.vietvivu.controller;
+
+import java.util.List;
+
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import tourbooking.vietvivu.dto.response.ApiResponse;
+import tourbooking.vietvivu.dto.response.OutboundStatsResponse;
+import tourbooking.vietvivu.service.outbound.OutboundGuard;
+
+@RestController
+@RequestMapping("/outbound")
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OutboundController {
+
+    List<OutboundGuard> guards;
+
+    /**
+     * Circuit state, counters and latency percentiles of every outside dependency
+     */
+    @GetMapping("/stats")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<List<OutboundStatsResponse>> getStats() {
+        return ApiResponse.<List<OutboundStatsResponse>>builder()
+                .result(guards.stream().map(OutboundGuard::stats).toList())
+                .build();
+    }
+}
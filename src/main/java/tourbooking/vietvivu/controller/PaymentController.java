@@ -2,23 +2,40 @@ package tourbooking.vietvivu.controller;
 
 import java.util.Map;
 
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import lombok.RequiredArgsConstructor;
 import tourbooking.vietvivu.dto.request.PaymentRequest;
 import tourbooking.vietvivu.dto.request.PaymentSuccessRequest;
 import tourbooking.vietvivu.dto.response.ApiResponse;
 import tourbooking.vietvivu.dto.response.PaymentSuccessResponse;
+import tourbooking.vietvivu.dto.response.ReconciliationReport;
 import tourbooking.vietvivu.service.PaymentService;
+import tourbooking.vietvivu.service.idempotency.IdempotencyService;
+import tourbooking.vietvivu.service.payment.PaymentReconciliation;
+import tourbooking.vietvivu.service.payment.PaymentWebhookService;
+import vn.payos.model.webhooks.Webhook;
 
 @RestController
 @RequestMapping("/payment")
 @RequiredArgsConstructor
 public class PaymentController {
     private final PaymentService paymentService;
+    private final IdempotencyService idempotencyService;
+    private final PaymentWebhookService paymentWebhookService;
+    private final PaymentReconciliation paymentReconciliation;
 
     @PostMapping("/create")
     public ApiResponse<Map<String, Object>> createPayment(@RequestBody PaymentRequest req) throws Exception {
@@ -29,11 +46,49 @@ public class PaymentController {
     }
     ;
 
+    /**
+     * PayOS payment callback; answers once the event is verified and queued
+     */
+    @PostMapping("/payos-webhook")
+    public ApiResponse<Void> payOSWebhook(@RequestBody Webhook webhook) {
+        paymentWebhookService.accept(webhook);
+        return ApiResponse.<Void>builder().message("Webhook received").build();
+    }
+
     @PostMapping("/success")
-    public ApiResponse<PaymentSuccessResponse> paymentSuccess(@RequestBody PaymentSuccessRequest request) {
+    public ApiResponse<PaymentSuccessResponse> paymentSuccess(
+            @RequestBody PaymentSuccessRequest request,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
         return ApiResponse.<PaymentSuccessResponse>builder()
-                .result(paymentService.handlePaymentSuccess(request))
+                .result(idempotencyService.execute(
+                        "POST /payment/success",
+                        idempotencyKey,
+                        request,
+                        PaymentSuccessResponse.class,
+                        () -> paymentService.handlePaymentSuccess(request)))
                 .message("Payment success processed")
                 .build();
     }
+
+    @GetMapping("/reconciliation")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<ReconciliationReport> getReconciliationReport() {
+        return ApiResponse.<ReconciliationReport>builder()
+                .result(paymentReconciliation.latestReport())
+                .build();
+    }
+
+    @GetMapping("/reconciliation/{runId}/findings")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportReconciliationFindings(@PathVariable String runId) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/csv"))
+                .header(
+                        HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment()
+                                .filename("reconciliation-" + runId + ".csv")
+                                .build()
+                                .toString())
+                .body(paymentReconciliation.exportFindings(runId));
+    }
 }
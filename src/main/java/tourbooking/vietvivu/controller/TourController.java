@@ -1,15 +1,22 @@
 package tourbooking.vietvivu.controller;
 
+import java.io.InputStream;
 import java.time.LocalDate;
+import java.time.YearMonth;
 import java.util.List;
 
 import jakarta.validation.Valid;
 
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -19,10 +26,19 @@ import tourbooking.vietvivu.dto.request.TourCreateRequest;
 import tourbooking.vietvivu.dto.request.TourSearchRequest;
 import tourbooking.vietvivu.dto.request.TourUpdateRequest;
 import tourbooking.vietvivu.dto.response.*;
+import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.enumm.HotTourWindow;
 import tourbooking.vietvivu.enumm.TourStatus;
 import tourbooking.vietvivu.service.BookingService;
 import tourbooking.vietvivu.service.CloudinaryService;
 import tourbooking.vietvivu.service.TourService;
+import tourbooking.vietvivu.service.booking.BookingFilter;
+import tourbooking.vietvivu.service.bulk.TourBulkExporter;
+import tourbooking.vietvivu.service.bulk.TourBulkFormat;
+import tourbooking.vietvivu.service.bulk.TourBulkImporter;
+import tourbooking.vietvivu.service.catalog.ResourceVersion;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
+import tourbooking.vietvivu.service.inventory.SeatLedger;
 
 @RestController
 @RequestMapping("/tours")
@@ -34,6 +50,10 @@ public class TourController {
     TourService tourService;
     CloudinaryService cloudinaryService;
     BookingService bookingService;
+    TourBulkImporter tourBulkImporter;
+    TourBulkExporter tourBulkExporter;
+    SeatInventory seatInventory;
+    SeatLedger seatLedger;
 
     // ===== PUBLIC ENDPOINTS =====
 
@@ -54,10 +74,31 @@ public class TourController {
         }
     }
 
+    @GetMapping("/{tourId}/bookings/cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<CursorPage<BookingResponse>> getTourBookingsByCursor(
+            @PathVariable String tourId,
+            @RequestParam(required = false) BookingStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        log.info("GET /tours/{}/bookings/cursor - status={}, from={}, to={}, size={}", tourId, status, from, to, size);
+        return ApiResponse.<CursorPage<BookingResponse>>builder()
+                .result(bookingService.getBookingsByTourIdByCursor(
+                        tourId, new BookingFilter(status, from, to), cursor, size))
+                .build();
+    }
+
     @GetMapping
     public ApiResponse<PaginationResponse<TourResponse>> getAllToursPublic(
-            @RequestParam(defaultValue = "0") int page, @RequestParam(defaultValue = "10") int size) {
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            WebRequest webRequest) {
         log.info("GET /tours - Getting all public tours with pagination: page={}, size={}", page, size);
+        if (isNotModified(webRequest, tourService.getPublicToursVersion(page, size))) {
+            return null;
+        }
         try {
             PaginationResponse<TourResponse> result = tourService.getAllToursForPublic(page, size);
             log.info(
@@ -73,9 +114,33 @@ public class TourController {
         }
     }
 
+    @GetMapping("/cursor")
+    public ApiResponse<CursorPage<TourResponse>> getToursPublicByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("GET /tours/cursor - size={}, includeTotal={}", size, includeTotal);
+        return ApiResponse.<CursorPage<TourResponse>>builder()
+                .result(tourService.getToursForPublicByCursor(cursor, size, includeTotal))
+                .build();
+    }
+
+    @GetMapping("/hot")
+    public ApiResponse<List<TourResponse>> getHotTours(
+            @RequestParam(defaultValue = "ALL_TIME") HotTourWindow window,
+            @RequestParam(required = false) Integer limit) {
+        log.info("GET /tours/hot - window={}, limit={}", window, limit);
+        return ApiResponse.<List<TourResponse>>builder()
+                .result(tourService.getHotTours(window, limit))
+                .build();
+    }
+
     @GetMapping("/{tourId}")
-    public ApiResponse<TourResponse> getTourPublic(@PathVariable String tourId) {
+    public ApiResponse<TourResponse> getTourPublic(@PathVariable String tourId, WebRequest webRequest) {
         log.info("GET /tours/{} - Getting tour details", tourId);
+        if (isNotModified(webRequest, tourService.getTourVersion(tourId))) {
+            return null;
+        }
         try {
             TourResponse result = tourService.getTour(tourId);
             log.info("Successfully retrieved tour {}", tourId);
@@ -94,6 +159,7 @@ public class TourController {
             @RequestParam(required = false) Double maxPrice,
             @RequestParam(required = false) LocalDate startDate,
             @RequestParam(required = false) Integer durationDays,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth startMonth,
             @RequestParam(required = false) Integer minQuantity,
             @RequestParam(required = false) TourStatus tourStatus,
             @RequestParam(defaultValue = "0") int page,
@@ -117,6 +183,7 @@ public class TourController {
                     .maxPrice(maxPrice)
                     .startDate(startDate)
                     .durationDays(durationDays)
+                    .startMonth(startMonth)
                     .minQuantity(minQuantity)
                     .tourStatus(tourStatus)
                     .build();
@@ -132,6 +199,80 @@ public class TourController {
         }
     }
 
+    @GetMapping("/search/faceted")
+    public ApiResponse<TourFacetedSearchResponse> searchToursFaceted(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String destination,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) LocalDate startDate,
+            @RequestParam(required = false) Integer durationDays,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth startMonth,
+            @RequestParam(required = false) Integer minQuantity,
+            @RequestParam(required = false) TourStatus tourStatus,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size) {
+
+        log.info(
+                "GET /tours/search/faceted - keyword: {}, destination: {}, durationDays: {}, startMonth: {}, page: {}, size: {}",
+                keyword,
+                destination,
+                durationDays,
+                startMonth,
+                page,
+                size);
+
+        TourSearchRequest request = TourSearchRequest.builder()
+                .keyword(keyword)
+                .destination(destination)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .startDate(startDate)
+                .durationDays(durationDays)
+                .startMonth(startMonth)
+                .minQuantity(minQuantity)
+                .tourStatus(tourStatus)
+                .build();
+
+        return ApiResponse.<TourFacetedSearchResponse>builder()
+                .result(tourService.searchToursWithFacets(request, page, size))
+                .build();
+    }
+
+    @GetMapping("/search/cursor")
+    public ApiResponse<CursorPage<TourResponse>> searchToursByCursor(
+            @RequestParam(required = false) String keyword,
+            @RequestParam(required = false) String destination,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) LocalDate startDate,
+            @RequestParam(required = false) Integer durationDays,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth startMonth,
+            @RequestParam(required = false) Integer minQuantity,
+            @RequestParam(required = false) TourStatus tourStatus,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+
+        log.info("GET /tours/search/cursor - keyword: {}, destination: {}, size: {}", keyword, destination, size);
+
+        TourSearchRequest request = TourSearchRequest.builder()
+                .keyword(keyword)
+                .destination(destination)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .startDate(startDate)
+                .durationDays(durationDays)
+                .startMonth(startMonth)
+                .minQuantity(minQuantity)
+                .tourStatus(tourStatus)
+                .build();
+
+        return ApiResponse.<CursorPage<TourResponse>>builder()
+                .result(tourService.searchToursByCursor(request, cursor, size, includeTotal))
+                .build();
+    }
+
     // ===== ADMIN ENDPOINTS =====
 
     @GetMapping("/admin/all")
@@ -158,6 +299,18 @@ public class TourController {
         }
     }
 
+    @GetMapping("/admin/all/cursor")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<CursorPage<TourResponse>> getToursAdminByCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("GET /tours/admin/all/cursor - size={}, includeTotal={}", size, includeTotal);
+        return ApiResponse.<CursorPage<TourResponse>>builder()
+                .result(tourService.getToursForAdminByCursor(cursor, size, includeTotal))
+                .build();
+    }
+
     @PostMapping
     @PreAuthorize("hasRole('ADMIN')")
     public ApiResponse<TourResponse> createTour(@RequestBody @Valid TourCreateRequest request) {
@@ -175,6 +328,37 @@ public class TourController {
         }
     }
 
+    @PostMapping(
+            value = "/bulk",
+            consumes = {TourBulkFormat.NDJSON_VALUE, TourBulkFormat.CSV_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<TourImportResponse> importTours(
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType, InputStream body) {
+        TourBulkFormat format = TourBulkFormat.fromContentType(contentType);
+        log.info("POST /tours/bulk - Importing tours from {}", format);
+        TourImportResponse result = tourBulkImporter.importTours(body, format);
+        return ApiResponse.<TourImportResponse>builder()
+                .result(result)
+                .message("Imported " + result.getImported() + " of " + result.getReceived() + " tours")
+                .build();
+    }
+
+    @GetMapping("/bulk")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportTours(@RequestParam(defaultValue = "ndjson") String format) {
+        TourBulkFormat bulkFormat = TourBulkFormat.fromName(format);
+        log.info("GET /tours/bulk - Exporting tours as {}", bulkFormat);
+        return ResponseEntity.ok()
+                .contentType(bulkFormat.getMediaType())
+                .header(
+                        HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment()
+                                .filename("tours." + bulkFormat.getExtension())
+                                .build()
+                                .toString())
+                .body(tourBulkExporter.exportTours(bulkFormat));
+    }
+
     @PutMapping("/{tourId}")
     @PreAuthorize("hasRole('ADMIN')")
     public ApiResponse<TourResponse> updateTour(
@@ -194,6 +378,28 @@ public class TourController {
         }
     }
 
+    @PutMapping("/{tourId}/seat-stripes")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<Void> setSeatStripes(@PathVariable String tourId, @RequestParam int stripes) {
+        log.info("PUT /tours/{}/seat-stripes - Switching inventory to {} stripes", tourId, stripes);
+        seatInventory.setStripes(tourId, stripes);
+        return ApiResponse.<Void>builder()
+                .message(stripes <= 1 ? "Tour uses single-row inventory" : "Tour uses " + stripes + " seat stripes")
+                .build();
+    }
+
+    /**
+     * Audit view of the tour's seat changes: ledger totals and the latest entries
+     */
+    @GetMapping("/{tourId}/seat-ledger")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ApiResponse<SeatLedgerResponse> getSeatLedger(
+            @PathVariable String tourId, @RequestParam(defaultValue = "50") int limit) {
+        return ApiResponse.<SeatLedgerResponse>builder()
+                .result(seatLedger.statement(tourId, limit))
+                .build();
+    }
+
     @DeleteMapping("/{tourId}")
     @PreAuthorize("hasRole('ADMIN')")
     public ApiResponse<Void> deleteTour(@PathVariable String tourId) {
@@ -251,8 +457,16 @@ public class TourController {
     }
 
     @GetMapping("/all-names")
-    public ResponseEntity<List<TourSelectionResponse>> getAllTourNames() {
+    public ResponseEntity<List<TourSelectionResponse>> getAllTourNames(WebRequest webRequest) {
+        if (isNotModified(webRequest, tourService.getTourNamesVersion())) {
+            return null;
+        }
         // Giả sử bạn đã có tourService. Nếu chưa có hàm này trong Service, hãy xem bước tiếp theo
         return ResponseEntity.ok(tourService.getAllTourNames());
     }
+
+    // Sets ETag / Last-Modified and tells whether a 304 has already been prepared
+    private boolean isNotModified(WebRequest webRequest, ResourceVersion version) {
+        return version != null && webRequest.checkNotModified(version.eTag(), version.lastModified());
+    }
 }
@@ -0,0 +1,18 @@
+package tourbooking.vietvivu.dto.request;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A group order: one line per booking, possibly across several tours
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class BulkBookingRequest {
+    List<BookingRequest> bookings;
+}
@@ -1,6 +1,7 @@
 package tourbooking.vietvivu.dto.request;
 
 import java.time.LocalDate;
+import java.time.YearMonth;
 
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -19,6 +20,7 @@ public class TourSearchRequest {
     Double maxPrice;
     LocalDate startDate;
     Integer durationDays;
+    YearMonth startMonth;
     Integer minQuantity;
 
     TourStatus tourStatus;
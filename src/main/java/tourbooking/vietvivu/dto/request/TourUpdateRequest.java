@@ -16,7 +16,6 @@ public class TourUpdateRequest {
     String title;
     String description;
     Integer initialQuantity;
-    Integer quantity;
     Double priceAdult;
     Double priceChild;
     String duration;
@@ -0,0 +1,29 @@
+package tourbooking.vietvivu.dto.response;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One line of a group order; {@code line} is its 1-based position in the request. A booked line
+ * carries the booking, a rejected one the error code and message.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkBookingLineResult {
+    private int line;
+    private String tourId;
+    private String bookingId;
+    private Double totalPrice;
+    private LocalDateTime paymentTerm;
+    private Integer code;
+    private String message;
+}
@@ -0,0 +1,23 @@
+package tourbooking.vietvivu.dto.response;
+
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome of a group order, with one result per line in request order
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkBookingResponse {
+    private int received;
+    private int booked;
+    private int failed;
+    private long elapsedMs;
+    private List<BulkBookingLineResult> lines;
+}
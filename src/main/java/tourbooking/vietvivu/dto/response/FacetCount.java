@@ -0,0 +1,19 @@
+package tourbooking.vietvivu.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FacetCount {
+    String value;
+    Double min;
+    Double max;
+    long count;
+}
@@ -0,0 +1,40 @@
+package tourbooking.vietvivu.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Counters and caller-observed latency of the calls to one outside dependency since startup
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OutboundStatsResponse {
+    private String name;
+    private String circuit;
+    private int maxConcurrent;
+    private int inFlight;
+    private long calls;
+    private long failures;
+    private long timeouts;
+    // Refused while the circuit was open
+    private long shortCircuited;
+    private long rejectedBusy;
+    private Latency latency;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Latency {
+        private long count;
+        private double meanMs;
+        private double p50Ms;
+        private double p90Ms;
+        private double p99Ms;
+        private double maxMs;
+    }
+}
@@ -7,6 +7,8 @@ import lombok.*;
 @Getter
 @Setter
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class PaymentSuccessResponse {
     private String checkoutId;
     private String invoiceId;
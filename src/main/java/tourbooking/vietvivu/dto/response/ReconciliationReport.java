@@ -0,0 +1,27 @@
+package tourbooking.vietvivu.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import tourbooking.vietvivu.enumm.ReconciliationIssue;
+
+/**
+ * Summary of a payment reconciliation run; the findings themselves are downloaded as CSV
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReconciliationReport {
+    private String runId;
+    private LocalDateTime startedAt;
+    // Null while the run is in progress
+    private LocalDateTime finishedAt;
+    private long bookingsChecked;
+    private long findings;
+    private Map<ReconciliationIssue, Long> issues;
+}
@@ -0,0 +1,41 @@
+package tourbooking.vietvivu.dto.response;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A tour's seat ledger: totals over every entry and the most recent entries
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SeatLedgerResponse {
+    private String tourId;
+    private Integer initialQuantity;
+    private Integer quantity;
+    private long reserved;
+    private long released;
+    private long entries;
+    // Entries not folded into the compacted balance yet
+    private long pendingEntries;
+    private LocalDateTime compactedAt;
+    private List<Entry> recent;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Entry {
+        private Long entryId;
+        private Integer delta;
+        private String reason;
+        private String reference;
+        private LocalDateTime createdAt;
+    }
+}
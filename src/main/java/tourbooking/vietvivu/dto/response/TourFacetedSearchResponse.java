@@ -0,0 +1,14 @@
+package tourbooking.vietvivu.dto.response;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TourFacetedSearchResponse {
+    PaginationResponse<TourResponse> tours;
+    TourFacetsResponse facets;
+}
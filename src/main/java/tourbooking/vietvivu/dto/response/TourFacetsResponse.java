@@ -0,0 +1,23 @@
+package tourbooking.vietvivu.dto.response;
+
+import java.util.List;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Facet counts for the tour search sidebar. Each dimension is counted with every other
+ * active filter applied but its own filter ignored, so selecting a value never hides its siblings.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class TourFacetsResponse {
+    List<FacetCount> destinations;
+    List<FacetCount> priceRanges;
+    List<FacetCount> durations;
+    List<FacetCount> startMonths;
+    List<FacetCount> seats;
+}
@@ -0,0 +1,18 @@
+package tourbooking.vietvivu.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * A rejected import row; {@code line} is the 1-based line of the source file where the row starts
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TourImportError {
+    private long line;
+    private String title;
+    private String message;
+}
@@ -0,0 +1,22 @@
+package tourbooking.vietvivu.dto.response;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a bulk tour import. Only the first rejected rows are listed in {@code errors};
+ * {@code errorsTruncated} tells whether more were dropped.
+ */
+@Data
+@Builder
+public class TourImportResponse {
+    private long received;
+    private long imported;
+    private long failed;
+    private long elapsedMs;
+    private double rowsPerSecond;
+    private List<TourImportError> errors;
+    private boolean errorsTruncated;
+}
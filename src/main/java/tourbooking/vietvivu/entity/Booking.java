@@ -16,7 +16,16 @@ import tourbooking.vietvivu.enumm.PaymentStatus;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "bookings")
+@Table(
+        name = "bookings",
+        indexes = {
+            @Index(
+                    name = "idx_bookings_user_date",
+                    columnList = "user_id, booking_date DESC, booking_id DESC, booking_status"),
+            @Index(
+                    name = "idx_bookings_tour_date",
+                    columnList = "tour_id, booking_date DESC, booking_id DESC, booking_status")
+        })
 public class Booking {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,47 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A mutation made under an Idempotency-Key: claimed while it runs, then holding the response that
+ * replays of the same key get back until it expires
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "idempotency_records",
+        indexes = @Index(name = "idx_idempotency_records_expires_at", columnList = "expires_at"))
+public class IdempotencyRecord {
+    // SHA-256 of endpoint, caller and key
+    @Id
+    @Column(name = "record_key", length = 64)
+    String recordKey;
+
+    @Column(name = "request_hash", length = 64)
+    String requestHash;
+
+    Boolean completed;
+
+    @Column(name = "response_body", columnDefinition = "text")
+    String responseBody;
+
+    // Until when the instance running the request owns it; null once completed
+    @Column(name = "locked_until")
+    LocalDateTime lockedUntil;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+
+    @Column(name = "expires_at")
+    LocalDateTime expiresAt;
+}
@@ -14,7 +14,7 @@ import lombok.experimental.FieldDefaults;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "images")
+@Table(name = "images", indexes = @Index(name = "idx_images_tour_id", columnList = "tour_id"))
 public class Image {
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
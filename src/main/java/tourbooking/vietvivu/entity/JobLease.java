@@ -0,0 +1,45 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Which instance may run a scheduled job right now, where an interrupted run stopped, and how the last run went
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "job_leases")
+public class JobLease {
+    @Id
+    @Column(name = "job_name")
+    String jobName;
+
+    // Null when nobody holds the lease
+    String owner;
+
+    @Column(name = "leased_until")
+    LocalDateTime leasedUntil;
+
+    String checkpoint;
+
+    @Column(name = "last_started_at")
+    LocalDateTime lastStartedAt;
+
+    @Column(name = "last_finished_at")
+    LocalDateTime lastFinishedAt;
+
+    @Column(name = "last_duration_ms")
+    Long lastDurationMs;
+
+    @Column(name = "last_rows")
+    Long lastRows;
+}
@@ -0,0 +1,57 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import tourbooking.vietvivu.enumm.OutboxStatus;
+import tourbooking.vietvivu.enumm.OutboxTopic;
+
+/**
+ * A side effect (an email, for now) written in the same transaction as the change that causes it and
+ * delivered afterwards by the outbox dispatcher
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "outbox_messages",
+        indexes = @Index(name = "idx_outbox_messages_due", columnList = "status, next_attempt_at"))
+public class OutboxMessage {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "message_id")
+    Long messageId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32, nullable = false)
+    OutboxTopic topic;
+
+    @Column(columnDefinition = "text", nullable = false)
+    String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    OutboxStatus status;
+
+    Integer attempts;
+
+    // When the dispatcher may pick it up: now for a new message, later for a retry or one being delivered
+    @Column(name = "next_attempt_at", nullable = false)
+    LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    String lastError;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    LocalDateTime processedAt;
+}
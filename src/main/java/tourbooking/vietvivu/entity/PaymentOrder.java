@@ -0,0 +1,37 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * A PayOS payment link: the order code sent to PayOS and the booking it pays for, so a callback
+ * carrying only the order code finds the booking by primary key
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "payment_orders", indexes = @Index(name = "idx_payment_orders_booking", columnList = "booking_id"))
+public class PaymentOrder {
+    @Id
+    @Column(name = "order_code")
+    Long orderCode;
+
+    @Column(name = "booking_id")
+    String bookingId;
+
+    @Column(name = "tour_id")
+    String tourId;
+
+    Long amount;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+}
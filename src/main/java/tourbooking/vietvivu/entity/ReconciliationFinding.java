@@ -0,0 +1,44 @@
+package tourbooking.vietvivu.entity;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import tourbooking.vietvivu.enumm.ReconciliationIssue;
+
+/**
+ * A mismatch between a booking, its checkouts and its invoices found by one reconciliation run
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "reconciliation_findings",
+        indexes = {@Index(name = "idx_reconciliation_findings_run", columnList = "run_id, finding_id")})
+public class ReconciliationFinding {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "finding_id")
+    Long findingId;
+
+    @Column(name = "run_id", length = 36, nullable = false)
+    String runId;
+
+    @Column(name = "booking_id", nullable = false)
+    String bookingId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32, nullable = false)
+    ReconciliationIssue issue;
+
+    Double expected;
+
+    Double actual;
+
+    // Ids of the checkouts or invoices involved
+    String detail;
+}
@@ -0,0 +1,42 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * One pass of the payment reconciliation. {@code position} is the last booking id checked and moves in the
+ * same transaction as the findings of its window, so a resumed run neither repeats nor skips a window.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "reconciliation_runs")
+public class ReconciliationRun {
+    @Id
+    @Column(name = "run_id", length = 36)
+    String runId;
+
+    @Column(name = "started_at", nullable = false)
+    LocalDateTime startedAt;
+
+    // Null while the run is in progress
+    @Column(name = "finished_at")
+    LocalDateTime finishedAt;
+
+    @Column(name = "position")
+    String position;
+
+    @Column(name = "bookings_checked", nullable = false)
+    Long bookingsChecked;
+
+    @Column(nullable = false)
+    Long findings;
+}
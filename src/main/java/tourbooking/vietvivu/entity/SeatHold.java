@@ -0,0 +1,36 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Seats an unpaid booking has taken from its tour, until payment confirms them or the hold expires
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "seat_holds", indexes = @Index(name = "idx_seat_holds_expires_at", columnList = "expires_at"))
+public class SeatHold {
+    @Id
+    @Column(name = "booking_id")
+    String bookingId;
+
+    @Column(name = "tour_id")
+    String tourId;
+
+    Integer seats;
+
+    @Column(name = "expires_at")
+    LocalDateTime expiresAt;
+
+    @Column(name = "created_at")
+    LocalDateTime createdAt;
+}
@@ -0,0 +1,53 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+import tourbooking.vietvivu.enumm.SeatLedgerReason;
+
+/**
+ * One change to a tour's seat count: negative when seats were taken, positive when given back.
+ * Rows are only ever inserted; compaction folds them into {@link TourSeatBalance} and flags them.
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(
+        name = "seat_ledger",
+        indexes = {
+            @Index(name = "idx_seat_ledger_tour", columnList = "tour_id, entry_id"),
+            @Index(name = "idx_seat_ledger_compacted", columnList = "compacted, entry_id")
+        })
+public class SeatLedgerEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "entry_id")
+    Long entryId;
+
+    @Column(name = "tour_id", nullable = false)
+    String tourId;
+
+    @Column(nullable = false)
+    Integer delta;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16, nullable = false)
+    SeatLedgerReason reason;
+
+    // The booking behind the change, when there is one
+    @Column(name = "reference")
+    String reference;
+
+    @Column(name = "created_at", nullable = false)
+    LocalDateTime createdAt;
+
+    @Column(nullable = false)
+    Boolean compacted;
+}
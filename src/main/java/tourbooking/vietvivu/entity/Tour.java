@@ -1,5 +1,6 @@
 package tourbooking.vietvivu.entity;
 
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.HashSet;
 import java.util.List;
@@ -8,7 +9,9 @@ import java.util.Set;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 
-import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import lombok.*;
 import lombok.experimental.FieldDefaults;
@@ -21,7 +24,7 @@ import tourbooking.vietvivu.enumm.TourStatus;
 @AllArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Entity
-@Table(name = "tours")
+@Table(name = "tours", indexes = @Index(name = "idx_tours_start_date_tour_id", columnList = "start_date DESC, tour_id"))
 public class Tour {
 
     @Id
@@ -40,8 +43,10 @@ public class Tour {
     @Column(name = "initial_quantity")
     Integer initialQuantity;
 
+    // Changed only through SeatInventory's conditional updates, never written back from the entity
     @NotNull
     @PositiveOrZero
+    @Column(updatable = false)
     Integer quantity;
 
     @NotNull
@@ -79,6 +84,7 @@ public class Tour {
     //    @NotEmpty
     //    @Size(min = 1, max = 20)
     @ElementCollection
+    @BatchSize(size = 50)
     @CollectionTable(name = "tour_itinerary", joinColumns = @JoinColumn(name = "tour_id"))
     @Column(name = "step")
     List<@Size(max = 500) String> itinerary;
@@ -95,9 +101,21 @@ public class Tour {
     @ManyToMany(mappedBy = "favoriteTours")
     private Set<User> usersFavorited = new HashSet<>();
 
-    @Formula("(SELECT COUNT(*) FROM bookings b WHERE b.tour_id = tour_id)")
+    // Maintained by TourCounterService with atomic increments, never written through the entity
+    @ColumnDefault("0")
+    @Column(name = "total_bookings", insertable = false, updatable = false)
     Integer totalBookings;
 
-    @Formula("(SELECT COUNT(*) FROM user_favorite uf WHERE uf.tour_id = tour_id)")
+    @ColumnDefault("0")
+    @Column(name = "favorite_count", insertable = false, updatable = false)
     Integer favoriteCount;
+
+    // Number of seat stripes when the tour runs in striped inventory mode, null for the single-row mode
+    @Column(name = "seat_stripes", insertable = false, updatable = false)
+    Integer seatStripes;
+
+    // Also bumped by every bulk UPDATE on tours; drives ETag / Last-Modified
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    Instant updatedAt;
 }
@@ -0,0 +1,34 @@
+package tourbooking.vietvivu.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.*;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * The seat ledger of a tour folded up to its last compaction: seats taken and given back since the tour opened
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "tour_seat_balances")
+public class TourSeatBalance {
+    @Id
+    @Column(name = "tour_id")
+    String tourId;
+
+    Long reserved;
+
+    Long released;
+
+    Long entries;
+
+    @Column(name = "compacted_at")
+    LocalDateTime compactedAt;
+}
@@ -0,0 +1,44 @@
+package tourbooking.vietvivu.entity;
+
+import java.io.Serializable;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+
+import lombok.*;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * One slice of a tour's remaining seats when the tour runs in striped (high-contention) inventory mode
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Entity
+@Table(name = "tour_seat_stripes")
+@IdClass(TourSeatStripe.Key.class)
+public class TourSeatStripe {
+
+    @Id
+    @Column(name = "tour_id")
+    String tourId;
+
+    @Id
+    Integer stripe;
+
+    @NotNull
+    @PositiveOrZero
+    Integer seats;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        String tourId;
+        Integer stripe;
+    }
+}
@@ -0,0 +1,17 @@
+package tourbooking.vietvivu.enumm;
+
+import lombok.Getter;
+
+@Getter
+public enum HotTourWindow {
+    ALL_TIME(0),
+    WEEK(7),
+    MONTH(30);
+
+    // Number of most recent days (today included) counted; 0 means no limit
+    private final int days;
+
+    HotTourWindow(int days) {
+        this.days = days;
+    }
+}
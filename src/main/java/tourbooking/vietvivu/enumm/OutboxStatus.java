@@ -0,0 +1,16 @@
+package tourbooking.vietvivu.enumm;
+
+import lombok.Getter;
+
+@Getter
+public enum OutboxStatus {
+    PENDING("Pending"),
+    DONE("Done"),
+    FAILED("Failed");
+
+    private final String message;
+
+    OutboxStatus(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,14 @@
+package tourbooking.vietvivu.enumm;
+
+import lombok.Getter;
+
+@Getter
+public enum OutboxTopic {
+    INVOICE_EMAIL("Invoice email");
+
+    private final String message;
+
+    OutboxTopic(String message) {
+        this.message = message;
+    }
+}
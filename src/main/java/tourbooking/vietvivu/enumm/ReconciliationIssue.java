@@ -0,0 +1,21 @@
+package tourbooking.vietvivu.enumm;
+
+import lombok.Getter;
+
+@Getter
+public enum ReconciliationIssue {
+    PAID_WITHOUT_CHECKOUT("Booking is paid but has no paid checkout"),
+    PAID_WITHOUT_INVOICE("Booking is paid but has no invoice"),
+    CHECKOUT_ON_UNPAID_BOOKING("Paid checkout on a booking that is not paid"),
+    DUPLICATE_CHECKOUT("Booking has more than one paid checkout"),
+    DUPLICATE_INVOICE("Booking has more than one invoice"),
+    AMOUNT_DRIFT("Checkout amount does not match the booking total"),
+    INVOICE_WITHOUT_CHECKOUT("Invoice points at no checkout of its booking"),
+    INVOICE_AMOUNT_MISMATCH("Invoice amount differs from its checkout");
+
+    private final String message;
+
+    ReconciliationIssue(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,17 @@
+package tourbooking.vietvivu.enumm;
+
+import lombok.Getter;
+
+@Getter
+public enum SeatLedgerReason {
+    RESERVE("Reserve"),
+    RELEASE("Release"),
+    TRANSFER("Transfer"),
+    RESIZE("Resize");
+
+    private final String message;
+
+    SeatLedgerReason(String message) {
+        this.message = message;
+    }
+}
@@ -46,7 +46,29 @@ public enum ErrorCode {
     TOKEN_RESET_EXPIRED(1036, "Token đặt lại đã hết hạn", HttpStatus.BAD_REQUEST),
     EMAIL_EXISTED(1037, "Email đã tồn tại", HttpStatus.BAD_REQUEST),
     PASSWORD_INCORRECT(1038, "Mật khẩu cũ không đúng", HttpStatus.BAD_REQUEST),
-    CONTACT_NOT_FOUND(1039, "Không tìm thấy liên hệ", HttpStatus.NOT_FOUND);
+    CONTACT_NOT_FOUND(1039, "Không tìm thấy liên hệ", HttpStatus.NOT_FOUND),
+    INVALID_CURSOR(1040, "Con trỏ phân trang không hợp lệ", HttpStatus.BAD_REQUEST),
+    CATALOG_NOT_READY(1041, "Dữ liệu tour đang được tải, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    UNSUPPORTED_BULK_FORMAT(1042, "Định dạng nhập/xuất tour không được hỗ trợ", HttpStatus.BAD_REQUEST),
+    INVALID_BULK_FILE(1043, "Tệp nhập tour không hợp lệ", HttpStatus.BAD_REQUEST),
+    INVALID_SEAT_STRIPES(1044, "Số phân đoạn chỗ phải từ 0 đến 64", HttpStatus.BAD_REQUEST),
+    SEAT_HOLD_EXPIRED(1045, "Thời gian giữ chỗ đã hết và tour không còn đủ chỗ", HttpStatus.BAD_REQUEST),
+    INVALID_BULK_BOOKING_SIZE(1046, "Đơn đặt theo nhóm phải có từ 1 đến 200 dòng", HttpStatus.BAD_REQUEST),
+    INVALID_BOOKING_QUANTITY(1047, "Số khách phải lớn hơn 0", HttpStatus.BAD_REQUEST),
+    CONTACT_INFO_REQUIRED(1048, "Vui lòng nhập tên và email liên hệ", HttpStatus.BAD_REQUEST),
+    INVALID_IDEMPOTENCY_KEY(1049, "Idempotency-Key không hợp lệ", HttpStatus.BAD_REQUEST),
+    IDEMPOTENCY_KEY_REUSED(1050, "Idempotency-Key đã được dùng cho một yêu cầu khác", HttpStatus.UNPROCESSABLE_ENTITY),
+    IDEMPOTENCY_REQUEST_IN_PROGRESS(
+            1051, "Yêu cầu với Idempotency-Key này đang được xử lý, vui lòng thử lại sau", HttpStatus.CONFLICT),
+    INVALID_WEBHOOK_SIGNATURE(1052, "Chữ ký webhook không hợp lệ", HttpStatus.UNAUTHORIZED),
+    WEBHOOK_QUEUE_FULL(
+            1053, "Hệ thống đang bận xử lý thanh toán, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    RECONCILIATION_RUN_NOT_FOUND(1054, "Không tìm thấy lần đối soát thanh toán", HttpStatus.NOT_FOUND),
+    OUTBOUND_UNAVAILABLE(
+            1055, "Dịch vụ đối tác tạm thời không khả dụng, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    OUTBOUND_BUSY(1056, "Dịch vụ đối tác đang quá tải, vui lòng thử lại sau", HttpStatus.SERVICE_UNAVAILABLE),
+    OUTBOUND_TIMEOUT(1057, "Dịch vụ đối tác phản hồi quá chậm, vui lòng thử lại sau", HttpStatus.GATEWAY_TIMEOUT),
+    INITIAL_QUANTITY_BELOW_SOLD(1058, "Số lượng ban đầu không được nhỏ hơn số chỗ đã đặt", HttpStatus.BAD_REQUEST);
 
     // code 200 - OK
 
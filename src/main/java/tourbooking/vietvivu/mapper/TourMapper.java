@@ -5,14 +5,16 @@ import java.util.List;
 import org.mapstruct.Mapper;
 import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.mapstruct.Named;
 
 import tourbooking.vietvivu.dto.request.TourCreateRequest;
 import tourbooking.vietvivu.dto.request.TourUpdateRequest;
 import tourbooking.vietvivu.dto.response.TourResponse;
 import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.service.catalog.TourDurations;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
 
-@Mapper(componentModel = "spring")
+@Mapper(componentModel = "spring", imports = TourDurations.class)
 public interface TourMapper {
 
     @Mapping(target = "quantity", ignore = true)
@@ -26,15 +28,29 @@ public interface TourMapper {
     @Mapping(target = "usersFavorited", ignore = true)
     @Mapping(target = "totalBookings", ignore = true)
     @Mapping(target = "favoriteCount", ignore = true)
+    @Mapping(target = "updatedAt", ignore = true)
+    @Mapping(target = "seatStripes", ignore = true)
+    @Mapping(target = "quantity", ignore = true)
+    @Mapping(target = "initialQuantity", ignore = true)
     void updateTour(@MappingTarget Tour tour, TourUpdateRequest request);
 
+    /**
+     * Scalar fields only; image URLs and isFavorited are filled in by {@link TourResponseAssembler}
+     */
+    @Named("toTourResponseBase")
+    @Mapping(target = "imageUrls", ignore = true)
+    @Mapping(target = "isFavorited", ignore = true)
+    TourResponse toTourResponseBase(Tour tour);
+
     @Mapping(target = "imageUrls", expression = "java(mapImageUrls(tour))")
-    @Mapping(target = "totalBookings", source = "totalBookings")
-    @Mapping(target = "favoriteCount", source = "favoriteCount")
-    @Mapping(target = "isFavorited", expression = "java(isFavoritedByCurrentUser(tour))")
-    TourResponse toTourResponse(Tour tour);
+    @Mapping(target = "durationDays", expression = "java(TourDurations.extractDays(tour.getDuration()))")
+    TourSnapshot toTourSnapshot(Tour tour);
+
+    @Mapping(target = "durationDays", expression = "java(TourDurations.extractDays(tour.getDuration()))")
+    TourSnapshot toTourSnapshot(Tour tour, List<String> imageUrls);
 
-    List<TourResponse> toTourResponseList(List<Tour> tours);
+    @Mapping(target = "isFavorited", ignore = true)
+    TourResponse toTourResponse(TourSnapshot snapshot);
 
     default List<String> mapImageUrls(Tour tour) {
         try {
@@ -44,25 +60,4 @@ public interface TourMapper {
             return List.of();
         }
     }
-
-    default Boolean isFavoritedByCurrentUser(Tour tour) {
-        try {
-            var context = SecurityContextHolder.getContext();
-            var authentication = context.getAuthentication();
-
-            if (authentication == null
-                    || !authentication.isAuthenticated()
-                    || authentication.getPrincipal().equals("anonymousUser")) {
-                return false;
-            }
-
-            String username = authentication.getName();
-            if (tour.getUsersFavorited() == null) return false;
-
-            return tour.getUsersFavorited().stream()
-                    .anyMatch(user -> user.getUsername().equals(username));
-        } catch (Exception e) {
-            return false;
-        }
-    }
 }
@@ -0,0 +1,82 @@
+package tourbooking.vietvivu.mapper;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import tourbooking.vietvivu.dto.response.TourResponse;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.repository.ImageRepository;
+import tourbooking.vietvivu.repository.UserRepository;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
+
+/**
+ * Builds {@link TourResponse}s for a whole page at once: image URLs for all tours and the
+ * caller's favorite tour ids are each loaded with a single query and joined in memory,
+ * so a page costs the same number of queries however many tours or fans it has.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TourResponseAssembler {
+
+    TourMapper tourMapper;
+    ImageRepository imageRepository;
+    UserRepository userRepository;
+
+    public List<TourResponse> toResponses(Collection<Tour> tours) {
+        if (tours.isEmpty()) {
+            return List.of();
+        }
+        Map<String, List<String>> imageUrls = imageRepository.findImageUrlsGroupedByTourId(
+                tours.stream().map(Tour::getTourId).toList());
+        Set<String> favoriteTourIds = currentUserFavoriteTourIds();
+        return tours.stream()
+                .map(tour -> {
+                    TourResponse response = tourMapper.toTourResponseBase(tour);
+                    response.setImageUrls(imageUrls.getOrDefault(tour.getTourId(), List.of()));
+                    response.setIsFavorited(favoriteTourIds.contains(tour.getTourId()));
+                    return response;
+                })
+                .toList();
+    }
+
+    public TourResponse toResponse(Tour tour) {
+        return toResponses(List.of(tour)).getFirst();
+    }
+
+    public List<TourResponse> fromSnapshots(Collection<TourSnapshot> snapshots) {
+        if (snapshots.isEmpty()) {
+            return List.of();
+        }
+        Set<String> favoriteTourIds = currentUserFavoriteTourIds();
+        return snapshots.stream()
+                .map(snapshot -> {
+                    TourResponse response = tourMapper.toTourResponse(snapshot);
+                    response.setIsFavorited(favoriteTourIds.contains(snapshot.tourId()));
+                    return response;
+                })
+                .toList();
+    }
+
+    public TourResponse fromSnapshot(TourSnapshot snapshot) {
+        return fromSnapshots(List.of(snapshot)).getFirst();
+    }
+
+    public Set<String> currentUserFavoriteTourIds() {
+        var authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null
+                || !authentication.isAuthenticated()
+                || "anonymousUser".equals(authentication.getPrincipal())) {
+            return Set.of();
+        }
+        return userRepository.findFavoriteTourIdsByUsername(authentication.getName());
+    }
+}
@@ -2,9 +2,16 @@ package tourbooking.vietvivu.repository;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -13,6 +20,7 @@ import tourbooking.vietvivu.entity.Booking;
 import tourbooking.vietvivu.entity.Tour;
 import tourbooking.vietvivu.entity.User;
 import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.service.booking.BookingRow;
 
 @Repository
 public interface BookingRepository extends JpaRepository<Booking, String> {
@@ -28,6 +36,32 @@ public interface BookingRepository extends JpaRepository<Booking, String> {
 
     Integer countByBookingStatus(BookingStatus bookingStatus);
 
+    /**
+     * Rows of (tourId, count) over bookings whose status is not excluded
+     */
+    @Query(
+            """
+	SELECT b.tour.tourId, COUNT(b)
+	FROM Booking b
+	WHERE b.bookingStatus NOT IN :excluded
+	GROUP BY b.tour.tourId
+	""")
+    List<Object[]> countBookingsPerTour(@Param("excluded") Collection<BookingStatus> excluded);
+
+    /**
+     * Rows of (tourId, booking day, count) for bookings made since {@code since}
+     */
+    @Query(
+            """
+	SELECT b.tour.tourId, CAST(b.bookingDate AS LocalDate), COUNT(b)
+	FROM Booking b
+	WHERE b.bookingStatus NOT IN :excluded
+	AND b.bookingDate >= :since
+	GROUP BY b.tour.tourId, CAST(b.bookingDate AS LocalDate)
+	""")
+    List<Object[]> countBookingsPerTourAndDay(
+            @Param("excluded") Collection<BookingStatus> excluded, @Param("since") LocalDateTime since);
+
     @Query(
             """
 	SELECT t.title, COUNT(DISTINCT b.bookingId)
@@ -101,14 +135,213 @@ public interface BookingRepository extends JpaRepository<Booking, String> {
 
     @Query(
             """
-			SELECT b FROM Booking b
-			JOIN b.tour t
+			SELECT b.bookingId FROM Booking b
 			WHERE b.bookingStatus IN :statuses
-			AND t.endDate IS NOT NULL
-			AND t.endDate < :currentDate
+			AND b.tour.endDate < :currentDate
+			AND b.bookingId > :after
+			ORDER BY b.bookingId
 			""")
-    List<Booking> findBookingsToComplete(
-            @Param("statuses") List<BookingStatus> statuses, @Param("currentDate") LocalDate currentDate);
+    List<String> findIdsToComplete(
+            @Param("statuses") Collection<BookingStatus> statuses,
+            @Param("currentDate") LocalDate currentDate,
+            @Param("after") String after,
+            Pageable limit);
+
+    @Modifying
+    @Query(
+            "UPDATE Booking b SET b.bookingStatus = 'COMPLETED' WHERE b.bookingId IN :bookingIds AND b.bookingStatus IN :statuses")
+    int completeByIds(
+            @Param("bookingIds") Collection<String> bookingIds, @Param("statuses") Collection<BookingStatus> statuses);
+
+    /**
+     * Rows of (bookingId, tourId, seats, bookingDate) for pending bookings past their payment term that
+     * hold no seat hold (those expire through SeatHoldService). Locked, so a payment in flight for one of
+     * them finishes first and the row then drops out.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            """
+			SELECT b.bookingId, b.tour.tourId, COALESCE(b.numAdults, 0) + COALESCE(b.numChildren, 0), b.bookingDate
+			FROM Booking b
+			WHERE b.bookingStatus = 'PENDING'
+			AND b.paymentTerm < :now
+			AND NOT EXISTS (SELECT h FROM SeatHold h WHERE h.bookingId = b.bookingId)
+			ORDER BY b.paymentTerm
+			""")
+    List<Object[]> lockOverdue(@Param("now") LocalDateTime now, Pageable limit);
+
+    @Modifying
+    @Query("UPDATE Booking b SET b.bookingStatus = 'CANCELLED' WHERE b.bookingId IN :bookingIds")
+    int cancelByIds(@Param("bookingIds") Collection<String> bookingIds);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Booking b WHERE b.bookingId = :bookingId")
+    Optional<Booking> findByIdForUpdate(@Param("bookingId") String bookingId);
+
+    /**
+     * Ids of the given bookings that are not paid yet, locked in id order so two payment batches cannot deadlock.
+     * Bookings cancelled by their contact are left out: their seats are already back on sale.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            """
+			SELECT b.bookingId FROM Booking b
+			WHERE b.bookingId IN :bookingIds AND (b.paymentStatus IS NULL OR b.paymentStatus <> 'PAID')
+			AND (b.bookingStatus IS NULL OR b.bookingStatus <> 'CONFIRMED_CANCELLATION')
+			ORDER BY b.bookingId
+			""")
+    List<String> lockUnpaid(@Param("bookingIds") Collection<String> bookingIds);
+
+    @Modifying
+    @Query(
+            """
+			UPDATE Booking b SET b.paymentStatus = 'PAID', b.bookingStatus = 'CONFIRMED'
+			WHERE b.bookingId IN :bookingIds AND (b.bookingStatus IS NULL OR b.bookingStatus <> 'CONFIRMED_CANCELLATION')
+			""")
+    int markPaid(@Param("bookingIds") Collection<String> bookingIds);
 
     List<Booking> findByTour(Tour tour);
+
+    /**
+     * Keyset pagination of a user's bookings, newest first: rows of (bookingId, bookingDate) for the first slice.
+     * Served from idx_bookings_user_date without touching the table.
+     */
+    @Query(
+            """
+		SELECT b.bookingId, b.bookingDate FROM Booking b
+		WHERE b.user.id = :userId
+		AND (:status IS NULL OR b.bookingStatus = :status)
+		AND (:from IS NULL OR b.bookingDate >= :from)
+		AND (:to IS NULL OR b.bookingDate < :to)
+		ORDER BY b.bookingDate DESC, b.bookingId DESC
+		""")
+    List<Object[]> findFirstKeysByUser(
+            @Param("userId") String userId,
+            @Param("status") BookingStatus status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            Pageable limit);
+
+    @Query(
+            """
+		SELECT b.bookingId, b.bookingDate FROM Booking b
+		WHERE b.user.id = :userId
+		AND (:status IS NULL OR b.bookingStatus = :status)
+		AND (:from IS NULL OR b.bookingDate >= :from)
+		AND (:to IS NULL OR b.bookingDate < :to)
+		AND (b.bookingDate < :afterDate OR (b.bookingDate = :afterDate AND b.bookingId < :afterId))
+		ORDER BY b.bookingDate DESC, b.bookingId DESC
+		""")
+    List<Object[]> findKeysByUserAfter(
+            @Param("userId") String userId,
+            @Param("status") BookingStatus status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("afterDate") LocalDateTime afterDate,
+            @Param("afterId") String afterId,
+            Pageable limit);
+
+    /**
+     * Same as {@link #findFirstKeysByUser} for a tour's bookings, served from idx_bookings_tour_date
+     */
+    @Query(
+            """
+		SELECT b.bookingId, b.bookingDate FROM Booking b
+		WHERE b.tour.tourId = :tourId
+		AND (:status IS NULL OR b.bookingStatus = :status)
+		AND (:from IS NULL OR b.bookingDate >= :from)
+		AND (:to IS NULL OR b.bookingDate < :to)
+		ORDER BY b.bookingDate DESC, b.bookingId DESC
+		""")
+    List<Object[]> findFirstKeysByTour(
+            @Param("tourId") String tourId,
+            @Param("status") BookingStatus status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            Pageable limit);
+
+    @Query(
+            """
+		SELECT b.bookingId, b.bookingDate FROM Booking b
+		WHERE b.tour.tourId = :tourId
+		AND (:status IS NULL OR b.bookingStatus = :status)
+		AND (:from IS NULL OR b.bookingDate >= :from)
+		AND (:to IS NULL OR b.bookingDate < :to)
+		AND (b.bookingDate < :afterDate OR (b.bookingDate = :afterDate AND b.bookingId < :afterId))
+		ORDER BY b.bookingDate DESC, b.bookingId DESC
+		""")
+    List<Object[]> findKeysByTourAfter(
+            @Param("tourId") String tourId,
+            @Param("status") BookingStatus status,
+            @Param("from") LocalDateTime from,
+            @Param("to") LocalDateTime to,
+            @Param("afterDate") LocalDateTime afterDate,
+            @Param("afterId") String afterId,
+            Pageable limit);
+
+    /**
+     * Select list of {@link BookingRow}: the booking with its user or contact, promotion and tour columns
+     * and the tour's first image (lowest URL, so it is stable), all in one statement
+     */
+    String BOOKING_ROW =
+            """
+		SELECT new tourbooking.vietvivu.service.booking.BookingRow(
+			b.bookingId, b.bookingDate, b.totalPrice, b.bookingStatus, b.paymentTerm, b.note,
+			b.numAdults, b.numChildren,
+			u.id, u.name, u.email, u.phoneNumber, u.address,
+			c.name, c.email, c.phoneNumber, c.address,
+			p.promotionId, p.discount,
+			t.tourId, t.title, t.duration, t.destination, t.priceAdult, t.priceChild,
+			(SELECT MIN(i.imageUrl) FROM Image i WHERE i.tour = t))
+		FROM Booking b
+		LEFT JOIN b.tour t
+		LEFT JOIN b.user u
+		LEFT JOIN b.contact c
+		LEFT JOIN b.promotion p
+		""";
+
+    @Query(BOOKING_ROW + "WHERE b.bookingId = :bookingId")
+    Optional<BookingRow> findRowById(@Param("bookingId") String bookingId);
+
+    @Query(BOOKING_ROW + "WHERE b.bookingId IN :bookingIds")
+    List<BookingRow> findRowsByIds(@Param("bookingIds") Collection<String> bookingIds);
+
+    @Query(BOOKING_ROW + "WHERE b.user.id = :userId ORDER BY b.bookingDate DESC, b.bookingId DESC")
+    List<BookingRow> findRowsByUserId(@Param("userId") String userId);
+
+    @Query(BOOKING_ROW + "WHERE b.tour.tourId = :tourId ORDER BY b.bookingDate DESC, b.bookingId DESC")
+    List<BookingRow> findRowsByTourId(@Param("tourId") String tourId);
+
+    /**
+     * Rows of (bookingId, bookingDate) for the given bookings that are still pending and unpaid, locked so
+     * a cancellation or payment committing meanwhile cannot leave them to be released twice
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(
+            """
+			SELECT b.bookingId, b.bookingDate FROM Booking b
+			WHERE b.bookingId IN :bookingIds AND b.bookingStatus = 'PENDING' AND b.paymentStatus = 'UNPAID'
+			""")
+    List<Object[]> findPendingUnpaid(@Param("bookingIds") Collection<String> bookingIds);
+
+    @Modifying
+    @Query(
+            """
+			UPDATE Booking b SET b.bookingStatus = 'CANCELLED'
+			WHERE b.bookingId IN :bookingIds AND b.bookingStatus = 'PENDING' AND b.paymentStatus = 'UNPAID'
+			""")
+    int cancelPendingUnpaid(@Param("bookingIds") Collection<String> bookingIds);
+
+    /**
+     * Cancels a booking for its contact unless it is already cancelled or completed; clears the persistence
+     * context so the booking is read again as committed
+     */
+    @Modifying(clearAutomatically = true)
+    @Query(
+            """
+			UPDATE Booking b SET b.bookingStatus = 'CONFIRMED_CANCELLATION'
+			WHERE b.bookingId = :bookingId
+			AND (b.bookingStatus IS NULL OR b.bookingStatus NOT IN ('CANCELLED', 'CONFIRMED_CANCELLATION', 'COMPLETED'))
+			""")
+    int cancelByContact(@Param("bookingId") String bookingId);
 }
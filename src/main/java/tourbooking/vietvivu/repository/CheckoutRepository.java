@@ -4,6 +4,7 @@ import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import tourbooking.vietvivu.entity.Checkout;
@@ -18,4 +19,15 @@ public interface CheckoutRepository extends JpaRepository<Checkout, String> {
 		GROUP BY c.paymentMethod
 	""")
     List<Object[]> countByPaymentMethod();
+
+    /**
+     * Checkouts of a booking with their invoices, newest first
+     */
+    @Query(
+            """
+		SELECT c FROM Checkout c LEFT JOIN FETCH c.invoice
+		WHERE c.booking.bookingId = :bookingId
+		ORDER BY c.paymentDate DESC
+	""")
+    List<Checkout> findWithInvoiceByBookingId(@Param("bookingId") String bookingId);
 }
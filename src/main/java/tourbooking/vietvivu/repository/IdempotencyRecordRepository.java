@@ -0,0 +1,66 @@
+package tourbooking.vietvivu.repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.IdempotencyRecord;
+
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, String> {
+
+    /** Claims a new key, failing on the primary key if another instance claimed it first */
+    @Modifying
+    @Query(
+            value =
+                    """
+		INSERT INTO idempotency_records (record_key, request_hash, completed, locked_until, created_at, expires_at)
+		VALUES (:recordKey, :requestHash, false, :lockedUntil, :now, :expiresAt)
+		""",
+            nativeQuery = true)
+    int insert(
+            @Param("recordKey") String recordKey,
+            @Param("requestHash") String requestHash,
+            @Param("lockedUntil") LocalDateTime lockedUntil,
+            @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * Takes over a request whose owner stopped renewing it (crashed mid-request); 0 when it is still owned
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE IdempotencyRecord r SET r.lockedUntil = :until
+		WHERE r.recordKey = :recordKey AND r.completed = false AND r.lockedUntil < :now
+		""")
+    int takeOver(
+            @Param("recordKey") String recordKey, @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    /**
+     * Stores the response; 0 when the request was not in progress any more (taken over or released)
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE IdempotencyRecord r SET r.completed = true, r.responseBody = :responseBody, r.lockedUntil = NULL
+		WHERE r.recordKey = :recordKey AND r.completed = false
+		""")
+    int complete(@Param("recordKey") String recordKey, @Param("responseBody") String responseBody);
+
+    /**
+     * Forgets a request that failed, so a retry with the same key runs it again
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.recordKey = :recordKey AND r.completed = false")
+    int release(@Param("recordKey") String recordKey);
+
+    @Query("SELECT r.recordKey FROM IdempotencyRecord r WHERE r.expiresAt < :now")
+    List<String> findExpiredKeys(@Param("now") LocalDateTime now, Pageable limit);
+}
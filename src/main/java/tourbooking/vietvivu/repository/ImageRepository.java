@@ -1,17 +1,43 @@
 package tourbooking.vietvivu.repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import feign.Param;
 import tourbooking.vietvivu.entity.Image;
 
 @Repository
 public interface ImageRepository extends JpaRepository<Image, String> {
 
+    int MAX_IN_PARAMETERS = 1000;
+
     @Query("SELECT i.imageUrl FROM Image i WHERE i.tour.tourId = :tourId")
     List<String> findImageUrlsByTour_TourId(@Param("tourId") String tourId);
+
+    /**
+     * Rows of (tourId, imageUrl) for all given tours
+     */
+    @Query(
+            "SELECT i.tour.tourId, i.imageUrl FROM Image i WHERE i.tour.tourId IN :tourIds ORDER BY i.uploadDate, i.imageId")
+    List<Object[]> findImageUrlsByTourIds(@Param("tourIds") Collection<String> tourIds);
+
+    default Map<String, List<String>> findImageUrlsGroupedByTourId(List<String> tourIds) {
+        Map<String, List<String>> imageUrls = new HashMap<>();
+        for (int from = 0; from < tourIds.size(); from += MAX_IN_PARAMETERS) {
+            List<String> batch = tourIds.subList(from, Math.min(from + MAX_IN_PARAMETERS, tourIds.size()));
+            for (Object[] row : findImageUrlsByTourIds(batch)) {
+                imageUrls
+                        .computeIfAbsent((String) row[0], id -> new ArrayList<>())
+                        .add((String) row[1]);
+            }
+        }
+        return imageUrls;
+    }
 }
@@ -0,0 +1,68 @@
+package tourbooking.vietvivu.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.JobLease;
+
+@Repository
+public interface JobLeaseRepository extends JpaRepository<JobLease, String> {
+
+    /** Creates the job's row, free, failing on the primary key if another instance created it first */
+    @Modifying
+    @Query(value = "INSERT INTO job_leases (job_name, leased_until) VALUES (:jobName, :now)", nativeQuery = true)
+    int insert(@Param("jobName") String jobName, @Param("now") LocalDateTime now);
+
+    /**
+     * Takes the lease if it is free or has run out; 0 when another instance holds it
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE JobLease l SET l.owner = :owner, l.leasedUntil = :until, l.lastStartedAt = :now
+		WHERE l.jobName = :jobName AND (l.owner IS NULL OR l.owner = :owner OR l.leasedUntil < :now)
+		""")
+    int acquire(
+            @Param("jobName") String jobName,
+            @Param("owner") String owner,
+            @Param("now") LocalDateTime now,
+            @Param("until") LocalDateTime until);
+
+    /**
+     * Saves the checkpoint and extends the lease; 0 when the lease has been taken over
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE JobLease l SET l.leasedUntil = :until, l.checkpoint = :checkpoint
+		WHERE l.jobName = :jobName AND l.owner = :owner
+		""")
+    int renew(
+            @Param("jobName") String jobName,
+            @Param("owner") String owner,
+            @Param("until") LocalDateTime until,
+            @Param("checkpoint") String checkpoint);
+
+    @Modifying
+    @Query(
+            """
+		UPDATE JobLease l SET l.owner = NULL, l.leasedUntil = :now, l.checkpoint = :checkpoint,
+			l.lastFinishedAt = :now, l.lastDurationMs = :durationMs, l.lastRows = :rows
+		WHERE l.jobName = :jobName AND l.owner = :owner
+		""")
+    int release(
+            @Param("jobName") String jobName,
+            @Param("owner") String owner,
+            @Param("now") LocalDateTime now,
+            @Param("checkpoint") String checkpoint,
+            @Param("durationMs") long durationMs,
+            @Param("rows") long rows);
+
+    @Query("SELECT l.checkpoint FROM JobLease l WHERE l.jobName = :jobName")
+    String findCheckpoint(@Param("jobName") String jobName);
+}
@@ -1,13 +1,18 @@
 package tourbooking.vietvivu.repository;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import tourbooking.vietvivu.entity.OtpVerification;
 
 public interface OtpVerificationRepository extends JpaRepository<OtpVerification, String> {
     OtpVerification findOtpVerificationByOtp(String otp);
 
-    void deleteByExpiredAtBefore(LocalDateTime time);
+    @Query("SELECT o.email FROM OtpVerification o WHERE o.expiredAt < :time")
+    List<String> findExpiredEmails(@Param("time") LocalDateTime time, Pageable limit);
 }
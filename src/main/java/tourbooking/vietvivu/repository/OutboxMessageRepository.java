@@ -0,0 +1,77 @@
+package tourbooking.vietvivu.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.OutboxMessage;
+import tourbooking.vietvivu.enumm.OutboxStatus;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    /**
+     * Up to {@code limit} pending messages that are due, oldest first, locked for us. SKIP LOCKED lets every
+     * instance poll at once without two of them taking the same message. Native for the same reason as
+     * {@link TourSeatStripeRepository#findFreeStripe}.
+     */
+    @Query(
+            value =
+                    """
+		SELECT * FROM outbox_messages
+		WHERE status = 'PENDING' AND next_attempt_at <= :now
+		ORDER BY message_id
+		LIMIT :limit
+		FOR UPDATE SKIP LOCKED
+		""",
+            nativeQuery = true)
+    List<OutboxMessage> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    /**
+     * Pushes claimed messages out of reach of other pollers while they are being delivered
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE OutboxMessage m SET m.attempts = m.attempts + 1, m.nextAttemptAt = :until
+		WHERE m.messageId IN :messageIds
+		""")
+    int claim(@Param("messageIds") Collection<Long> messageIds, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query(
+            """
+		UPDATE OutboxMessage m SET m.status = 'DONE',
+			m.processedAt = :now, m.lastError = NULL
+		WHERE m.messageId IN :messageIds AND m.status = 'PENDING'
+		""")
+    int markDone(@Param("messageIds") Collection<Long> messageIds, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query(
+            """
+		UPDATE OutboxMessage m SET m.nextAttemptAt = :next, m.lastError = :error
+		WHERE m.messageId = :messageId AND m.status = 'PENDING'
+		""")
+    int retryLater(@Param("messageId") Long messageId, @Param("next") LocalDateTime next, @Param("error") String error);
+
+    @Modifying
+    @Query(
+            """
+		UPDATE OutboxMessage m SET m.status = 'FAILED',
+			m.processedAt = :now, m.lastError = :error
+		WHERE m.messageId = :messageId AND m.status = 'PENDING'
+		""")
+    int markFailed(@Param("messageId") Long messageId, @Param("now") LocalDateTime now, @Param("error") String error);
+
+    @Query("SELECT m.messageId FROM OutboxMessage m WHERE m.status = :status AND m.processedAt < :before")
+    List<Long> findProcessedBefore(
+            @Param("status") OutboxStatus status, @Param("before") LocalDateTime before, Pageable limit);
+}
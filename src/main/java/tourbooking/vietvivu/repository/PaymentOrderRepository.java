@@ -0,0 +1,35 @@
+package tourbooking.vietvivu.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.PaymentOrder;
+
+@Repository
+public interface PaymentOrderRepository extends JpaRepository<PaymentOrder, Long> {
+
+    /** Registers a new order code, failing on the primary key if the code is already taken */
+    @Modifying
+    @Query(
+            value =
+                    """
+		INSERT INTO payment_orders (order_code, booking_id, tour_id, amount, created_at)
+		VALUES (:orderCode, :bookingId, :tourId, :amount, :now)
+		""",
+            nativeQuery = true)
+    int insert(
+            @Param("orderCode") long orderCode,
+            @Param("bookingId") String bookingId,
+            @Param("tourId") String tourId,
+            @Param("amount") Long amount,
+            @Param("now") LocalDateTime now);
+
+    @Query("SELECT o.bookingId FROM PaymentOrder o WHERE o.orderCode = :orderCode")
+    Optional<String> findBookingIdByOrderCode(@Param("orderCode") long orderCode);
+}
@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -17,4 +18,17 @@ public interface PromotionRepository extends JpaRepository<Promotion, String> {
 
     @Query("SELECT p FROM Promotion p WHERE p.endDate < :today")
     List<Promotion> findAndUpdateStatus(@Param("today") LocalDate today);
+
+    /**
+     * Uses the promotion {@code uses} times if it is active and has that many left, in one statement;
+     * returns 0, changing nothing, otherwise. The last use switches it off.
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE Promotion p SET p.quantity = p.quantity - :uses,
+			p.status = CASE WHEN p.quantity - :uses > 0 THEN p.status ELSE false END
+		WHERE p.promotionId = :promotionId AND p.status = true AND p.quantity >= :uses AND p.endDate >= :today
+		""")
+    int claim(@Param("promotionId") String promotionId, @Param("uses") int uses, @Param("today") LocalDate today);
 }
@@ -0,0 +1,33 @@
+package tourbooking.vietvivu.repository;
+
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.ReconciliationFinding;
+
+@Repository
+public interface ReconciliationFindingRepository extends JpaRepository<ReconciliationFinding, Long> {
+
+    /**
+     * Rows of (issue, count) over the run's findings
+     */
+    @Query("SELECT f.issue, COUNT(f) FROM ReconciliationFinding f WHERE f.runId = :runId GROUP BY f.issue")
+    List<Object[]> countByIssue(@Param("runId") String runId);
+
+    /**
+     * The run's findings after {@code afterId}, in the order they were found
+     */
+    @Query(
+            """
+		SELECT f FROM ReconciliationFinding f
+		WHERE f.runId = :runId AND f.findingId > :afterId
+		ORDER BY f.findingId
+		""")
+    List<ReconciliationFinding> findSliceAfter(
+            @Param("runId") String runId, @Param("afterId") long afterId, Pageable limit);
+}
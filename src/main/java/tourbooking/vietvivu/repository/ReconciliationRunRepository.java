@@ -0,0 +1,41 @@
+package tourbooking.vietvivu.repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.ReconciliationRun;
+
+@Repository
+public interface ReconciliationRunRepository extends JpaRepository<ReconciliationRun, String> {
+
+    Optional<ReconciliationRun> findFirstByOrderByStartedAtDesc();
+
+    /**
+     * Moves the run past a checked window and adds its counts, only if it still stands where the window
+     * starts ({@code from} is empty for the first window); 0 when another instance moved it meanwhile
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE ReconciliationRun r
+		SET r.position = :position, r.bookingsChecked = r.bookingsChecked + :bookings,
+			r.findings = r.findings + :findings
+		WHERE r.runId = :runId AND COALESCE(r.position, '') = :from
+		""")
+    int advance(
+            @Param("runId") String runId,
+            @Param("from") String from,
+            @Param("position") String position,
+            @Param("bookings") long bookings,
+            @Param("findings") long findings);
+
+    @Modifying
+    @Query("UPDATE ReconciliationRun r SET r.finishedAt = :now WHERE r.runId = :runId")
+    int finish(@Param("runId") String runId, @Param("now") LocalDateTime now);
+}
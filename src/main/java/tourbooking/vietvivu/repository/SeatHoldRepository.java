@@ -0,0 +1,43 @@
+package tourbooking.vietvivu.repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.SeatHold;
+
+@Repository
+public interface SeatHoldRepository extends JpaRepository<SeatHold, String> {
+
+    /**
+     * The given holds that have expired by {@code now}, locked so a payment for one of them waits
+     * until the expiry has committed
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM SeatHold h WHERE h.bookingId IN :bookingIds AND h.expiresAt <= :now")
+    List<SeatHold> lockExpired(@Param("bookingIds") Collection<String> bookingIds, @Param("now") LocalDateTime now);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM SeatHold h WHERE h.expiresAt <= :now ORDER BY h.expiresAt")
+    List<SeatHold> lockExpired(@Param("now") LocalDateTime now, Pageable limit);
+
+    /**
+     * Rows of (bookingId, expiresAt) for every open hold
+     */
+    @Query("SELECT h.bookingId, h.expiresAt FROM SeatHold h")
+    List<Object[]> findAllDeadlines();
+
+    @Modifying
+    @Query("DELETE FROM SeatHold h WHERE h.bookingId = :bookingId")
+    int deleteByBookingId(@Param("bookingId") String bookingId);
+}
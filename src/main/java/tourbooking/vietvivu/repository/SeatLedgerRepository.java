@@ -0,0 +1,58 @@
+package tourbooking.vietvivu.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.SeatLedgerEntry;
+
+@Repository
+public interface SeatLedgerRepository extends JpaRepository<SeatLedgerEntry, Long> {
+
+    /**
+     * Ids of entries not folded into a balance yet, oldest first
+     */
+    @Query("SELECT e.entryId FROM SeatLedgerEntry e WHERE e.compacted = false ORDER BY e.entryId")
+    List<Long> findUncompactedIds(Pageable limit);
+
+    /**
+     * Rows of (tourId, seats reserved, seats released, entries) over the given entries; resizes count as
+     * entries only, as they move the initial quantity rather than book seats
+     */
+    @Query(
+            """
+		SELECT e.tourId,
+			COALESCE(SUM(CASE WHEN e.reason <> 'RESIZE' AND e.delta < 0 THEN -e.delta ELSE 0 END), 0),
+			COALESCE(SUM(CASE WHEN e.reason <> 'RESIZE' AND e.delta > 0 THEN e.delta ELSE 0 END), 0),
+			COUNT(e)
+		FROM SeatLedgerEntry e
+		WHERE e.entryId IN :entryIds
+		GROUP BY e.tourId
+		""")
+    List<Object[]> sumByTour(@Param("entryIds") Collection<Long> entryIds);
+
+    @Modifying
+    @Query("UPDATE SeatLedgerEntry e SET e.compacted = true WHERE e.entryId IN :entryIds")
+    int markCompacted(@Param("entryIds") Collection<Long> entryIds);
+
+    /**
+     * (seats reserved, seats released, entries) of the tour's entries not folded into its balance yet
+     */
+    @Query(
+            """
+		SELECT COALESCE(SUM(CASE WHEN e.reason <> 'RESIZE' AND e.delta < 0 THEN -e.delta ELSE 0 END), 0),
+			COALESCE(SUM(CASE WHEN e.reason <> 'RESIZE' AND e.delta > 0 THEN e.delta ELSE 0 END), 0),
+			COUNT(e)
+		FROM SeatLedgerEntry e
+		WHERE e.tourId = :tourId AND e.compacted = false
+		""")
+    List<Object[]> sumUncompacted(@Param("tourId") String tourId);
+
+    List<SeatLedgerEntry> findByTourIdOrderByEntryIdDesc(String tourId, Pageable limit);
+}
@@ -1,12 +1,19 @@
 package tourbooking.vietvivu.repository;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -36,6 +43,30 @@ public interface TourRepository extends JpaRepository<Tour, String> {
 		""")
     Page<Tour> findAllPublicTours(Pageable pageable);
 
+    @Query(
+            """
+		SELECT COUNT(t) FROM Tour t
+		WHERE t.availability = true
+		AND t.tourStatus = tourbooking.vietvivu.enumm.TourStatus.OPEN_BOOKING
+		""")
+    long countPublicTours();
+
+    @Query("SELECT t.updatedAt FROM Tour t WHERE t.tourId = :tourId")
+    Optional<Instant> findUpdatedAtByTourId(@Param("tourId") String tourId);
+
+    /**
+     * Rows of (tourId, updatedAt) for every tour
+     */
+    @Query("SELECT t.tourId, t.updatedAt FROM Tour t")
+    List<Object[]> findAllVersions();
+
+    /**
+     * Moves updated_at for a change the tour row itself does not carry, such as its images
+     */
+    @Modifying
+    @Query("UPDATE Tour t SET t.updatedAt = instant WHERE t.tourId = :tourId")
+    int touch(@Param("tourId") String tourId);
+
     /**
      * Search tours for PUBLIC with pagination
      */
@@ -90,6 +121,64 @@ public interface TourRepository extends JpaRepository<Tour, String> {
             @Param("tourStatus") TourStatus tourStatus,
             Pageable pageable);
 
+    /**
+     * Keyset pagination in (startDate DESC NULLS FIRST, tourId) order: first slice
+     */
+    @Query(
+            """
+		SELECT t FROM Tour t
+		WHERE (:publicOnly = false
+			OR (t.availability = true AND t.tourStatus = tourbooking.vietvivu.enumm.TourStatus.OPEN_BOOKING))
+		ORDER BY t.startDate DESC NULLS FIRST, t.tourId ASC
+		""")
+    List<Tour> findFirstByStartDate(@Param("publicOnly") boolean publicOnly, Pageable limit);
+
+    /**
+     * Keyset pagination: tours after a dated tour
+     */
+    @Query(
+            """
+		SELECT t FROM Tour t
+		WHERE (:publicOnly = false
+			OR (t.availability = true AND t.tourStatus = tourbooking.vietvivu.enumm.TourStatus.OPEN_BOOKING))
+		AND (t.startDate < :startDate OR (t.startDate = :startDate AND t.tourId > :tourId))
+		ORDER BY t.startDate DESC NULLS FIRST, t.tourId ASC
+		""")
+    List<Tour> findAfterByStartDate(
+            @Param("publicOnly") boolean publicOnly,
+            @Param("startDate") LocalDate startDate,
+            @Param("tourId") String tourId,
+            Pageable limit);
+
+    /**
+     * Keyset pagination: tours after an undated tour (undated tours sort first)
+     */
+    @Query(
+            """
+		SELECT t FROM Tour t
+		WHERE (:publicOnly = false
+			OR (t.availability = true AND t.tourStatus = tourbooking.vietvivu.enumm.TourStatus.OPEN_BOOKING))
+		AND (t.startDate IS NOT NULL OR t.tourId > :tourId)
+		ORDER BY t.startDate DESC NULLS FIRST, t.tourId ASC
+		""")
+    List<Tour> findAfterUndated(
+            @Param("publicOnly") boolean publicOnly, @Param("tourId") String tourId, Pageable limit);
+
+    /**
+     * Up to {@code limit} tours following the tour ({@code afterStartDate}, {@code afterTourId}) in keyset
+     * order; the first slice when {@code afterTourId} is null
+     */
+    default List<Tour> findSliceAfter(boolean publicOnly, LocalDate afterStartDate, String afterTourId, int limit) {
+        Pageable first = PageRequest.of(0, limit);
+        if (afterTourId == null) {
+            return findFirstByStartDate(publicOnly, first);
+        }
+        if (afterStartDate == null) {
+            return findAfterUndated(publicOnly, afterTourId, first);
+        }
+        return findAfterByStartDate(publicOnly, afterStartDate, afterTourId, first);
+    }
+
     @Modifying(clearAutomatically = true)
     @Query(
             """
@@ -102,6 +191,161 @@ public interface TourRepository extends JpaRepository<Tour, String> {
 		""")
     void updateAllTourStatuses();
 
+    @Modifying
+    @Query(
+            "UPDATE Tour t SET t.tourStatus = :status, t.updatedAt = instant WHERE t.tourId IN :tourIds AND t.tourStatus <> :status")
+    int updateStatusByIds(@Param("tourIds") Collection<String> tourIds, @Param("status") TourStatus status);
+
+    @Modifying
+    @Query(
+            "UPDATE Tour t SET t.availability = false, t.updatedAt = instant WHERE t.tourId IN :tourIds AND t.quantity = 0")
+    int closeSoldOutByIds(@Param("tourIds") Collection<String> tourIds);
+
+    /**
+     * Takes {@code seats} seats only if that many are left, in one statement; returns 0 when there are not
+     * or when the tour has switched to striped inventory
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE Tour t SET t.quantity = t.quantity - :seats,
+			t.availability = CASE WHEN t.quantity - :seats > 0 THEN t.availability ELSE false END,
+			t.updatedAt = instant
+		WHERE t.tourId = :tourId AND t.quantity >= :seats AND t.seatStripes IS NULL
+		""")
+    int reserveSeats(@Param("tourId") String tourId, @Param("seats") int seats);
+
+    /**
+     * Gives {@code seats} seats back and reopens the tour; changes nothing when that would go above the
+     * initial quantity
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE Tour t SET t.quantity = t.quantity + :seats,
+			t.availability = true,
+			t.updatedAt = instant
+		WHERE t.tourId = :tourId AND t.seatStripes IS NULL
+		AND (t.initialQuantity IS NULL OR t.quantity + :seats <= t.initialQuantity)
+		""")
+    int releaseSeats(@Param("tourId") String tourId, @Param("seats") int seats);
+
+    /**
+     * How many seats fit back under the initial quantity of a single-row tour, with the row locked;
+     * null for a striped tour
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t.initialQuantity - t.quantity FROM Tour t WHERE t.tourId = :tourId AND t.seatStripes IS NULL")
+    Integer lockRoomToInitialQuantity(@Param("tourId") String tourId);
+
+    /**
+     * Moves the initial quantity of a single-row tour from {@code from} to {@code to} and the seats on sale
+     * with it; changes nothing when the initial quantity is no longer {@code from}, when a decrease would
+     * take more seats than are left or when the tour is striped
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE Tour t SET t.initialQuantity = :to,
+			t.quantity = t.quantity + :to - :from,
+			t.availability = CASE WHEN t.quantity + :to - :from = 0 THEN false WHEN t.quantity = 0 THEN true ELSE t.availability END,
+			t.updatedAt = instant
+		WHERE t.tourId = :tourId AND t.seatStripes IS NULL
+		AND COALESCE(t.initialQuantity, t.quantity) = :from AND t.quantity + :to - :from >= 0
+		""")
+    int resizeSeats(@Param("tourId") String tourId, @Param("from") int from, @Param("to") int to);
+
+    /**
+     * Sets the initial quantity of a striped tour, whose seats are resized on the stripes; changes nothing
+     * when it is no longer {@code from}
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE Tour t SET t.initialQuantity = :to, t.updatedAt = instant
+		WHERE t.tourId = :tourId AND COALESCE(t.initialQuantity, t.quantity) = :from
+		""")
+    int updateInitialQuantity(@Param("tourId") String tourId, @Param("from") int from, @Param("to") int to);
+
+    @Query("SELECT t.quantity FROM Tour t WHERE t.tourId = :tourId")
+    Integer findQuantityByTourId(@Param("tourId") String tourId);
+
+    @Query("SELECT t.seatStripes FROM Tour t WHERE t.tourId = :tourId")
+    Integer findSeatStripesByTourId(@Param("tourId") String tourId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Tour t WHERE t.tourId = :tourId")
+    Optional<Tour> findByIdForUpdate(@Param("tourId") String tourId);
+
+    @Modifying
+    @Query("UPDATE Tour t SET t.seatStripes = :stripes, t.updatedAt = instant WHERE t.tourId = :tourId")
+    int updateSeatStripes(@Param("tourId") String tourId, @Param("stripes") Integer stripes);
+
+    /**
+     * Rows of (tourId, quantity) for tours in striped inventory mode
+     */
+    @Query("SELECT t.tourId, t.quantity FROM Tour t WHERE t.seatStripes IS NOT NULL")
+    List<Object[]> findStripedQuantities();
+
+    /**
+     * Publishes the summed stripe seats as the tour's quantity: closes the tour when it reaches zero
+     * and reopens it when seats come back to a sold-out tour
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE Tour t SET t.quantity = :quantity,
+			t.availability = CASE WHEN :quantity = 0 THEN false WHEN t.quantity = 0 THEN true ELSE t.availability END,
+			t.updatedAt = instant
+		WHERE t.tourId = :tourId AND t.quantity <> :quantity
+		""")
+    int updateStripedQuantity(@Param("tourId") String tourId, @Param("quantity") int quantity);
+
+    /**
+     * Striped tours skip the per-booking counter update (it would lock the tour row again), so their
+     * booking count is recounted here, same definition as {@link #reconcileCounters()}
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE Tour t SET t.totalBookings = (SELECT COUNT(b) FROM Booking b WHERE b.tour.tourId = t.tourId),
+			t.updatedAt = instant
+		WHERE t.seatStripes IS NOT NULL
+		AND t.totalBookings <> (SELECT COUNT(b) FROM Booking b WHERE b.tour.tourId = t.tourId)
+		""")
+    int recountStripedTotalBookings();
+
+    @Modifying
+    @Query(
+            "UPDATE Tour t SET t.totalBookings = t.totalBookings + :delta, t.updatedAt = instant WHERE t.tourId = :tourId")
+    int adjustTotalBookings(@Param("tourId") String tourId, @Param("delta") int delta);
+
+    @Modifying
+    @Query(
+            "UPDATE Tour t SET t.favoriteCount = t.favoriteCount + :delta, t.updatedAt = instant WHERE t.tourId IN :tourIds")
+    int adjustFavoriteCount(@Param("tourIds") Collection<String> tourIds, @Param("delta") int delta);
+
+    /**
+     * Recount both counters from bookings and user_favorite, touching only rows that drifted
+     */
+    @Modifying
+    @Query(
+            value =
+                    """
+		UPDATE tours t
+		SET total_bookings = c.bookings, favorite_count = c.favorites, updated_at = now()
+		FROM (
+			SELECT x.tour_id,
+				(SELECT COUNT(*) FROM bookings b WHERE b.tour_id = x.tour_id) AS bookings,
+				(SELECT COUNT(*) FROM user_favorite uf WHERE uf.tour_id = x.tour_id) AS favorites
+			FROM tours x
+		) c
+		WHERE c.tour_id = t.tour_id
+		AND (t.total_bookings IS DISTINCT FROM c.bookings OR t.favorite_count IS DISTINCT FROM c.favorites)
+		""",
+            nativeQuery = true)
+    int reconcileCounters();
+
     @Query("SELECT new tourbooking.vietvivu.dto.response.TourSelectionResponse(t.id, t.title) FROM Tour t")
     List<TourSelectionResponse> findAllTourNames();
 
@@ -109,14 +353,11 @@ public interface TourRepository extends JpaRepository<Tour, String> {
     List<Tour> findAllToursIsAvailable();
 
     // Lấy những tour co booking nhiều
-    @Query(
-            """
+    @Query("""
 	SELECT t
 	FROM Tour t
-	LEFT JOIN t.bookings b
 	WHERE t.tourStatus = 'OPEN_BOOKING'
-	GROUP BY t
-	ORDER BY COUNT(b.bookingId) DESC
+	ORDER BY t.totalBookings DESC
 	LIMIT 3
 """)
     List<Tour> findHotTours();
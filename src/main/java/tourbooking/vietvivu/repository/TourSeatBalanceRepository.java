@@ -0,0 +1,33 @@
+package tourbooking.vietvivu.repository;
+
+import java.time.LocalDateTime;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.TourSeatBalance;
+
+@Repository
+public interface TourSeatBalanceRepository extends JpaRepository<TourSeatBalance, String> {
+
+    /**
+     * Adds a compacted chunk to the tour's balance; 0 when the tour has no balance row yet
+     */
+    @Modifying
+    @Query(
+            """
+		UPDATE TourSeatBalance b
+		SET b.reserved = b.reserved + :reserved, b.released = b.released + :released,
+			b.entries = b.entries + :entries, b.compactedAt = :now
+		WHERE b.tourId = :tourId
+		""")
+    int add(
+            @Param("tourId") String tourId,
+            @Param("reserved") long reserved,
+            @Param("released") long released,
+            @Param("entries") long entries,
+            @Param("now") LocalDateTime now);
+}
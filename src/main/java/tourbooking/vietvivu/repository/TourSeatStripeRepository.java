@@ -0,0 +1,68 @@
+package tourbooking.vietvivu.repository;
+
+import java.util.List;
+import java.util.Optional;
+
+import jakarta.persistence.LockModeType;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import tourbooking.vietvivu.entity.TourSeatStripe;
+
+@Repository
+public interface TourSeatStripeRepository extends JpaRepository<TourSeatStripe, TourSeatStripe.Key> {
+
+    /**
+     * The stripe, locked for us, if it holds at least {@code seats} seats and no other transaction has it
+     * locked. SKIP LOCKED means it never waits, so a booking holds at most one stripe before it falls back
+     * to a rebalance. Native because Hibernate only renders SKIP LOCKED for some dialects.
+     */
+    @Query(
+            value =
+                    """
+		SELECT * FROM tour_seat_stripes
+		WHERE tour_id = :tourId AND stripe = :stripe AND seats >= :seats
+		FOR UPDATE SKIP LOCKED
+		""",
+            nativeQuery = true)
+    Optional<TourSeatStripe> findFreeStripe(
+            @Param("tourId") String tourId, @Param("stripe") int stripe, @Param("seats") int seats);
+
+    /**
+     * Every stripe of the tour that no other transaction has locked, locked for us; never waits
+     */
+    @Query(value = "SELECT * FROM tour_seat_stripes WHERE tour_id = :tourId FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<TourSeatStripe> findUnlockedByTourId(@Param("tourId") String tourId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM TourSeatStripe s WHERE s.tourId = :tourId AND s.stripe = :stripe")
+    Optional<TourSeatStripe> findStripeForUpdate(@Param("tourId") String tourId, @Param("stripe") int stripe);
+
+    /**
+     * Rows of (stripe, seats) read without locking, so they are not cached as managed entities
+     */
+    @Query("SELECT s.stripe, s.seats FROM TourSeatStripe s WHERE s.tourId = :tourId")
+    List<Object[]> findSeatsByTourId(@Param("tourId") String tourId);
+
+    /**
+     * All stripes of a tour, locked in stripe order so concurrent releases and re-splits cannot deadlock
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM TourSeatStripe s WHERE s.tourId = :tourId ORDER BY s.stripe")
+    List<TourSeatStripe> findAllByTourIdForUpdate(@Param("tourId") String tourId);
+
+    /**
+     * Rows of (tourId, seats left across all stripes)
+     */
+    @Query("SELECT s.tourId, SUM(s.seats) FROM TourSeatStripe s GROUP BY s.tourId")
+    List<Object[]> sumSeatsPerTour();
+
+    @Modifying
+    @Query("DELETE FROM TourSeatStripe s WHERE s.tourId = :tourId")
+    int deleteAllByTourId(@Param("tourId") String tourId);
+}
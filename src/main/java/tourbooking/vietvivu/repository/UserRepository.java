@@ -1,8 +1,10 @@
 package tourbooking.vietvivu.repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
@@ -20,6 +22,8 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     Optional<User> findByUsername(String username);
 
+    List<User> findByUsernameIn(Collection<String> usernames);
+
     List<User> findByUsernameContainingIgnoreCaseOrPhoneNumberContaining(String username, String phoneNumber);
 
     @Query(
@@ -50,4 +54,10 @@ public interface UserRepository extends JpaRepository<User, String> {
             @Param("endTime") LocalDateTime endTime);
 
     User findUserByEmail(String email);
+
+    @Query("SELECT t.tourId FROM User u JOIN u.favoriteTours t WHERE u.username = :username")
+    Set<String> findFavoriteTourIdsByUsername(@Param("username") String username);
+
+    @Query("SELECT t.tourId FROM User u JOIN u.favoriteTours t WHERE u.id = :userId")
+    Set<String> findFavoriteTourIdsByUserId(@Param("userId") String userId);
 }
@@ -1,20 +1,35 @@
 package tourbooking.vietvivu.service;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import tourbooking.vietvivu.entity.Booking;
 import tourbooking.vietvivu.enumm.BookingStatus;
 import tourbooking.vietvivu.repository.BookingRepository;
+import tourbooking.vietvivu.service.hot.BookingActivityEvent;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
 
+/**
+ * Moves bookings along on a schedule so the read endpoints never write: pending bookings past their
+ * payment term are cancelled and their seats returned, bookings of finished tours are completed.
+ * Both work in chunks, one short transaction and a couple of set-based statements per chunk, and
+ * each runs under its own job lease so only one replica sweeps at a time.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class BookingLifecycleService {
 
@@ -23,20 +38,85 @@ public class BookingLifecycleService {
             BookingStatus.CONFIRMED_CHANGE,
             BookingStatus.DENIED_CANCELLATION,
             BookingStatus.DENIED_CHANGE);
+    private static final Duration LEASE = Duration.ofMinutes(10);
 
     private final BookingRepository bookingRepository;
+    private final SeatInventory seatInventory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JobLeaseRunner jobLeaseRunner;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    public BookingLifecycleService(
+            BookingRepository bookingRepository,
+            SeatInventory seatInventory,
+            ApplicationEventPublisher eventPublisher,
+            JobLeaseRunner jobLeaseRunner,
+            PlatformTransactionManager transactionManager,
+            @Value("${booking.lifecycle.chunk-size:500}") int chunkSize) {
+        this.bookingRepository = bookingRepository;
+        this.seatInventory = seatInventory;
+        this.eventPublisher = eventPublisher;
+        this.jobLeaseRunner = jobLeaseRunner;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @Scheduled(fixedDelayString = "${booking.lifecycle.sweep-interval-ms:300000}")
+    public void sweep() {
+        cancelOverdueBookings();
+        markCompletedBookings();
+    }
+
+    public void cancelOverdueBookings() {
+        // Each chunk cancels what it locked, so a rerun picks up where a failed one stopped
+        jobLeaseRunner.run("booking-cancel-overdue", LEASE, run -> {
+            int chunk;
+            do {
+                chunk = chunkTransaction.execute(status -> cancelOverdueChunk(LocalDateTime.now()));
+            } while (run.progress(chunk) && chunk == chunkSize);
+        });
+    }
 
-    @Transactional
-    @Scheduled(cron = "0 0 2 * * *")
     public void markCompletedBookings() {
-        LocalDate today = LocalDate.now();
-        List<Booking> bookings = bookingRepository.findBookingsToComplete(ELIGIBLE_STATUSES, today);
-        if (bookings.isEmpty()) {
-            return;
+        jobLeaseRunner.run("booking-complete", LEASE, run -> {
+            LocalDate today = LocalDate.now();
+            String after = run.resumeFrom() == null ? "" : run.resumeFrom();
+            List<String> ids;
+            do {
+                ids = bookingRepository.findIdsToComplete(
+                        ELIGIBLE_STATUSES, today, after, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                List<String> chunk = ids;
+                int completed =
+                        chunkTransaction.execute(status -> bookingRepository.completeByIds(chunk, ELIGIBLE_STATUSES));
+                after = ids.get(ids.size() - 1);
+                if (!run.checkpoint(after, completed)) {
+                    break;
+                }
+            } while (ids.size() == chunkSize);
+        });
+    }
+
+    private int cancelOverdueChunk(LocalDateTime now) {
+        List<Object[]> overdue = bookingRepository.lockOverdue(now, PageRequest.of(0, chunkSize));
+        if (overdue.isEmpty()) {
+            return 0;
         }
+        List<String> bookingIds = overdue.stream().map(row -> (String) row[0]).toList();
+        bookingRepository.cancelByIds(bookingIds);
 
-        bookings.forEach(booking -> booking.setBookingStatus(BookingStatus.COMPLETED));
-        bookingRepository.saveAll(bookings);
-        log.info("Marked {} bookings as COMPLETED (tour end date before {})", bookings.size(), today);
+        // One release per tour, however many of its bookings lapsed
+        Map<String, Map<String, Integer>> seatsPerTour = new HashMap<>();
+        for (Object[] row : overdue) {
+            seatsPerTour
+                    .computeIfAbsent((String) row[1], tourId -> new LinkedHashMap<>())
+                    .put((String) row[0], ((Number) row[2]).intValue());
+            eventPublisher.publishEvent(BookingActivityEvent.withdrawn((String) row[1], (LocalDateTime) row[3]));
+        }
+        seatsPerTour.forEach(seatInventory::releaseAll);
+        return overdue.size();
     }
 }
@@ -6,6 +6,7 @@ import java.time.temporal.ChronoUnit;
 import java.util.Arrays;
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -20,6 +21,9 @@ import tourbooking.vietvivu.enumm.BookingStatus;
 import tourbooking.vietvivu.exception.AppException;
 import tourbooking.vietvivu.exception.ErrorCode;
 import tourbooking.vietvivu.repository.*;
+import tourbooking.vietvivu.service.hold.SeatHoldService;
+import tourbooking.vietvivu.service.hot.BookingActivityEvent;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
 
 @Service
 @Slf4j
@@ -35,6 +39,10 @@ public class BookingRequestService {
     private final CheckoutRepository checkoutRepository;
     private final InvoiceRepository invoiceRepository;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SeatInventory seatInventory;
+    private final SeatHoldService seatHoldService;
+    private final TourCounterService tourCounterService;
 
     // Admin
     public List<BookingRequestResponse> getPendingRequests() {
@@ -118,6 +126,8 @@ public class BookingRequestService {
             booking.setBookingStatus(BookingStatus.CONFIRMED_CANCELLATION);
             restoreTourCapacity(booking);
             bookingRepository.save(booking);
+            eventPublisher.publishEvent(
+                    BookingActivityEvent.withdrawn(booking.getTour().getTourId(), booking.getBookingDate()));
 
             setHistoryRepository(bookingRequest, ActionType.CANCEL);
         } // CONFIRMED_CHANGE
@@ -134,13 +144,20 @@ public class BookingRequestService {
             Tour tourToRestore = bookingRequest.getOldTour() != null ? bookingRequest.getOldTour() : booking.getTour();
             Tour newTour = bookingRequest.getNewTour();
 
-            // Khôi phục số lượng cho tour cũ (cộng lại)
-            restoreTourCapacity(tourToRestore, booking.getNumAdults(), booking.getNumChildren());
-
-            // Trừ số lượng cho tour mới
-            reduceTourCapacity(newTour, booking.getNumAdults(), booking.getNumChildren());
+            // Chuyển chỗ sang tour mới; không đủ chỗ thì từ chối đổi tour thay vì bán quá số chỗ
+            seatInventory.transfer(
+                    tourToRestore.getTourId(), newTour.getTourId(), seatsOf(booking), booking.getBookingId());
 
             booking.setBookingStatus(BookingStatus.CONFIRMED_CHANGE);
+            // Striped tours get their booking count from the inventory sync, so their rows stay unlocked
+            tourCounterService.bookingMoved(
+                    booking.getTour().getSeatStripes() == null
+                            ? booking.getTour().getTourId()
+                            : null,
+                    newTour.getSeatStripes() == null ? newTour.getTourId() : null);
+            eventPublisher.publishEvent(
+                    BookingActivityEvent.withdrawn(booking.getTour().getTourId(), booking.getBookingDate()));
+            eventPublisher.publishEvent(BookingActivityEvent.booked(newTour.getTourId(), booking.getBookingDate()));
             booking.setTour(newTour);
             if (bookingRequest.getPromotion() != null) {
                 booking.setPromotion(bookingRequest.getPromotion());
@@ -455,50 +472,16 @@ public class BookingRequestService {
     }
 
     private void restoreTourCapacity(Booking booking) {
-        restoreTourCapacity(booking.getTour(), booking.getNumAdults(), booking.getNumChildren());
-    }
-
-    private void restoreTourCapacity(Tour tour, Integer adults, Integer children) {
-        if (tour == null) {
+        if (booking.getTour() == null) {
             log.warn("Cannot restore capacity because tour is null");
             return;
         }
-        int total = (adults != null ? adults : 0) + (children != null ? children : 0);
-        if (total <= 0) {
-            return;
-        }
-        Integer initialQuantity = tour.getInitialQuantity();
-        int updatedQuantity = tour.getQuantity() + total;
-        if (initialQuantity != null) {
-            updatedQuantity = Math.min(updatedQuantity, initialQuantity);
-        }
-        tour.setQuantity(updatedQuantity);
-        if (updatedQuantity > 0) {
-            tour.setAvailability(true);
-        }
-        tourRepository.save(tour);
+        seatHoldService.drop(booking.getBookingId());
+        seatInventory.release(booking.getTour().getTourId(), seatsOf(booking), booking.getBookingId());
     }
 
-    private void reduceTourCapacity(Tour tour, Integer adults, Integer children) {
-        if (tour == null) {
-            log.warn("Cannot reduce capacity because tour is null");
-            return;
-        }
-        int total = (adults != null ? adults : 0) + (children != null ? children : 0);
-        if (total <= 0) {
-            return;
-        }
-        int updatedQuantity = tour.getQuantity() - total;
-        // Đảm bảo quantity không âm
-        updatedQuantity = Math.max(updatedQuantity, 0);
-        tour.setQuantity(updatedQuantity);
-
-        // Nếu quantity = 0 thì set availability = false
-        if (updatedQuantity <= 0) {
-            tour.setAvailability(false);
-        }
-
-        tourRepository.save(tour);
-        log.info("Reduced {} slots from tour {}", total, tour.getTourId());
+    private static int seatsOf(Booking booking) {
+        return (booking.getNumAdults() != null ? booking.getNumAdults() : 0)
+                + (booking.getNumChildren() != null ? booking.getNumChildren() : 0);
     }
 }
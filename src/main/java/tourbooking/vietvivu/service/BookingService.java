@@ -3,10 +3,14 @@ package tourbooking.vietvivu.service;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.chrono.ChronoLocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Map;
 
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,6 +19,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import tourbooking.vietvivu.dto.request.BookingRequest;
 import tourbooking.vietvivu.dto.response.BookingResponse;
+import tourbooking.vietvivu.dto.response.CursorPage;
 import tourbooking.vietvivu.entity.*;
 import tourbooking.vietvivu.enumm.ActionType;
 import tourbooking.vietvivu.enumm.BookingStatus;
@@ -22,27 +27,33 @@ import tourbooking.vietvivu.enumm.PaymentStatus;
 import tourbooking.vietvivu.exception.AppException;
 import tourbooking.vietvivu.exception.ErrorCode;
 import tourbooking.vietvivu.repository.*;
+import tourbooking.vietvivu.service.booking.BookingCursor;
+import tourbooking.vietvivu.service.booking.BookingFilter;
+import tourbooking.vietvivu.service.booking.BookingRow;
+import tourbooking.vietvivu.service.hold.SeatHoldService;
+import tourbooking.vietvivu.service.hot.BookingActivityEvent;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class BookingService {
-    private static final Set<BookingStatus> COMPLETABLE_STATUSES = Set.of(
-            BookingStatus.CONFIRMED,
-            BookingStatus.CONFIRMED_CHANGE,
-            BookingStatus.DENIED_CANCELLATION,
-            BookingStatus.DENIED_CHANGE);
+    private static final int MAX_PAGE_SIZE = 100;
+
     private final TourRepository tourRepository;
     private final BookingRepository bookingRepository;
     private final UserRepository userRepository;
     private final PromotionRepository promotionRepository;
     private final ContactRepository contactRepository;
     private final HistoryRepository historyRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TourCounterService tourCounterService;
+    private final SeatInventory seatInventory;
+    private final SeatHoldService seatHoldService;
 
     // GET
     public List<BookingResponse> getBookingByUserId(String userId) {
-        List<Booking> bookings = bookingRepository.findByUser_Id(userId);
-        return bookings.stream().map(this::mapToBookingResponse).collect(Collectors.toList());
+        return toResponses(bookingRepository.findRowsByUserId(userId));
     }
 
     public List<BookingResponse> getMyBookings() {
@@ -50,85 +61,50 @@ public class BookingService {
         String username = context.getAuthentication().getName();
         User user =
                 userRepository.findByUsername(username).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
-        //        System.out.println(user.getUsername());
-        //        System.out.println(user.getId());
-        List<Booking> bookings = bookingRepository.findByUser_Id(user.getId());
-        return bookings.stream().map(this::mapToBookingResponse).collect(Collectors.toList());
+        return toResponses(bookingRepository.findRowsByUserId(user.getId()));
     }
 
-    private BookingResponse mapToBookingResponse(Booking booking) {
-        applyCompletionIfNecessary(booking);
-        Tour tour = booking.getTour();
-        applyCancellationIfOverdue(booking);
-        Promotion promotion = booking.getPromotion();
-
-        BookingResponse response = BookingResponse.builder()
-                .bookingId(booking.getBookingId())
-                .bookingDate(booking.getBookingDate())
-                .totalPrice(booking.getTotalPrice())
-                .bookingStatus(booking.getBookingStatus())
-                .paymentTerm(booking.getPaymentTerm())
-                .note(booking.getNote())
-                .build();
-
-        // Map user or contact information
-        if (booking.getUser() != null) {
-            User user = booking.getUser();
-            response.setName(user.getName());
-            response.setEmail(user.getEmail());
-            response.setPhone(user.getPhoneNumber());
-            response.setAddress(user.getAddress());
-        } else if (booking.getContact() != null) {
-            Contact contact = booking.getContact();
-            response.setName(contact.getName());
-            response.setEmail(contact.getEmail());
-            response.setPhone(contact.getPhoneNumber());
-            response.setAddress(contact.getAddress());
-        }
-
-        // Map tour information
-        if (tour != null) {
-            response.setTourId(tour.getTourId());
-            response.setTourTitle(tour.getTitle());
-            response.setTourDuration(tour.getDuration());
-            response.setTourDestination(tour.getDestination());
-            response.setImageUrl(
-                    tour.getImages() != null && !tour.getImages().isEmpty()
-                            ? tour.getImages().stream()
-                                    .findFirst()
-                                    .map(Image::getImageUrl)
-                                    .orElse(null)
-                            : null);
-            response.setPriceAdult(tour.getPriceAdult());
-            response.setPriceChild(tour.getPriceChild());
-        }
-
-        // Map promotion information
-        if (promotion != null) {
-            response.setPromotionCode(promotion.getPromotionId());
-            response.setDiscountAmount(promotion.getDiscount());
-        }
-        // remainingAmount luôn là tổng đã trừ khuyến mãi (totalPrice) nếu đã được tính sẵn
-        if (booking.getTotalPrice() != null) {
-            response.setRemainingAmount(booking.getTotalPrice());
-        }
-
-        // Map booking details
-        if (booking.getNumAdults() != null) {
-            response.setNumOfAdults(booking.getNumAdults());
-            if (tour != null && tour.getPriceAdult() != null) {
-                response.setTotalPriceAdults(booking.getNumAdults() * tour.getPriceAdult());
-            }
-        }
-
-        if (booking.getNumChildren() != null) {
-            response.setNumOfChildren(booking.getNumChildren());
-            if (tour != null && tour.getPriceChild() != null) {
-                response.setTotalPriceChildren(booking.getNumChildren() * tour.getPriceChild());
-            }
+    private static List<BookingResponse> toResponses(List<BookingRow> rows) {
+        List<BookingResponse> responses = new ArrayList<>(rows.size());
+        for (BookingRow row : rows) {
+            responses.add(toResponse(row));
         }
+        return responses;
+    }
 
-        return response;
+    private static BookingResponse toResponse(BookingRow row) {
+        // User details win over contact details
+        boolean byUser = row.userId() != null;
+        Double priceAdult = row.priceAdult();
+        Double priceChild = row.priceChild();
+        return BookingResponse.builder()
+                .bookingId(row.bookingId())
+                .bookingDate(row.bookingDate())
+                .totalPrice(row.totalPrice())
+                .bookingStatus(row.bookingStatus())
+                .paymentTerm(row.paymentTerm())
+                .note(row.note())
+                .name(byUser ? row.userName() : row.contactName())
+                .email(byUser ? row.userEmail() : row.contactEmail())
+                .phone(byUser ? row.userPhone() : row.contactPhone())
+                .address(byUser ? row.userAddress() : row.contactAddress())
+                .tourId(row.tourId())
+                .tourTitle(row.tourTitle())
+                .tourDuration(row.tourDuration())
+                .tourDestination(row.tourDestination())
+                .imageUrl(row.imageUrl())
+                .priceAdult(priceAdult)
+                .priceChild(priceChild)
+                .promotionCode(row.promotionId())
+                .discountAmount(row.discount())
+                // remainingAmount luôn là tổng đã trừ khuyến mãi (totalPrice) nếu đã được tính sẵn
+                .remainingAmount(row.totalPrice())
+                .numOfAdults(row.numAdults() == null ? 0 : row.numAdults())
+                .totalPriceAdults(row.numAdults() != null && priceAdult != null ? row.numAdults() * priceAdult : null)
+                .numOfChildren(row.numChildren() == null ? 0 : row.numChildren())
+                .totalPriceChildren(
+                        row.numChildren() != null && priceChild != null ? row.numChildren() * priceChild : null)
+                .build();
     }
 
     @Transactional(rollbackFor = Exception.class)
@@ -143,10 +119,7 @@ public class BookingService {
         //            throw new AppException(ErrorCode.DATE_NOT_AVAILABLE);
         //        }
 
-        // Check số lượng
-        if ((request.getNumOfAdults() + request.getNumOfChildren() > tour.getQuantity())) {
-            throw new AppException(ErrorCode.QUANTITY_NOT_ENOUGH);
-        }
+        int bookedQuantity = request.getNumOfAdults() + request.getNumOfChildren();
 
         Promotion promotion = null;
 
@@ -165,13 +138,10 @@ public class BookingService {
                 throw new AppException(ErrorCode.PROMOTION_NOT_AVAILABLE);
             }
 
-            // Trừ số lượng mã giảm giá
-            promotion.setQuantity(promotion.getQuantity() - 1);
-            if (promotion.getQuantity() == 0) {
-                promotion.setStatus(false);
+            // Trừ số lượng mã giảm giá trong một câu lệnh, cùng cách với đơn đặt theo nhóm
+            if (promotionRepository.claim(promotion.getPromotionId(), 1, LocalDate.now()) == 0) {
+                throw new AppException(ErrorCode.PROMOTION_NOT_AVAILABLE);
             }
-
-            promotionRepository.save(promotion);
         }
 
         Booking booking = new Booking();
@@ -233,17 +203,20 @@ public class BookingService {
         booking.setPaymentTerm(tour.getStartDate().minusDays(7).atStartOfDay());
         booking.setPromotion(promotion);
 
-        // Trừ số lượng tour
-        int bookedQuantity = request.getNumOfAdults() + request.getNumOfChildren();
-        tour.setQuantity(tour.getQuantity() - bookedQuantity);
-
-        if (tour.getQuantity() <= 0) {
-            tour.setAvailability(false);
-        }
-
-        tourRepository.save(tour);
-
         bookingRepository.save(booking);
+        // Giữ chỗ: kiểm tra và trừ số lượng trong một câu lệnh, tránh bán quá số chỗ.
+        // Gọi sau khi lưu booking để sổ chỗ ghi được mã booking.
+        seatInventory.reserve(tour.getTourId(), bookedQuantity, booking.getBookingId());
+        // Chỗ chỉ được giữ trong thời gian ngắn; quá hạn chưa thanh toán thì tự trả lại
+        LocalDateTime heldUntil = seatHoldService.hold(booking, bookedQuantity);
+        if (heldUntil.isBefore(booking.getPaymentTerm())) {
+            booking.setPaymentTerm(heldUntil);
+        }
+        // Striped tours get their booking count from the inventory sync, so the tour row stays unlocked
+        if (tour.getSeatStripes() == null) {
+            tourCounterService.bookingCreated(tour.getTourId());
+        }
+        eventPublisher.publishEvent(BookingActivityEvent.booked(tour.getTourId(), booking.getBookingDate()));
 
         // Tạo lịch sử booking
         History history = History.builder()
@@ -310,75 +283,122 @@ public class BookingService {
     }
 
     public BookingResponse getBookingById(String bookingId) {
-        Booking booking =
-                bookingRepository.findById(bookingId).orElseThrow(() -> new AppException(ErrorCode.BOOKING_NOT_FOUND));
-        return mapToBookingResponse(booking);
+        return toResponse(bookingRepository
+                .findRowById(bookingId)
+                .orElseThrow(() -> new AppException(ErrorCode.BOOKING_NOT_FOUND)));
     }
 
     public List<BookingResponse> getUserBookings(String userId) {
-        User user = userRepository.findById(userId).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        if (!userRepository.existsById(userId)) {
+            throw new AppException(ErrorCode.USER_NOT_EXISTED);
+        }
+        return toResponses(bookingRepository.findRowsByUserId(userId));
+    }
 
-        List<Booking> bookings = bookingRepository.findByUser(user);
+    public List<BookingResponse> getBookingsByTourId(String tourId) {
+        if (!tourRepository.existsById(tourId)) {
+            throw new AppException(ErrorCode.TOUR_NOT_FOUND);
+        }
+        return toResponses(bookingRepository.findRowsByTourId(tourId));
+    }
 
-        return bookings.stream().map(this::mapToBookingResponse).collect(Collectors.toList());
+    /**
+     * The current user's bookings, newest first, one keyset slice at a time
+     */
+    public CursorPage<BookingResponse> getMyBookingsByCursor(BookingFilter filter, String cursor, int size) {
+        String username = SecurityContextHolder.getContext().getAuthentication().getName();
+        User user =
+                userRepository.findByUsername(username).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_EXISTED));
+        return getBookingsOfUserByCursor(user.getId(), filter, cursor, size);
     }
 
-    // set cancelled theo payment term
-    private void applyCancellationIfOverdue(Booking booking) {
-        LocalDateTime paymentTerm = booking.getPaymentTerm();
-        if (paymentTerm != null
-                && booking.getBookingStatus() == BookingStatus.PENDING
-                && LocalDateTime.now().isAfter(paymentTerm)) {
-            booking.setBookingStatus(BookingStatus.CANCELLED);
-            restoreTourCapacity(booking);
-            bookingRepository.save(booking);
+    public CursorPage<BookingResponse> getUserBookingsByCursor(
+            String userId, BookingFilter filter, String cursor, int size) {
+        if (!userRepository.existsById(userId)) {
+            throw new AppException(ErrorCode.USER_NOT_EXISTED);
         }
+        return getBookingsOfUserByCursor(userId, filter, cursor, size);
     }
 
-    private void restoreTourCapacity(Booking booking) {
-        Tour tour = booking.getTour();
-        if (tour == null) {
-            log.warn("Cannot restore capacity because tour is null");
-            return;
-        }
-        int adults = booking.getNumAdults() != null ? booking.getNumAdults() : 0;
-        int children = booking.getNumChildren() != null ? booking.getNumChildren() : 0;
-        int total = adults + children;
-        if (total <= 0) {
-            return;
+    public CursorPage<BookingResponse> getBookingsByTourIdByCursor(
+            String tourId, BookingFilter filter, String cursor, int size) {
+        if (!tourRepository.existsById(tourId)) {
+            throw new AppException(ErrorCode.TOUR_NOT_FOUND);
         }
-        Integer initialQuantity = tour.getInitialQuantity();
-        int updatedQuantity = tour.getQuantity() + total;
-        if (initialQuantity != null) {
-            updatedQuantity = Math.min(updatedQuantity, initialQuantity);
-        }
-        tour.setQuantity(updatedQuantity);
-        if (updatedQuantity > 0) {
-            tour.setAvailability(true);
-        }
-        tourRepository.save(tour);
-        log.info("Restored {} slots to tour {} due to overdue cancellation", total, tour.getTourId());
+        int limit = clampPageSize(size);
+        BookingCursor after = BookingCursor.decode(cursor);
+        return toCursorPage(findKeysByTour(tourId, filter, after, limit + 1), limit);
     }
 
-    // set complete theo day
-    private void applyCompletionIfNecessary(Booking booking) {
-        Tour tour = booking.getTour();
-        if (tour == null || tour.getEndDate() == null) {
-            return;
-        }
+    private CursorPage<BookingResponse> getBookingsOfUserByCursor(
+            String userId, BookingFilter filter, String cursor, int size) {
+        int limit = clampPageSize(size);
+        BookingCursor after = BookingCursor.decode(cursor);
+        return toCursorPage(findKeysByUser(userId, filter, after, limit + 1), limit);
+    }
 
-        LocalDate today = LocalDate.now();
-        if (today.isAfter(tour.getEndDate()) && COMPLETABLE_STATUSES.contains(booking.getBookingStatus())) {
-            booking.setBookingStatus(BookingStatus.COMPLETED);
-            bookingRepository.save(booking);
+    /**
+     * Up to {@code limit} keys of the user's bookings following {@code after}; the first slice when it is null
+     */
+    private List<Object[]> findKeysByUser(String userId, BookingFilter filter, BookingCursor after, int limit) {
+        Pageable first = PageRequest.of(0, limit);
+        if (after == null) {
+            return bookingRepository.findFirstKeysByUser(
+                    userId, filter.status(), filter.fromTime(), filter.toTime(), first);
         }
+        return bookingRepository.findKeysByUserAfter(
+                userId,
+                filter.status(),
+                filter.fromTime(),
+                filter.toTime(),
+                after.bookingDate(),
+                after.bookingId(),
+                first);
     }
 
-    public List<BookingResponse> getBookingsByTourId(String tourId) {
-        Tour tour = tourRepository.findById(tourId).orElseThrow(() -> new AppException(ErrorCode.TOUR_NOT_FOUND));
+    private List<Object[]> findKeysByTour(String tourId, BookingFilter filter, BookingCursor after, int limit) {
+        Pageable first = PageRequest.of(0, limit);
+        if (after == null) {
+            return bookingRepository.findFirstKeysByTour(
+                    tourId, filter.status(), filter.fromTime(), filter.toTime(), first);
+        }
+        return bookingRepository.findKeysByTourAfter(
+                tourId,
+                filter.status(),
+                filter.fromTime(),
+                filter.toTime(),
+                after.bookingDate(),
+                after.bookingId(),
+                first);
+    }
 
-        List<Booking> bookings = bookingRepository.findByTour(tour);
+    /**
+     * Reads the bookings of one slice of (bookingId, bookingDate) keys in a single select and keeps the key order
+     */
+    private CursorPage<BookingResponse> toCursorPage(List<Object[]> keys, int size) {
+        boolean hasMore = keys.size() > size;
+        List<Object[]> slice = hasMore ? keys.subList(0, size) : keys;
+        List<String> ids = slice.stream().map(row -> (String) row[0]).toList();
+        Map<String, BookingRow> byId = new HashMap<>(ids.size() * 2);
+        if (!ids.isEmpty()) {
+            bookingRepository.findRowsByIds(ids).forEach(row -> byId.put(row.bookingId(), row));
+        }
+        List<BookingResponse> items = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            BookingRow row = byId.get(id);
+            // Deleted between the two selects; the cursor still moves past it
+            if (row != null) {
+                items.add(toResponse(row));
+            }
+        }
+        Object[] last = hasMore ? slice.getLast() : null;
+        return CursorPage.<BookingResponse>builder()
+                .items(items)
+                .nextCursor(last == null ? null : new BookingCursor((LocalDateTime) last[1], (String) last[0]).encode())
+                .build();
+    }
 
-        return bookings.stream().map(this::mapToBookingResponse).collect(Collectors.toList());
+    private static int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
     }
 }
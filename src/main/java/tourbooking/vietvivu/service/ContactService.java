@@ -4,6 +4,7 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -21,6 +22,9 @@ import tourbooking.vietvivu.enumm.BookingStatus;
 import tourbooking.vietvivu.exception.AppException;
 import tourbooking.vietvivu.exception.ErrorCode;
 import tourbooking.vietvivu.repository.*;
+import tourbooking.vietvivu.service.hold.SeatHoldService;
+import tourbooking.vietvivu.service.hot.BookingActivityEvent;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
 
 @Service
 @Slf4j
@@ -29,9 +33,11 @@ public class ContactService {
 
     private final ContactRepository contactRepository;
     private final BookingRepository bookingRepository;
-    private final TourRepository tourRepository;
     private final HistoryRepository historyRepository;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SeatInventory seatInventory;
+    private final SeatHoldService seatHoldService;
 
     public PaginationResponse<ContactResponse> getAllContacts(int page, int size) {
         Pageable pageable =
@@ -66,21 +72,24 @@ public class ContactService {
             throw new AppException(ErrorCode.BOOKING_NOT_FOUND);
         }
 
-        // Validate booking can be cancelled
-        BookingStatus currentStatus = booking.getBookingStatus();
-        if (currentStatus == BookingStatus.CANCELLED
-                || currentStatus == BookingStatus.CONFIRMED_CANCELLATION
-                || currentStatus == BookingStatus.COMPLETED) {
+        // Drop the seat hold first: it waits for an expiry that is running, and a late payment can no
+        // longer take the released seats as still held
+        seatHoldService.drop(booking.getBookingId());
+
+        // Validate and update the booking status in one conditional update, so a concurrent expiry or
+        // cancellation cannot have the seats released twice
+        if (bookingRepository.cancelByContact(booking.getBookingId()) == 0) {
             throw new AppException(ErrorCode.BOOKING_STATUS_INVALID);
         }
-
-        // Update booking status
-        booking.setBookingStatus(BookingStatus.CONFIRMED_CANCELLATION);
+        contact =
+                contactRepository.findById(contactId).orElseThrow(() -> new AppException(ErrorCode.CONTACT_NOT_FOUND));
+        booking = contact.getBooking();
 
         // Restore tour capacity
         restoreTourCapacity(booking);
 
-        bookingRepository.save(booking);
+        eventPublisher.publishEvent(
+                BookingActivityEvent.withdrawn(booking.getTour().getTourId(), booking.getBookingDate()));
 
         // Save history
         saveHistory(contact, booking, ActionType.CANCEL);
@@ -110,26 +119,8 @@ public class ContactService {
 
         int adults = booking.getNumAdults() != null ? booking.getNumAdults() : 0;
         int children = booking.getNumChildren() != null ? booking.getNumChildren() : 0;
-        int total = adults + children;
-
-        if (total <= 0) {
-            return;
-        }
-
-        Integer initialQuantity = tour.getInitialQuantity();
-        int updatedQuantity = tour.getQuantity() + total;
-
-        if (initialQuantity != null) {
-            updatedQuantity = Math.min(updatedQuantity, initialQuantity);
-        }
-
-        tour.setQuantity(updatedQuantity);
-        if (updatedQuantity > 0) {
-            tour.setAvailability(true);
-        }
-
-        tourRepository.save(tour);
-        log.info("Restored {} slots to tour {}", total, tour.getTourId());
+        seatInventory.release(tour.getTourId(), adults + children, booking.getBookingId());
+        log.info("Restored {} slots to tour {}", adults + children, tour.getTourId());
     }
 
     private void saveHistory(Contact contact, Booking booking, ActionType actionType) {
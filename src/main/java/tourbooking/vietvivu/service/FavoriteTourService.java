@@ -1,10 +1,10 @@
 package tourbooking.vietvivu.service;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import jakarta.transaction.Transactional;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
@@ -16,9 +16,10 @@ import tourbooking.vietvivu.entity.Tour;
 import tourbooking.vietvivu.entity.User;
 import tourbooking.vietvivu.exception.AppException;
 import tourbooking.vietvivu.exception.ErrorCode;
-import tourbooking.vietvivu.mapper.TourMapper;
+import tourbooking.vietvivu.mapper.TourResponseAssembler;
 import tourbooking.vietvivu.repository.TourRepository;
 import tourbooking.vietvivu.repository.UserRepository;
+import tourbooking.vietvivu.service.catalog.TourChangedEvent;
 
 @Service
 @RequiredArgsConstructor
@@ -27,7 +28,9 @@ public class FavoriteTourService {
 
     private final TourRepository tourRepository;
     private final UserRepository userRepository;
-    private final TourMapper tourMapper;
+    private final TourResponseAssembler tourResponseAssembler;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TourCounterService tourCounterService;
 
     /**
      * Add tour to favorites - AUTHENTICATED USER
@@ -57,6 +60,8 @@ public class FavoriteTourService {
 
             user.getFavoriteTours().add(tour);
             userRepository.save(user);
+            tourCounterService.favoriteAdded(tourId);
+            eventPublisher.publishEvent(new TourChangedEvent(tourId));
             log.info("Successfully added tour {} to favorites for user {}", tourId, username);
 
         } catch (AppException e) {
@@ -89,8 +94,11 @@ public class FavoriteTourService {
                 return new AppException(ErrorCode.TOUR_NOT_FOUND);
             });
 
-            user.getFavoriteTours().remove(tour);
-            userRepository.save(user);
+            if (user.getFavoriteTours().remove(tour)) {
+                userRepository.save(user);
+                tourCounterService.favoritesRemoved(List.of(tourId));
+            }
+            eventPublisher.publishEvent(new TourChangedEvent(tourId));
             log.info("Successfully removed tour {} from favorites for user {}", tourId, username);
 
         } catch (AppException e) {
@@ -117,9 +125,7 @@ public class FavoriteTourService {
                 return new AppException(ErrorCode.USER_NOT_EXISTED);
             });
 
-            List<TourResponse> favoriteTours = user.getFavoriteTours().stream()
-                    .map(tourMapper::toTourResponse)
-                    .collect(Collectors.toList());
+            List<TourResponse> favoriteTours = tourResponseAssembler.toResponses(user.getFavoriteTours());
 
             log.info("Found {} favorite tours for user {}", favoriteTours.size(), username);
             return favoriteTours;
@@ -1,23 +1,50 @@
 package tourbooking.vietvivu.service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import lombok.RequiredArgsConstructor;
 import tourbooking.vietvivu.repository.OtpVerificationRepository;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
 
 @Service
-@RequiredArgsConstructor
 public class OtpCleanupService {
 
+    private static final String JOB_NAME = "otp-cleanup";
+    private static final Duration LEASE = Duration.ofMinutes(2);
+    private static final int CHUNK_SIZE = 1000;
+
     private final OtpVerificationRepository otpRepo;
+    private final JobLeaseRunner jobLeaseRunner;
+    private final TransactionTemplate chunkTransaction;
+
+    public OtpCleanupService(
+            OtpVerificationRepository otpRepo,
+            JobLeaseRunner jobLeaseRunner,
+            PlatformTransactionManager transactionManager) {
+        this.otpRepo = otpRepo;
+        this.jobLeaseRunner = jobLeaseRunner;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+    }
 
-    @Transactional
     @Scheduled(fixedRate = 5 * 60 * 1000)
     public void cleanExpiredOtp() {
-        otpRepo.deleteByExpiredAtBefore(LocalDateTime.now());
+        jobLeaseRunner.run(JOB_NAME, LEASE, run -> {
+            LocalDateTime now = LocalDateTime.now();
+            int deleted;
+            do {
+                deleted = chunkTransaction.execute(status -> {
+                    List<String> emails = otpRepo.findExpiredEmails(now, PageRequest.of(0, CHUNK_SIZE));
+                    otpRepo.deleteAllByIdInBatch(emails);
+                    return emails.size();
+                });
+            } while (run.progress(deleted) && deleted == CHUNK_SIZE);
+        });
     }
 }
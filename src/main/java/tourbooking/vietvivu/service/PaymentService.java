@@ -1,13 +1,18 @@
 package tourbooking.vietvivu.service;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import tourbooking.vietvivu.dto.request.EmailRequest;
 import tourbooking.vietvivu.dto.request.PaymentRequest;
@@ -17,10 +22,18 @@ import tourbooking.vietvivu.entity.Booking;
 import tourbooking.vietvivu.entity.Checkout;
 import tourbooking.vietvivu.entity.Invoice;
 import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.enumm.OutboxTopic;
 import tourbooking.vietvivu.enumm.PaymentStatus;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
 import tourbooking.vietvivu.repository.BookingRepository;
 import tourbooking.vietvivu.repository.CheckoutRepository;
 import tourbooking.vietvivu.repository.InvoiceRepository;
+import tourbooking.vietvivu.repository.PaymentOrderRepository;
+import tourbooking.vietvivu.service.hold.SeatHoldService;
+import tourbooking.vietvivu.service.outbound.OutboundGuard;
+import tourbooking.vietvivu.service.outbox.OutboxService;
+import tourbooking.vietvivu.service.payment.OrderCodeGenerator;
 import vn.payos.*;
 import vn.payos.PayOS;
 import vn.payos.model.v2.paymentRequests.CreatePaymentLinkRequest;
@@ -29,18 +42,47 @@ import vn.payos.model.v2.paymentRequests.PaymentLinkItem;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class PaymentService {
+    private static final int MAX_ORDER_CODE_ATTEMPTS = 3;
+
     private final PayOS payOS;
+    private final OutboundGuard payOSGuard;
 
     private final CheckoutRepository checkoutRepository;
     private final InvoiceRepository invoiceRepository;
     private final BookingRepository bookingRepository;
-    private final EmailService emailService;
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final OutboxService outboxService;
+    private final SeatHoldService seatHoldService;
+    private final OrderCodeGenerator orderCodeGenerator;
+    private final TransactionTemplate orderTransaction;
+
+    public PaymentService(
+            PayOS payOS,
+            @Qualifier("payOSGuard") OutboundGuard payOSGuard,
+            CheckoutRepository checkoutRepository,
+            InvoiceRepository invoiceRepository,
+            BookingRepository bookingRepository,
+            PaymentOrderRepository paymentOrderRepository,
+            OutboxService outboxService,
+            SeatHoldService seatHoldService,
+            OrderCodeGenerator orderCodeGenerator,
+            PlatformTransactionManager transactionManager) {
+        this.payOS = payOS;
+        this.payOSGuard = payOSGuard;
+        this.checkoutRepository = checkoutRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.bookingRepository = bookingRepository;
+        this.paymentOrderRepository = paymentOrderRepository;
+        this.outboxService = outboxService;
+        this.seatHoldService = seatHoldService;
+        this.orderCodeGenerator = orderCodeGenerator;
+        this.orderTransaction = new TransactionTemplate(transactionManager);
+    }
 
     public Map<String, Object> createPayment(PaymentRequest request) throws Exception {
 
-        long orderCode = System.currentTimeMillis() / 1000;
+        long orderCode = registerOrder(request);
 
         CreatePaymentLinkRequest paymentData = CreatePaymentLinkRequest.builder()
                 .orderCode(orderCode)
@@ -55,9 +97,11 @@ public class PaymentService {
                         .build())
                 .build();
 
-        CreatePaymentLinkResponse response = payOS.paymentRequests().create(paymentData);
+        CreatePaymentLinkResponse response =
+                payOSGuard.call(() -> payOS.paymentRequests().create(paymentData));
 
         Map<String, Object> result = new HashMap<>();
+        result.put("orderCode", orderCode);
         result.put("checkoutUrl", response.getCheckoutUrl());
         result.put("qrCode", response.getQrCode()); // QR IMAGE URL
         result.put("paymentLinkId", response.getPaymentLinkId()); // dùng nhúng iframe
@@ -65,11 +109,54 @@ public class PaymentService {
         return result;
     }
 
+    /**
+     * Takes a fresh order code and records which booking it pays for before PayOS sees it. A code that is
+     * already taken can only come from two nodes sharing a node id; the primary key rejects it and we draw again.
+     * A payment for no booking, or for one that does not exist, is refused: the webhook could never confirm it.
+     */
+    private long registerOrder(PaymentRequest request) {
+        if (request.getBookingId() == null || !bookingRepository.existsById(request.getBookingId())) {
+            throw new AppException(ErrorCode.BOOKING_NOT_FOUND);
+        }
+        for (int attempt = 1; ; attempt++) {
+            long orderCode = orderCodeGenerator.next();
+            try {
+                orderTransaction.executeWithoutResult(status -> paymentOrderRepository.insert(
+                        orderCode,
+                        request.getBookingId(),
+                        request.getTourId(),
+                        request.getAmount(),
+                        LocalDateTime.now()));
+                return orderCode;
+            } catch (DataIntegrityViolationException e) {
+                if (attempt == MAX_ORDER_CODE_ATTEMPTS) {
+                    throw e;
+                }
+                log.warn("Order code {} is already taken; check payment.order-code.node-id on each node", orderCode);
+            }
+        }
+    }
+
     @Transactional
     public PaymentSuccessResponse handlePaymentSuccess(PaymentSuccessRequest request) {
+        // Claim the held seats first, so the booking read below reflects an expiry that just ran
+        seatHoldService.confirm(request.getBookingId());
+        // Locked, so a PayOS webhook for the same booking waits and then sees it paid
         Booking booking = bookingRepository
-                .findById(request.getBookingId())
+                .findByIdForUpdate(request.getBookingId())
                 .orElseThrow(() -> new RuntimeException("Booking not found"));
+        if (booking.getPaymentStatus() == PaymentStatus.PAID) {
+            // A retried callback: answer with what the first one recorded instead of paying twice
+            List<Checkout> checkouts = checkoutRepository.findWithInvoiceByBookingId(booking.getBookingId());
+            if (!checkouts.isEmpty()) {
+                log.info("Booking {} is already paid; returning its checkout", booking.getBookingId());
+                return toResponse(booking, checkouts.get(0), checkouts.get(0).getInvoice());
+            }
+        }
+        if (booking.getBookingStatus() == BookingStatus.CONFIRMED_CANCELLATION) {
+            // Cancelled by its contact: its seats are already back on sale, so it cannot be confirmed
+            throw new AppException(ErrorCode.BOOKING_STATUS_INVALID);
+        }
 
         Checkout checkout = Checkout.builder()
                 .paymentMethod(request.getPaymentMethod())
@@ -100,38 +187,44 @@ public class PaymentService {
         } else {
             email = booking.getContact().getEmail();
         }
-        // Send invoice email
-        emailService.sendInvoiceEmail(EmailRequest.builder()
-                .recipient(email)
-                .subject("Your Invoice for Booking " + booking.getBookingId())
-                .bookingId(booking.getBookingId())
-                .bookingDate(booking.getBookingDate())
-                .tourTitle(booking.getTour().getTitle())
-                .tourDestination(booking.getTour().getDestination())
-                .tourDuration(booking.getTour().getDuration())
-                .numAdults(booking.getNumAdults())
-                .numChildren(booking.getNumChildren())
-                .priceAdult(booking.getTour().getPriceAdult())
-                .priceChild(booking.getTour().getPriceChild())
-                .totalPrice(booking.getTotalPrice())
-                .discountAmount(booking.getTotalPrice() - checkout.getAmount())
-                .finalAmount(checkout.getAmount())
-                .note(booking.getNote())
-                .paymentMethod(checkout.getPaymentMethod())
-                .paymentStatus(checkout.getPaymentStatus())
-                .transactionId(checkout.getTransactionId())
-                .invoiceId(invoice.getInvoiceId())
-                .invoiceDate(invoice.getDateIssued())
-                .build());
+        // Invoice email goes out after commit, so SMTP neither holds this transaction nor can roll back the payment
+        outboxService.enqueue(
+                OutboxTopic.INVOICE_EMAIL,
+                EmailRequest.builder()
+                        .recipient(email)
+                        .subject("Your Invoice for Booking " + booking.getBookingId())
+                        .bookingId(booking.getBookingId())
+                        .bookingDate(booking.getBookingDate())
+                        .tourTitle(booking.getTour().getTitle())
+                        .tourDestination(booking.getTour().getDestination())
+                        .tourDuration(booking.getTour().getDuration())
+                        .numAdults(booking.getNumAdults())
+                        .numChildren(booking.getNumChildren())
+                        .priceAdult(booking.getTour().getPriceAdult())
+                        .priceChild(booking.getTour().getPriceChild())
+                        .totalPrice(booking.getTotalPrice())
+                        .discountAmount(booking.getTotalPrice() - checkout.getAmount())
+                        .finalAmount(checkout.getAmount())
+                        .note(booking.getNote())
+                        .paymentMethod(checkout.getPaymentMethod())
+                        .paymentStatus(checkout.getPaymentStatus())
+                        .transactionId(checkout.getTransactionId())
+                        .invoiceId(invoice.getInvoiceId())
+                        .invoiceDate(invoice.getDateIssued())
+                        .build());
+
+        return toResponse(booking, checkout, invoice);
+    }
 
+    private static PaymentSuccessResponse toResponse(Booking booking, Checkout checkout, Invoice invoice) {
         return PaymentSuccessResponse.builder()
                 .checkoutId(checkout.getCheckoutId())
-                .invoiceId(invoice.getInvoiceId())
-                .transactionId(request.getTransactionId())
-                .amount(request.getAmount())
+                .invoiceId(invoice == null ? null : invoice.getInvoiceId())
+                .transactionId(checkout.getTransactionId())
+                .amount(checkout.getAmount())
                 .bookingId(booking.getBookingId())
                 .paymentDate(checkout.getPaymentDate())
-                .invoiceDate(invoice.getDateIssued())
+                .invoiceDate(invoice == null ? null : invoice.getDateIssued())
                 .build();
     }
 }
@@ -0,0 +1,79 @@
+package tourbooking.vietvivu.service;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.repository.TourRepository;
+
+/**
+ * Keeps the denormalized tours.total_bookings / tours.favorite_count columns in step with
+ * bookings and user_favorite. Every change is an atomic increment in the caller's transaction;
+ * a recount at startup repairs any drift (and backfills the columns the first time).
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class TourCounterService {
+
+    TourRepository tourRepository;
+
+    @Transactional
+    public void bookingCreated(String tourId) {
+        tourRepository.adjustTotalBookings(tourId, 1);
+    }
+
+    @Transactional
+    public void bookingsCreated(String tourId, int count) {
+        tourRepository.adjustTotalBookings(tourId, count);
+    }
+
+    /**
+     * Either id is null when that side has no counter to move, as for a striped tour
+     */
+    @Transactional
+    public void bookingMoved(String fromTourId, String toTourId) {
+        if (fromTourId != null && fromTourId.equals(toTourId)) {
+            return;
+        }
+        if (fromTourId != null) {
+            tourRepository.adjustTotalBookings(fromTourId, -1);
+        }
+        if (toTourId != null) {
+            tourRepository.adjustTotalBookings(toTourId, 1);
+        }
+    }
+
+    @Transactional
+    public void favoriteAdded(String tourId) {
+        tourRepository.adjustFavoriteCount(List.of(tourId), 1);
+    }
+
+    @Transactional
+    public void favoritesRemoved(Collection<String> tourIds) {
+        if (!tourIds.isEmpty()) {
+            tourRepository.adjustFavoriteCount(tourIds, -1);
+        }
+    }
+
+    // Runs before the tour catalog warms up so it loads reconciled counters
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @Transactional
+    public void reconcile() {
+        long started = System.currentTimeMillis();
+        int updated = tourRepository.reconcileCounters();
+        log.info("Reconciled tour counters: {} tours updated in {} ms", updated, System.currentTimeMillis() - started);
+    }
+}
@@ -1,17 +1,16 @@
 package tourbooking.vietvivu.service;
 
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import jakarta.transaction.Transactional;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -29,7 +28,9 @@ import tourbooking.vietvivu.dto.request.TourCreateRequest;
 import tourbooking.vietvivu.dto.request.TourScheduleChangeNotification;
 import tourbooking.vietvivu.dto.request.TourSearchRequest;
 import tourbooking.vietvivu.dto.request.TourUpdateRequest;
+import tourbooking.vietvivu.dto.response.CursorPage;
 import tourbooking.vietvivu.dto.response.PaginationResponse;
+import tourbooking.vietvivu.dto.response.TourFacetedSearchResponse;
 import tourbooking.vietvivu.dto.response.TourResponse;
 import tourbooking.vietvivu.dto.response.TourSelectionResponse;
 import tourbooking.vietvivu.entity.Booking;
@@ -37,12 +38,25 @@ import tourbooking.vietvivu.entity.Image;
 import tourbooking.vietvivu.entity.Tour;
 import tourbooking.vietvivu.entity.User;
 import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.enumm.HotTourWindow;
 import tourbooking.vietvivu.enumm.TourStatus;
 import tourbooking.vietvivu.exception.AppException;
 import tourbooking.vietvivu.exception.ErrorCode;
 import tourbooking.vietvivu.mapper.TourMapper;
+import tourbooking.vietvivu.mapper.TourResponseAssembler;
 import tourbooking.vietvivu.repository.BookingRepository;
 import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.repository.TourSeatStripeRepository;
+import tourbooking.vietvivu.service.catalog.ResourceVersion;
+import tourbooking.vietvivu.service.catalog.TourCatalog;
+import tourbooking.vietvivu.service.catalog.TourChangedEvent;
+import tourbooking.vietvivu.service.catalog.TourCursor;
+import tourbooking.vietvivu.service.catalog.TourDurations;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
+import tourbooking.vietvivu.service.hot.HotTourLeaderboard;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
+import tourbooking.vietvivu.service.search.TourSearchEngine;
+import tourbooking.vietvivu.service.status.TourStatusPolicy;
 
 @Service
 @RequiredArgsConstructor
@@ -50,11 +64,21 @@ import tourbooking.vietvivu.repository.TourRepository;
 @Slf4j
 public class TourService {
 
+    static final int MAX_HOT_TOURS = 50;
+    private static final int MAX_PAGE_SIZE = 100;
+
     TourRepository tourRepository;
+    TourSeatStripeRepository tourSeatStripeRepository;
     TourMapper tourMapper;
     CloudinaryService cloudinaryService;
     EmailService emailService;
     BookingRepository bookingRepository;
+    TourResponseAssembler tourResponseAssembler;
+    HotTourLeaderboard hotTourLeaderboard;
+    TourCatalog tourCatalog;
+    TourSearchEngine tourSearchEngine;
+    SeatInventory seatInventory;
+    ApplicationEventPublisher eventPublisher;
 
     /**
      * Get all tours for PUBLIC (User & Guest) with pagination
@@ -64,12 +88,15 @@ public class TourService {
         log.info("Getting all tours for public with pagination: page={}, size={}", page, size);
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("startDate").descending());
-        Page<Tour> tourPage = tourRepository.findAllPublicTours(pageable);
 
-        tourPage.getContent().forEach(this::updateTourStatus);
+        if (tourCatalog.isReady()) {
+            Page<TourSnapshot> snapshotPage = tourCatalog.findPublicTours(pageable);
+            return toPaginationResponse(snapshotPage);
+        }
 
-        List<TourResponse> responses =
-                tourPage.getContent().stream().map(tourMapper::toTourResponse).toList();
+        Page<Tour> tourPage = tourRepository.findAllPublicTours(pageable);
+
+        List<TourResponse> responses = tourResponseAssembler.toResponses(tourPage.getContent());
 
         log.info(
                 "Found {} OPEN_BOOKING tours on page {} out of {} total pages",
@@ -97,15 +124,12 @@ public class TourService {
         Pageable pageable = PageRequest.of(page, size, Sort.by("startDate").descending());
         Page<Tour> tourPage = tourRepository.findAll(pageable);
 
-        tourPage.getContent().forEach(this::updateTourStatus);
-
         log.info(
                 "Retrieved {} tours from database on page {}",
                 tourPage.getContent().size(),
                 page);
 
-        List<TourResponse> responses =
-                tourPage.getContent().stream().map(tourMapper::toTourResponse).toList();
+        List<TourResponse> responses = tourResponseAssembler.toResponses(tourPage.getContent());
 
         log.info("Successfully returned {} tours for admin on page {}", responses.size(), page);
 
@@ -118,6 +142,70 @@ public class TourService {
                 .build();
     }
 
+    /**
+     * Public tours with keyset pagination; deep slices cost the same as the first one
+     */
+    @PreAuthorize("permitAll()")
+    public CursorPage<TourResponse> getToursForPublicByCursor(String cursor, int requestedSize, boolean includeTotal) {
+        int size = clampPageSize(requestedSize);
+        TourCursor after = TourCursor.decode(cursor);
+        log.info("Getting public tours by cursor: after={}, size={}", after, size);
+
+        if (tourCatalog.isReady()) {
+            List<TourSnapshot> snapshots = tourCatalog.findPublicToursAfter(after, size + 1);
+            Long total = includeTotal ? tourCatalog.countPublicTours() : null;
+            return toSnapshotCursorPage(snapshots, size, total);
+        }
+
+        List<Tour> tours = tourRepository.findSliceAfter(
+                true, after == null ? null : after.startDate(), after == null ? null : after.tourId(), size + 1);
+        Long total = includeTotal ? tourRepository.countPublicTours() : null;
+        return toCursorPage(tours, size, total);
+    }
+
+    /**
+     * All tours for ADMIN with keyset pagination, read straight from the database
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional()
+    public CursorPage<TourResponse> getToursForAdminByCursor(String cursor, int requestedSize, boolean includeTotal) {
+        int size = clampPageSize(requestedSize);
+        TourCursor after = TourCursor.decode(cursor);
+        log.info("Getting all tours for admin by cursor: after={}, size={}", after, size);
+
+        List<Tour> tours = tourRepository.findSliceAfter(
+                false, after == null ? null : after.startDate(), after == null ? null : after.tourId(), size + 1);
+        Long total = includeTotal ? tourRepository.count() : null;
+        return toCursorPage(tours, size, total);
+    }
+
+    /**
+     * Search tours with keyset pagination. Keyword searches keep relevance order across slices.
+     */
+    @PreAuthorize("permitAll()")
+    public CursorPage<TourResponse> searchToursByCursor(
+            TourSearchRequest request, String cursor, int requestedSize, boolean includeTotal) {
+        if (!tourCatalog.isReady()) {
+            throw new AppException(ErrorCode.CATALOG_NOT_READY);
+        }
+        int size = clampPageSize(requestedSize);
+        TourCursor after = TourCursor.decode(cursor);
+        boolean isAdmin = isAdmin();
+        log.info(
+                "Searching tours by cursor - isAdmin: {}, request: {}, after: {}, size: {}",
+                isAdmin,
+                request,
+                after,
+                size);
+
+        TourSearchEngine.CursorSlice slice = tourSearchEngine.searchAfter(request, isAdmin, after, size, includeTotal);
+        return CursorPage.<TourResponse>builder()
+                .items(tourResponseAssembler.fromSnapshots(slice.items()))
+                .nextCursor(slice.next() == null ? null : slice.next().encode())
+                .totalItems(slice.total())
+                .build();
+    }
+
     /**
      * Search tours with filters and pagination
      */
@@ -127,6 +215,12 @@ public class TourService {
         log.info("Searching tours - isAdmin: {}, request: {}, page: {}, size: {}", isAdmin, request, page, size);
 
         Pageable pageable = PageRequest.of(page, size, Sort.by("startDate").descending());
+
+        if (tourCatalog.isReady()) {
+            Page<TourSnapshot> snapshotPage = tourSearchEngine.search(request, isAdmin, pageable);
+            return toPaginationResponse(snapshotPage);
+        }
+
         Page<Tour> tourPage;
 
         if (isAdmin) {
@@ -155,24 +249,16 @@ public class TourService {
                 tourPage.getContent().size(),
                 page);
 
-        // Update tour status and filter by durationDays if specified
+        // The catalog is still warming up, so durationDays can only be applied to this page
         List<Tour> tours = tourPage.getContent();
-        tours.forEach(this::updateTourStatus);
 
         if (request.getDurationDays() != null) {
             tours = tours.stream()
-                    .filter(tour -> {
-                        if (tour.getStartDate() == null || tour.getEndDate() == null) {
-                            return false;
-                        }
-                        long days = ChronoUnit.DAYS.between(tour.getStartDate(), tour.getEndDate());
-                        return (days + 1) == request.getDurationDays();
-                    })
+                    .filter(tour -> TourDurations.extractDays(tour.getDuration()) == request.getDurationDays())
                     .collect(Collectors.toList());
         }
 
-        List<TourResponse> responses =
-                tours.stream().map(tourMapper::toTourResponse).toList();
+        List<TourResponse> responses = tourResponseAssembler.toResponses(tours);
 
         return PaginationResponse.<TourResponse>builder()
                 .items(responses)
@@ -183,6 +269,28 @@ public class TourService {
                 .build();
     }
 
+    /**
+     * Search tours and count every facet (destination, price range, duration, start month, seats) in one pass
+     */
+    @PreAuthorize("permitAll()")
+    public TourFacetedSearchResponse searchToursWithFacets(TourSearchRequest request, int page, int size) {
+        if (!tourCatalog.isReady()) {
+            log.info("Tour catalog not ready, searching without facets");
+            return TourFacetedSearchResponse.builder()
+                    .tours(searchTours(request, page, size))
+                    .build();
+        }
+
+        boolean isAdmin = isAdmin();
+        Pageable pageable = PageRequest.of(page, size, Sort.by("startDate").descending());
+        TourSearchEngine.FacetedResult result = tourSearchEngine.searchWithFacets(request, isAdmin, pageable);
+
+        return TourFacetedSearchResponse.builder()
+                .tours(toPaginationResponse(result.page()))
+                .facets(result.facets())
+                .build();
+    }
+
     /**
      * Get tour by ID
      */
@@ -190,12 +298,13 @@ public class TourService {
     public TourResponse getTour(String tourId) {
         log.info("Getting tour by id: {}", tourId);
 
-        Tour tour = tourRepository.findById(tourId).orElseThrow(() -> new AppException(ErrorCode.TOUR_NOT_FOUND));
-
-        updateTourStatus(tour);
-        tourRepository.save(tour);
+        TourSnapshot snapshot = tourCatalog.find(tourId).orElse(null);
+        if (snapshot != null) {
+            return tourResponseAssembler.fromSnapshot(snapshot);
+        }
 
-        return tourMapper.toTourResponse(tour);
+        Tour tour = tourRepository.findById(tourId).orElseThrow(() -> new AppException(ErrorCode.TOUR_NOT_FOUND));
+        return tourResponseAssembler.toResponse(tour);
     }
 
     // ===== ADMIN OPERATIONS =====
@@ -214,7 +323,7 @@ public class TourService {
         tour.setAvailability(true);
 
         if (tour.getEndDate() == null && request.getStartDate() != null) {
-            int durationDays = extractDaysFromDuration(tour.getDuration());
+            int durationDays = TourDurations.extractDays(tour.getDuration());
             tour.setEndDate(request.getStartDate().plusDays(durationDays - 1));
         }
 
@@ -222,18 +331,19 @@ public class TourService {
             throw new IllegalArgumentException("End date must be after start date");
         }
 
-        updateTourStatus(tour);
+        TourStatusPolicy.apply(tour, LocalDate.now());
 
         // LƯU TOUR TRƯỚC (không có ảnh)
         Tour savedTour = tourRepository.save(tour);
         log.info("Tour created with id: {} - processing images asynchronously", savedTour.getTourId());
+        eventPublisher.publishEvent(new TourChangedEvent(savedTour.getTourId()));
 
         // XỬ LÝ ẢNH BẤT ĐỒNG BỘ
         if (request.getImageUrls() != null && !request.getImageUrls().isEmpty()) {
             processImagesAsync(savedTour.getTourId(), request.getImageUrls());
         }
 
-        return tourMapper.toTourResponse(savedTour);
+        return tourResponseAssembler.toResponse(savedTour);
     }
 
     @Transactional
@@ -272,6 +382,19 @@ public class TourService {
             tour.getImages().removeIf(img -> true);
         }
 
+        // ĐỔI SỐ LƯỢNG BAN ĐẦU: phần chênh lệch được mở bán thêm hoặc rút lại qua SeatInventory
+        Integer initialQuantity = request.getInitialQuantity();
+        if (initialQuantity != null && !initialQuantity.equals(tour.getInitialQuantity())) {
+            int from = tour.getInitialQuantity() != null ? tour.getInitialQuantity() : tour.getQuantity();
+            int quantity = seatInventory.resize(tourId, from, initialQuantity);
+            // Keep the entity in step with the update so saving it does not write the old values back
+            if (quantity > 0 && TourStatusPolicy.isSoldOut(tour.getQuantity())) {
+                tour.setAvailability(true);
+            }
+            tour.setInitialQuantity(initialQuantity);
+            tour.setQuantity(quantity);
+        }
+
         // XỬ LÝ TRẠNG THÁI
         if (request.getTourStatus() != null && isBeforeLockDate) {
             if (request.getTourStatus() == TourStatus.OPEN_BOOKING
@@ -283,14 +406,16 @@ public class TourService {
 
         // CẬP NHẬT CÁC FIELD KHÁC
         tourMapper.updateTour(tour, request);
-        updateTourStatus(tour);
+        TourStatusPolicy.apply(tour, LocalDate.now());
 
         // LƯU TOUR TRƯỚC
         Tour savedTour = tourRepository.save(tour);
         log.info("Tour {} updated - processing images asynchronously", tourId);
+        eventPublisher.publishEvent(new TourChangedEvent(tourId));
 
         // XÓA ẢNH CŨ ĐỒNG BỘ VÀ THÊM ẢNH MỚI BẤT ĐỒNG BỘ
         if (request.getImageUrls() != null) {
+            tourRepository.touch(tourId);
             List<String> finalOldImageUrls = oldImageUrls;
             updateImagesSync(savedTour.getTourId(), finalOldImageUrls, request.getImageUrls());
         }
@@ -301,7 +426,7 @@ public class TourService {
             sendScheduleChangeNotificationsAsync(savedTour, oldStartDate, oldEndDate);
         }
 
-        return tourMapper.toTourResponse(savedTour);
+        return tourResponseAssembler.toResponse(savedTour);
     }
 
     // Thêm method mới với @Async
@@ -333,7 +458,9 @@ public class TourService {
         }
 
         // Xóa tour khỏi database
+        tourSeatStripeRepository.deleteAllByTourId(tourId);
         tourRepository.deleteById(tourId);
+        eventPublisher.publishEvent(new TourChangedEvent(tourId));
         log.info("Tour {} deleted successfully", tourId);
     }
 
@@ -350,99 +477,38 @@ public class TourService {
 
     // ===== PRIVATE HELPER METHODS =====
 
-    private void updateTourStatus(Tour tour) {
-        LocalDate now = LocalDate.now();
-        LocalDate startDate = tour.getStartDate();
-        LocalDate endDate = tour.getEndDate();
-
-        if (startDate == null) {
-            tour.setTourStatus(TourStatus.COMPLETED);
-            return;
-        }
-
-        LocalDate lockDate = startDate.minusDays(1);
-
-        // Tự động tính endDate nếu chưa có
-        if (endDate == null && tour.getDuration() != null) {
-            int days = extractDaysFromDuration(tour.getDuration());
-            if (days > 0) {
-                endDate = startDate.plusDays(days - 1);
-                tour.setEndDate(endDate);
-            }
-        }
-
-        // **THÊM LOGIC NÀY: Kiểm tra quantity = 0**
-        if (tour.getQuantity() != null && tour.getQuantity() == 0) {
-            tour.setAvailability(false);
-
-            // Nếu sau endDate -> COMPLETED
-            if (endDate != null && now.isAfter(endDate)) {
-                tour.setTourStatus(TourStatus.COMPLETED);
-                log.info("Tour {} → COMPLETED (quantity=0, past endDate: {})", tour.getTourId(), endDate);
-                return;
-            }
-
-            // Nếu từ lockDate (startDate - 1) trở đi -> IN_PROGRESS
-            if (!now.isBefore(lockDate.plusDays(1))) {
-                tour.setTourStatus(TourStatus.IN_PROGRESS);
-                log.info("Tour {} → IN_PROGRESS (quantity=0, on/after lockDate: {})", tour.getTourId(), lockDate);
-                return;
-            }
-
-            // Nếu trước lockDate và quantity = 0 -> vẫn IN_PROGRESS
-            tour.setTourStatus(TourStatus.IN_PROGRESS);
-            log.info("Tour {} → IN_PROGRESS (quantity=0, before lockDate: {})", tour.getTourId(), lockDate);
-            return;
-        }
-
-        // Ưu tiên cao nhất: Sau endDate → COMPLETED
-        if (endDate != null && now.isAfter(endDate)) {
-            tour.setTourStatus(TourStatus.COMPLETED);
-            log.info("Tour {} → COMPLETED (past endDate: {})", tour.getTourId(), endDate);
-            return;
-        }
-
-        // Từ ngày lockDate (tức startDate - 1) trở đi → IN_PROGRESS
-        if (!now.isBefore(lockDate.plusDays(1))) {
-            tour.setTourStatus(TourStatus.IN_PROGRESS);
-            log.info("Tour {} → IN_PROGRESS (on/after lockDate: {})", tour.getTourId(), lockDate);
-            return;
-        }
-
-        // Trước lockDate → giữ trạng thái admin đã set, hoặc mặc định
-        if (tour.getTourStatus() == null || tour.getTourStatus() == TourStatus.COMPLETED) {
-            tour.setTourStatus(tour.getAvailability() ? TourStatus.OPEN_BOOKING : TourStatus.IN_PROGRESS);
-        }
-
-        log.info("Tour {} remains {} (still before lockDate: {})", tour.getTourId(), tour.getTourStatus(), lockDate);
+    // `fetched` holds up to size + 1 rows; the extra one only tells us there is a next slice
+    private CursorPage<TourResponse> toSnapshotCursorPage(List<TourSnapshot> fetched, int size, Long total) {
+        boolean hasMore = fetched.size() > size;
+        List<TourSnapshot> slice = hasMore ? fetched.subList(0, size) : fetched;
+        return CursorPage.<TourResponse>builder()
+                .items(tourResponseAssembler.fromSnapshots(slice))
+                .nextCursor(hasMore ? TourCursor.after(slice.getLast()).encode() : null)
+                .totalItems(total)
+                .build();
     }
 
-    private int extractDaysFromDuration(String duration) {
-        if (duration == null || duration.trim().isEmpty()) {
-            log.warn("Duration is null or empty");
-            return 1;
-        }
-
-        try {
-            Pattern pattern1 = Pattern.compile("(\\d+)\\s*ngày", Pattern.CASE_INSENSITIVE);
-            Matcher matcher1 = pattern1.matcher(duration);
-            if (matcher1.find()) {
-                return Integer.parseInt(matcher1.group(1));
-            }
-
-            Pattern pattern2 = Pattern.compile("(\\d+)\\s*N", Pattern.CASE_INSENSITIVE);
-            Matcher matcher2 = pattern2.matcher(duration);
-            if (matcher2.find()) {
-                return Integer.parseInt(matcher2.group(1));
-            }
+    private CursorPage<TourResponse> toCursorPage(List<Tour> fetched, int size, Long total) {
+        boolean hasMore = fetched.size() > size;
+        List<Tour> slice = hasMore ? fetched.subList(0, size) : fetched;
+        Tour last = hasMore ? slice.getLast() : null;
+        return CursorPage.<TourResponse>builder()
+                .items(tourResponseAssembler.toResponses(slice))
+                .nextCursor(last == null ? null : new TourCursor(last.getStartDate(), last.getTourId(), null).encode())
+                .totalItems(total)
+                .build();
+    }
 
-            String trimmed = duration.trim().split("\\s+")[0];
-            return Integer.parseInt(trimmed);
+    private PaginationResponse<TourResponse> toPaginationResponse(Page<TourSnapshot> snapshotPage) {
+        List<TourResponse> responses = tourResponseAssembler.fromSnapshots(snapshotPage.getContent());
 
-        } catch (Exception e) {
-            log.warn("Cannot parse duration: {}, error: {}", duration, e.getMessage());
-            return 1;
-        }
+        return PaginationResponse.<TourResponse>builder()
+                .items(responses)
+                .currentPage(snapshotPage.getNumber())
+                .pageSizes(snapshotPage.getSize())
+                .totalItems((int) snapshotPage.getTotalElements())
+                .totalPages(snapshotPage.getTotalPages())
+                .build();
     }
 
     private boolean isAdmin() {
@@ -525,6 +591,47 @@ public class TourService {
         }
     }
 
+    /**
+     * ETag / Last-Modified of a single tour, resolved without loading the entity graph.
+     * Null when unknown (missing tour, or not modified since versions were introduced).
+     */
+    @PreAuthorize("permitAll()")
+    public ResourceVersion getTourVersion(String tourId) {
+        Instant updatedAt = tourCatalog
+                .find(tourId)
+                .map(TourSnapshot::updatedAt)
+                .or(() -> tourRepository.findUpdatedAtByTourId(tourId))
+                .orElse(null);
+        if (updatedAt == null) {
+            return null;
+        }
+        boolean favorited = tourResponseAssembler.currentUserFavoriteTourIds().contains(tourId);
+        return ResourceVersion.of(
+                "tour:" + tourId + ":" + updatedAt.toEpochMilli() + ":" + favorited, updatedAt.toEpochMilli());
+    }
+
+    /**
+     * ETag of a public listing page; null while the catalog is warming up
+     */
+    @PreAuthorize("permitAll()")
+    public ResourceVersion getPublicToursVersion(int page, int size) {
+        if (!tourCatalog.isReady()) {
+            return null;
+        }
+        Set<String> favoriteTourIds = tourResponseAssembler.currentUserFavoriteTourIds();
+        return ResourceVersion.of(
+                "tours:" + tourCatalog.publicFingerprint() + ":" + page + ":" + size + ":" + favoriteTourIds.hashCode(),
+                -1);
+    }
+
+    /**
+     * ETag of the tour name list; null while the catalog is warming up
+     */
+    @PreAuthorize("permitAll()")
+    public ResourceVersion getTourNamesVersion() {
+        return tourCatalog.isReady() ? ResourceVersion.of("names:" + tourCatalog.allFingerprint(), -1) : null;
+    }
+
     public List<TourSelectionResponse> getAllTourNames() {
         return tourRepository.findAllTourNames();
     }
@@ -561,6 +668,9 @@ public class TourService {
             });
 
             tourRepository.save(tour);
+            // Images live in their own table, so the tour's version has to be moved by hand
+            tourRepository.touch(tourId);
+            eventPublisher.publishEvent(new TourChangedEvent(tourId));
 
             log.info("Successfully added {} images to tour {}", imageUrls.size(), tourId);
         } catch (Exception e) {
@@ -591,7 +701,26 @@ public class TourService {
         return tourRepository.findAllToursIsAvailable();
     }
 
-    public List<Tour> findAllHotTours() {
-        return tourRepository.findHotTours();
+    /**
+     * Most booked open tours of all time, for the AI assistant
+     */
+    public List<TourSnapshot> findAllHotTours() {
+        List<TourSnapshot> hotTours = hotTourLeaderboard.top(HotTourWindow.ALL_TIME, hotTourLeaderboard.defaultLimit());
+        if (!hotTours.isEmpty() || tourCatalog.isReady()) {
+            return hotTours;
+        }
+        return tourRepository.findHotTours().stream()
+                .map(tourMapper::toTourSnapshot)
+                .toList();
+    }
+
+    @PreAuthorize("permitAll()")
+    public List<TourResponse> getHotTours(HotTourWindow window, Integer limit) {
+        int size = Math.min(Math.max(limit == null ? hotTourLeaderboard.defaultLimit() : limit, 1), MAX_HOT_TOURS);
+        return tourResponseAssembler.fromSnapshots(hotTourLeaderboard.top(window, size));
+    }
+
+    private static int clampPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
     }
 }
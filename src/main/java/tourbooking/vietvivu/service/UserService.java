@@ -3,8 +3,10 @@ package tourbooking.vietvivu.service;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -34,6 +36,7 @@ import tourbooking.vietvivu.mapper.UserMapper;
 import tourbooking.vietvivu.repository.OtpVerificationRepository;
 import tourbooking.vietvivu.repository.RoleRepository;
 import tourbooking.vietvivu.repository.UserRepository;
+import tourbooking.vietvivu.service.catalog.TourChangedEvent;
 
 @Service
 @RequiredArgsConstructor
@@ -47,6 +50,8 @@ public class UserService {
     OtpService otpService;
     OtpVerificationRepository otpVerificationRepository;
     EmailService emailService;
+    TourCounterService tourCounterService;
+    ApplicationEventPublisher eventPublisher;
 
     // CREATE
     public UserResponse createUser(UserCreationRequest request) {
@@ -108,8 +113,12 @@ public class UserService {
 
     // DELETE
     @PreAuthorize("hasRole('ADMIN')")
+    @Transactional
     public void deleteUser(String id) {
+        Set<String> favoriteTourIds = userRepository.findFavoriteTourIdsByUserId(id);
         userRepository.deleteById(id);
+        tourCounterService.favoritesRemoved(favoriteTourIds);
+        favoriteTourIds.forEach(tourId -> eventPublisher.publishEvent(new TourChangedEvent(tourId)));
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -13,9 +13,9 @@ import lombok.RequiredArgsConstructor;
 import tourbooking.vietvivu.dto.response.ChatResponse;
 import tourbooking.vietvivu.dto.response.TourSummary;
 import tourbooking.vietvivu.dto.response.TourSummaryArray;
-import tourbooking.vietvivu.entity.Tour;
 import tourbooking.vietvivu.repository.ImageRepository;
 import tourbooking.vietvivu.service.TourService;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
 
 @Component
 @RequiredArgsConstructor
@@ -164,20 +164,19 @@ public class AiTools {
     @Tool(description = "Gợi ý các tour du lịch hot nhất hiện nay")
     public TourSummaryArray findAllHotTours() {
 
-        List<Tour> tours = tourService.findAllHotTours();
+        List<TourSnapshot> tours = tourService.findAllHotTours();
 
         String summaryId = "hot_tours_01";
         TourSummary[] summaries = new TourSummary[tours.size()];
         for (int i = 0; i < tours.size(); i++) {
-            Tour tour = tours.get(i);
-            List<String> imageUrls = imageRepository.findImageUrlsByTour_TourId(tour.getTourId());
+            TourSnapshot tour = tours.get(i);
             summaries[i] = new TourSummary(
-                    tour.getTourId(),
-                    tour.getTitle(),
-                    String.valueOf(tour.getPriceAdult()),
-                    String.valueOf(tour.getPriceChild()),
-                    (String.valueOf(tour.getDuration())),
-                    imageUrls.toArray(new String[0]));
+                    tour.tourId(),
+                    tour.title(),
+                    String.valueOf(tour.priceAdult()),
+                    String.valueOf(tour.priceChild()),
+                    (String.valueOf(tour.duration())),
+                    tour.imageUrls().toArray(new String[0]));
         }
         return new TourSummaryArray(summaryId, summaries);
     }
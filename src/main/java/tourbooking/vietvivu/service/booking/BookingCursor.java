@@ -0,0 +1,42 @@
+package tourbooking.vietvivu.service.booking;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+
+/**
+ * Position of the last booking a client has seen, newest first (bookingDate DESC, bookingId DESC).
+ * Sent to clients as an opaque URL-safe token.
+ */
+public record BookingCursor(LocalDateTime bookingDate, String bookingId) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Decode a token produced by {@link #encode()}; a blank token means "from the beginning"
+     */
+    public static BookingCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 2);
+            if (parts.length != 2 || parts[0].isEmpty() || parts[1].isEmpty()) {
+                throw new AppException(ErrorCode.INVALID_CURSOR);
+            }
+            return new BookingCursor(LocalDateTime.parse(parts[0]), parts[1]);
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    public String encode() {
+        String raw = bookingDate + SEPARATOR + bookingId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,24 @@
+package tourbooking.vietvivu.service.booking;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import tourbooking.vietvivu.enumm.BookingStatus;
+
+/**
+ * Optional filters of a booking listing; null fields do not filter. The date range is on the
+ * booking date, both ends inclusive.
+ */
+public record BookingFilter(BookingStatus status, LocalDate from, LocalDate to) {
+
+    public LocalDateTime fromTime() {
+        return from == null ? null : from.atStartOfDay();
+    }
+
+    /**
+     * Exclusive upper bound: the start of the day after {@code to}
+     */
+    public LocalDateTime toTime() {
+        return to == null ? null : to.plusDays(1).atStartOfDay();
+    }
+}
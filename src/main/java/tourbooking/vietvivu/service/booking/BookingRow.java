@@ -0,0 +1,38 @@
+package tourbooking.vietvivu.service.booking;
+
+import java.time.LocalDateTime;
+
+import tourbooking.vietvivu.enumm.BookingStatus;
+
+/**
+ * The columns a {@code BookingResponse} is built from, read in one joined select instead of
+ * through a managed booking and its associations. User columns are null for guest bookings,
+ * contact columns for bookings made by a user.
+ */
+public record BookingRow(
+        String bookingId,
+        LocalDateTime bookingDate,
+        Double totalPrice,
+        BookingStatus bookingStatus,
+        LocalDateTime paymentTerm,
+        String note,
+        Integer numAdults,
+        Integer numChildren,
+        String userId,
+        String userName,
+        String userEmail,
+        String userPhone,
+        String userAddress,
+        String contactName,
+        String contactEmail,
+        String contactPhone,
+        String contactAddress,
+        String promotionId,
+        Double discount,
+        String tourId,
+        String tourTitle,
+        String tourDuration,
+        String tourDestination,
+        Double priceAdult,
+        Double priceChild,
+        String imageUrl) {}
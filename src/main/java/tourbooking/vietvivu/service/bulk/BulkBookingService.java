@@ -0,0 +1,344 @@
+package tourbooking.vietvivu.service.bulk;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.dto.request.BookingRequest;
+import tourbooking.vietvivu.dto.request.BulkBookingRequest;
+import tourbooking.vietvivu.dto.response.BulkBookingLineResult;
+import tourbooking.vietvivu.dto.response.BulkBookingResponse;
+import tourbooking.vietvivu.entity.Promotion;
+import tourbooking.vietvivu.entity.SeatHold;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.entity.User;
+import tourbooking.vietvivu.enumm.ActionType;
+import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.enumm.PaymentStatus;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.PromotionRepository;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.repository.UserRepository;
+import tourbooking.vietvivu.service.TourCounterService;
+import tourbooking.vietvivu.service.hold.SeatHoldService;
+import tourbooking.vietvivu.service.hot.BookingActivityEvent;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
+
+/**
+ * Books a whole group order in one transaction. Tours, users and promotions are read with one query
+ * each, seats are reserved tour by tour in tourId order so concurrent orders lock tour rows in the same
+ * order and cannot deadlock, and bookings, contacts, history rows and seat holds go in as JDBC batches.
+ * A line that fails validation, seats or its promotion is reported and the rest are still booked.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class BulkBookingService {
+
+    public static final int MAX_LINES = 200;
+
+    static final String INSERT_BOOKING =
+            """
+			INSERT INTO bookings (booking_id, booking_date, num_adults, num_children, total_price, note,
+				payment_status, booking_status, payment_term, user_id, tour_id, promotion_id)
+			VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+			""";
+    static final String INSERT_CONTACT =
+            "INSERT INTO contacts (contact_id, email, name, address, phone_number, booking_id) VALUES (?, ?, ?, ?, ?, ?)";
+    static final String INSERT_HISTORY =
+            "INSERT INTO history (history_id, tour_id, action_type, timestamp, user_id, contact_id) VALUES (?, ?, ?, ?, ?, ?)";
+
+    TourRepository tourRepository;
+    UserRepository userRepository;
+    PromotionRepository promotionRepository;
+    SeatInventory seatInventory;
+    SeatHoldService seatHoldService;
+    TourCounterService tourCounterService;
+    ApplicationEventPublisher eventPublisher;
+    JdbcTemplate jdbcTemplate;
+
+    private static final class Line {
+        final int number;
+        final BookingRequest request;
+        final int seats;
+        Tour tour;
+        User user;
+        Promotion promotion;
+        ErrorCode error;
+        // Known up front so the seat ledger can name the booking its seats went to
+        final String bookingId = UUID.randomUUID().toString();
+        String contactId;
+        double totalPrice;
+        LocalDateTime paymentTerm;
+
+        Line(int number, BookingRequest request) {
+            this.number = number;
+            this.request = request;
+            this.seats = request.getNumOfAdults() + request.getNumOfChildren();
+        }
+
+        boolean ok() {
+            return error == null;
+        }
+    }
+
+    @Transactional
+    public BulkBookingResponse book(BulkBookingRequest request) {
+        long started = System.nanoTime();
+        List<BookingRequest> requests = request.getBookings();
+        if (requests == null
+                || requests.isEmpty()
+                || requests.size() > MAX_LINES
+                || requests.stream().anyMatch(Objects::isNull)) {
+            throw new AppException(ErrorCode.INVALID_BULK_BOOKING_SIZE);
+        }
+        List<Line> lines = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            lines.add(new Line(i + 1, requests.get(i)));
+        }
+
+        validate(lines);
+        reserveSeats(lines);
+        claimPromotions(lines);
+        List<Line> booked = lines.stream().filter(Line::ok).toList();
+        if (!booked.isEmpty()) {
+            insert(booked);
+        }
+
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+        log.info("Group order: booked {} of {} lines in {} ms", booked.size(), lines.size(), elapsedMs);
+        return BulkBookingResponse.builder()
+                .received(lines.size())
+                .booked(booked.size())
+                .failed(lines.size() - booked.size())
+                .elapsedMs(elapsedMs)
+                .lines(lines.stream().map(BulkBookingService::toResult).toList())
+                .build();
+    }
+
+    /**
+     * Resolves every line's tour, user and promotion with one query per kind and rejects lines
+     * that single bookings would reject
+     */
+    private void validate(List<Line> lines) {
+        Map<String, Tour> tours = tourRepository.findAllById(distinct(lines, line -> line.request.getTourId())).stream()
+                .collect(Collectors.toMap(Tour::getTourId, Function.identity()));
+        Map<String, User> users =
+                userRepository.findByUsernameIn(distinct(lines, line -> line.request.getUserId())).stream()
+                        .collect(Collectors.toMap(User::getUsername, Function.identity()));
+        Map<String, Promotion> promotions =
+                promotionRepository
+                        .findAllById(distinct(lines, line -> blankToNull(line.request.getPromotionId())))
+                        .stream()
+                        .collect(Collectors.toMap(Promotion::getPromotionId, Function.identity()));
+        LocalDate today = LocalDate.now();
+
+        for (Line line : lines) {
+            BookingRequest request = line.request;
+            line.tour = request.getTourId() == null ? null : tours.get(request.getTourId());
+            String promotionId = blankToNull(request.getPromotionId());
+            line.promotion = promotionId == null ? null : promotions.get(promotionId);
+
+            if (request.getNumOfAdults() < 0 || request.getNumOfChildren() < 0 || line.seats <= 0) {
+                line.error = ErrorCode.INVALID_BOOKING_QUANTITY;
+            } else if (line.tour == null) {
+                line.error = ErrorCode.TOUR_NOT_FOUND;
+            } else if (line.tour.getStartDate() == null) {
+                line.error = ErrorCode.DATE_NOT_AVAILABLE;
+            } else if (request.getUserId() != null) {
+                line.user = users.get(request.getUserId());
+                if (line.user == null) {
+                    line.error = ErrorCode.USER_NOT_EXISTED;
+                }
+            } else if (isBlank(request.getName()) || isBlank(request.getEmail())) {
+                line.error = ErrorCode.CONTACT_INFO_REQUIRED;
+            }
+            if (line.ok() && promotionId != null) {
+                if (line.promotion == null) {
+                    line.error = ErrorCode.PROMOTION_NOT_FOUND;
+                } else if (line.promotion.getEndDate().isBefore(today)) {
+                    line.error = ErrorCode.PROMOTION_EXPIRED;
+                } else if (!Boolean.TRUE.equals(line.promotion.getStatus())) {
+                    line.error = ErrorCode.PROMOTION_NOT_AVAILABLE;
+                }
+            }
+        }
+    }
+
+    /**
+     * One conditional decrement per tour for all its lines, in tourId order. When a tour cannot seat the
+     * whole order its lines are tried one by one, so as many as fit are still booked.
+     */
+    private void reserveSeats(List<Line> lines) {
+        Map<String, List<Line>> byTour = lines.stream()
+                .filter(Line::ok)
+                .collect(Collectors.groupingBy(line -> line.tour.getTourId(), TreeMap::new, Collectors.toList()));
+        byTour.forEach((tourId, tourLines) -> {
+            if (seatInventory.tryReserveAll(tourId, seatsByBooking(tourLines))) {
+                return;
+            }
+            for (Line line : tourLines) {
+                if (!seatInventory.tryReserve(tourId, line.seats, line.bookingId)) {
+                    line.error = ErrorCode.QUANTITY_NOT_ENOUGH;
+                }
+            }
+        });
+    }
+
+    /**
+     * Claims each promotion once for all the lines using it, once their seats are taken so a short tour
+     * never uses up a promotion.
+     * Lines a promotion cannot cover any more are rejected and their seats given back.
+     */
+    private void claimPromotions(List<Line> lines) {
+        Map<String, List<Line>> byPromotion = lines.stream()
+                .filter(line -> line.ok() && line.promotion != null)
+                .collect(Collectors.groupingBy(
+                        line -> line.promotion.getPromotionId(), TreeMap::new, Collectors.toList()));
+        LocalDate today = LocalDate.now();
+        Map<String, List<Line>> toRelease = new TreeMap<>();
+        byPromotion.forEach((promotionId, promotionLines) -> {
+            if (promotionRepository.claim(promotionId, promotionLines.size(), today) > 0) {
+                return;
+            }
+            for (Line line : promotionLines) {
+                if (promotionRepository.claim(promotionId, 1, today) == 0) {
+                    line.error = ErrorCode.PROMOTION_NOT_AVAILABLE;
+                    toRelease
+                            .computeIfAbsent(line.tour.getTourId(), tourId -> new ArrayList<>())
+                            .add(line);
+                }
+            }
+        });
+        toRelease.forEach((tourId, tourLines) -> seatInventory.releaseAll(tourId, seatsByBooking(tourLines)));
+    }
+
+    private static Map<String, Integer> seatsByBooking(List<Line> lines) {
+        Map<String, Integer> seats = new LinkedHashMap<>();
+        lines.forEach(line -> seats.put(line.bookingId, line.seats));
+        return seats;
+    }
+
+    private void insert(List<Line> lines) {
+        List<SeatHold> holds = new ArrayList<>(lines.size());
+        for (Line line : lines) {
+            holds.add(SeatHold.builder()
+                    .bookingId(line.bookingId)
+                    .tourId(line.tour.getTourId())
+                    .seats(line.seats)
+                    .build());
+        }
+        LocalDateTime heldUntil = seatHoldService.holdAll(holds);
+        LocalDateTime now = LocalDateTime.now();
+        for (Line line : lines) {
+            BookingRequest request = line.request;
+            Tour tour = line.tour;
+            line.totalPrice =
+                    request.getNumOfAdults() * tour.getPriceAdult() + request.getNumOfChildren() * tour.getPriceChild();
+            LocalDateTime term = tour.getStartDate().minusDays(7).atStartOfDay();
+            line.paymentTerm = heldUntil.isBefore(term) ? heldUntil : term;
+            if (line.user == null) {
+                line.contactId = UUID.randomUUID().toString();
+            }
+        }
+
+        Timestamp bookingDate = Timestamp.valueOf(now);
+        jdbcTemplate.batchUpdate(INSERT_BOOKING, lines, lines.size(), (ps, line) -> {
+            ps.setString(1, line.bookingId);
+            ps.setTimestamp(2, bookingDate);
+            ps.setInt(3, line.request.getNumOfAdults());
+            ps.setInt(4, line.request.getNumOfChildren());
+            ps.setDouble(5, line.totalPrice);
+            ps.setString(6, line.request.getNote());
+            ps.setString(7, PaymentStatus.UNPAID.name());
+            ps.setString(8, BookingStatus.PENDING.name());
+            ps.setTimestamp(9, Timestamp.valueOf(line.paymentTerm));
+            ps.setString(10, line.user == null ? null : line.user.getId());
+            ps.setString(11, line.tour.getTourId());
+            ps.setString(12, line.promotion == null ? null : line.promotion.getPromotionId());
+        });
+        List<Line> guests =
+                lines.stream().filter(line -> line.contactId != null).toList();
+        jdbcTemplate.batchUpdate(INSERT_CONTACT, guests, lines.size(), (ps, line) -> {
+            ps.setString(1, line.contactId);
+            ps.setString(2, line.request.getEmail());
+            ps.setString(3, line.request.getName());
+            ps.setString(4, line.request.getAddress());
+            ps.setString(5, line.request.getPhone());
+            ps.setString(6, line.bookingId);
+        });
+        jdbcTemplate.batchUpdate(INSERT_HISTORY, lines, lines.size(), (ps, line) -> {
+            ps.setString(1, UUID.randomUUID().toString());
+            ps.setString(2, line.tour.getTourId());
+            ps.setString(3, ActionType.BOOK_TOUR.name());
+            ps.setTimestamp(4, bookingDate);
+            ps.setString(5, line.user == null ? null : line.user.getId());
+            ps.setString(6, line.contactId);
+        });
+
+        // Striped tours get their booking count from the inventory sync, so the tour row stays unlocked
+        Map<String, Integer> bookingsPerTour = new LinkedHashMap<>();
+        for (Line line : lines) {
+            if (line.tour.getSeatStripes() == null) {
+                bookingsPerTour.merge(line.tour.getTourId(), 1, Integer::sum);
+            }
+            eventPublisher.publishEvent(BookingActivityEvent.booked(line.tour.getTourId(), now));
+        }
+        bookingsPerTour.forEach(tourCounterService::bookingsCreated);
+    }
+
+    private static BulkBookingLineResult toResult(Line line) {
+        BulkBookingLineResult.BulkBookingLineResultBuilder result =
+                BulkBookingLineResult.builder().line(line.number).tourId(line.request.getTourId());
+        if (!line.ok()) {
+            return result.code(line.error.getCode())
+                    .message(line.error.getMessage())
+                    .build();
+        }
+        return result.bookingId(line.bookingId)
+                .totalPrice(line.totalPrice)
+                .paymentTerm(line.paymentTerm)
+                .build();
+    }
+
+    private static Set<String> distinct(List<Line> lines, Function<Line, String> key) {
+        Set<String> keys = new HashSet<>();
+        for (Line line : lines) {
+            String value = key.apply(line);
+            if (value != null) {
+                keys.add(value);
+            }
+        }
+        return keys;
+    }
+
+    private static String blankToNull(String value) {
+        return isBlank(value) ? null : value;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,137 @@
+package tourbooking.vietvivu.service.bulk;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.repository.ImageRepository;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.service.catalog.TourCursor;
+
+/**
+ * Streams every tour to the client in keyset chunks, each read in its own short transaction,
+ * so memory use stays at one chunk however large the catalog is.
+ */
+@Service
+@Slf4j
+public class TourBulkExporter {
+
+    private final TourRepository tourRepository;
+    private final ImageRepository imageRepository;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    public TourBulkExporter(
+            TourRepository tourRepository,
+            ImageRepository imageRepository,
+            PlatformTransactionManager transactionManager,
+            @Value("${tour.bulk.chunk-size:500}") int chunkSize) {
+        this.tourRepository = tourRepository;
+        this.imageRepository = imageRepository;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkTransaction.setReadOnly(true);
+        this.chunkSize = chunkSize;
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    public StreamingResponseBody exportTours(TourBulkFormat format) {
+        return out -> write(format, out);
+    }
+
+    private void write(TourBulkFormat format, OutputStream out) throws IOException {
+        long started = System.nanoTime();
+        long exported = 0;
+        long failed = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (format == TourBulkFormat.CSV) {
+            CsvRecordWriter.write(writer, TourBulkRow.CSV_COLUMNS);
+        }
+
+        TourCursor after = null;
+        List<TourBulkRow> chunk;
+        try {
+            do {
+                TourCursor from = after;
+                chunk = chunkTransaction.execute(status -> loadChunk(from));
+                for (TourBulkRow row : chunk) {
+                    try {
+                        writeRow(format, writer, row);
+                        exported++;
+                    } catch (JsonProcessingException e) {
+                        failed++;
+                        log.warn("Skipping tour {} in export: {}", row.tourId(), e.getOriginalMessage());
+                    }
+                }
+                // Hand each chunk to the client before reading the next one
+                writer.flush();
+                if (!chunk.isEmpty()) {
+                    TourBulkRow last = chunk.getLast();
+                    after = new TourCursor(last.startDate(), last.tourId(), null);
+                }
+            } while (chunk.size() == chunkSize);
+        } catch (IOException e) {
+            log.warn("Tour export aborted by the client after {} rows: {}", exported, e.getMessage());
+            throw e;
+        }
+
+        long elapsedMs = Math.max((System.nanoTime() - started) / 1_000_000, 1);
+        log.info(
+                "Bulk export finished: {} tours as {}, {} skipped, in {} ms ({} rows/s)",
+                exported,
+                format,
+                failed,
+                elapsedMs,
+                Math.round(exported * 1000.0 / elapsedMs));
+    }
+
+    private List<TourBulkRow> loadChunk(TourCursor after) {
+        List<Tour> tours = tourRepository.findSliceAfter(
+                false, after == null ? null : after.startDate(), after == null ? null : after.tourId(), chunkSize);
+        Map<String, List<String>> imageUrls = imageRepository.findImageUrlsGroupedByTourId(
+                tours.stream().map(Tour::getTourId).toList());
+        return tours.stream()
+                .map(tour -> new TourBulkRow(
+                        tour.getTourId(),
+                        tour.getTitle(),
+                        tour.getDescription(),
+                        tour.getDestination(),
+                        tour.getDuration(),
+                        tour.getStartDate(),
+                        tour.getEndDate(),
+                        tour.getPriceAdult(),
+                        tour.getPriceChild(),
+                        tour.getInitialQuantity(),
+                        tour.getQuantity(),
+                        tour.getAvailability(),
+                        tour.getTourStatus(),
+                        tour.getItinerary() == null ? List.of() : new ArrayList<>(tour.getItinerary()),
+                        imageUrls.getOrDefault(tour.getTourId(), List.of())))
+                .toList();
+    }
+
+    private static void writeRow(TourBulkFormat format, Writer writer, TourBulkRow row) throws IOException {
+        if (format == TourBulkFormat.CSV) {
+            CsvRecordWriter.write(writer, row.toCsvFields());
+        } else {
+            writer.write(TourBulkFormat.JSON.writeValueAsString(row));
+            writer.write('\n');
+        }
+    }
+}
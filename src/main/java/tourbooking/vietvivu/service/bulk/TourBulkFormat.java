@@ -0,0 +1,65 @@
+package tourbooking.vietvivu.service.bulk;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.springframework.http.MediaType;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import lombok.Getter;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+
+/**
+ * File formats accepted by bulk import and produced by bulk export
+ */
+@Getter
+public enum TourBulkFormat {
+    NDJSON("ndjson", new MediaType("application", "x-ndjson", StandardCharsets.UTF_8)),
+    CSV("csv", new MediaType("text", "csv", StandardCharsets.UTF_8));
+
+    public static final String NDJSON_VALUE = "application/x-ndjson";
+    public static final String CSV_VALUE = "text/csv";
+
+    // Bulk files use ISO dates both ways so an export can be imported again as is
+    static final ObjectMapper JSON = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    TourBulkFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public static TourBulkFormat fromName(String name) {
+        return Arrays.stream(values())
+                .filter(format -> format.extension.equalsIgnoreCase(name))
+                .findFirst()
+                .orElseThrow(() -> new AppException(ErrorCode.UNSUPPORTED_BULK_FORMAT));
+    }
+
+    public static TourBulkFormat fromContentType(String contentType) {
+        MediaType requested;
+        try {
+            requested = MediaType.parseMediaType(contentType);
+        } catch (Exception e) {
+            throw new AppException(ErrorCode.UNSUPPORTED_BULK_FORMAT);
+        }
+        return Arrays.stream(values())
+                .filter(format -> format.mediaType.isCompatibleWith(requested))
+                .findFirst()
+                .orElseThrow(() -> new AppException(ErrorCode.UNSUPPORTED_BULK_FORMAT));
+    }
+}
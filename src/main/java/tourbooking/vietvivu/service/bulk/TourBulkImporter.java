@@ -0,0 +1,376 @@
+package tourbooking.vietvivu.service.bulk;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.dto.request.TourCreateRequest;
+import tourbooking.vietvivu.dto.response.TourImportError;
+import tourbooking.vietvivu.dto.response.TourImportResponse;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.mapper.TourMapper;
+import tourbooking.vietvivu.service.catalog.TourCatalog;
+import tourbooking.vietvivu.service.status.TourStatusPolicy;
+
+/**
+ * Streams a tour file row by row and inserts valid rows with JDBC batches, one transaction per chunk.
+ * A chunk the database rejects is retried row by row so only the offending rows are reported.
+ */
+@Service
+@Slf4j
+public class TourBulkImporter {
+
+    static final int MAX_REPORTED_ERRORS = 1000;
+
+    private static final String INSERT_TOUR =
+            """
+			INSERT INTO tours (tour_id, title, description, initial_quantity, quantity, price_adult, price_child,
+				duration, destination, availability, start_date, end_date, tour_status,
+				total_bookings, favorite_count, updated_at)
+			VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, 0, ?)
+			""";
+    private static final String INSERT_ITINERARY_STEP = "INSERT INTO tour_itinerary (tour_id, step) VALUES (?, ?)";
+    private static final String INSERT_IMAGE =
+            "INSERT INTO images (image_id, image_url, upload_date, tour_id) VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TourMapper tourMapper;
+    private final Validator validator;
+    private final TourCatalog tourCatalog;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    public TourBulkImporter(
+            JdbcTemplate jdbcTemplate,
+            TourMapper tourMapper,
+            Validator validator,
+            TourCatalog tourCatalog,
+            PlatformTransactionManager transactionManager,
+            @Value("${tour.bulk.chunk-size:500}") int chunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tourMapper = tourMapper;
+        this.validator = validator;
+        this.tourCatalog = tourCatalog;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    public TourImportResponse importTours(InputStream body, TourBulkFormat format) {
+        long started = System.nanoTime();
+        ImportReport report = new ImportReport();
+        List<PendingTour> chunk = new ArrayList<>(chunkSize);
+        LocalDate today = LocalDate.now();
+        log.info("Bulk importing tours from {} (chunks of {})", format, chunkSize);
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            RowSource rows = format == TourBulkFormat.CSV ? new CsvRows(reader) : new NdjsonRows(reader);
+            for (ParsedRow row = rows.next(); row != null; row = rows.next()) {
+                report.received++;
+                PendingTour pending = prepare(row, today, report);
+                if (pending == null) continue;
+                chunk.add(pending);
+                if (chunk.size() >= chunkSize) {
+                    flush(chunk, report);
+                }
+            }
+        } catch (IOException e) {
+            // Rows before the break are already committed; report where the upload stopped
+            log.error("Bulk tour import interrupted after {} rows: {}", report.received, e.getMessage());
+            report.reject(report.received + 1, null, "Upload interrupted: " + e.getMessage());
+        }
+        flush(chunk, report);
+
+        long elapsedMs = Math.max((System.nanoTime() - started) / 1_000_000, 1);
+        double rowsPerSecond = report.received * 1000.0 / elapsedMs;
+        log.info(
+                "Bulk import finished: {} received, {} imported, {} failed in {} ms ({} rows/s)",
+                report.received,
+                report.imported,
+                report.failed,
+                elapsedMs,
+                Math.round(rowsPerSecond));
+
+        return TourImportResponse.builder()
+                .received(report.received)
+                .imported(report.imported)
+                .failed(report.failed)
+                .elapsedMs(elapsedMs)
+                .rowsPerSecond(rowsPerSecond)
+                .errors(report.errors)
+                .errorsTruncated(report.failed > report.errors.size())
+                .build();
+    }
+
+    // Same defaults as TourService.createTour, minus the round trips
+    private PendingTour prepare(ParsedRow row, LocalDate today, ImportReport report) {
+        if (row.error() != null) {
+            report.reject(row.line(), null, row.error());
+            return null;
+        }
+        TourCreateRequest request = row.request();
+        String violations = describe(validator.validate(request));
+        if (violations != null) {
+            report.reject(row.line(), request.getTitle(), violations);
+            return null;
+        }
+
+        Tour tour = tourMapper.toTour(request);
+        tour.setTourId(UUID.randomUUID().toString());
+        tour.setQuantity(request.getInitialQuantity());
+        tour.setAvailability(true);
+        TourStatusPolicy.apply(tour, today);
+        if (tour.getEndDate() != null && tour.getEndDate().isBefore(tour.getStartDate())) {
+            report.reject(row.line(), request.getTitle(), "End date must be after start date");
+            return null;
+        }
+        violations = describe(validator.validate(tour));
+        if (violations != null) {
+            report.reject(row.line(), request.getTitle(), violations);
+            return null;
+        }
+
+        List<String> imageUrls = request.getImageUrls() == null
+                ? List.of()
+                : request.getImageUrls().stream()
+                        .filter(url -> url != null && !url.isBlank())
+                        .toList();
+        return new PendingTour(row.line(), tour, imageUrls);
+    }
+
+    private void flush(List<PendingTour> chunk, ImportReport report) {
+        if (chunk.isEmpty()) return;
+        Set<String> inserted = new HashSet<>();
+        try {
+            chunkTransaction.executeWithoutResult(status -> insert(chunk));
+            chunk.forEach(pending -> inserted.add(pending.tour().getTourId()));
+        } catch (DataAccessException e) {
+            log.warn(
+                    "Batch insert of {} tours failed ({}), retrying row by row",
+                    chunk.size(),
+                    e.getMostSpecificCause().getMessage());
+            for (PendingTour pending : chunk) {
+                try {
+                    chunkTransaction.executeWithoutResult(status -> insert(List.of(pending)));
+                    inserted.add(pending.tour().getTourId());
+                } catch (DataAccessException rowFailure) {
+                    report.reject(
+                            pending.line(),
+                            pending.tour().getTitle(),
+                            rowFailure.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+        report.imported += inserted.size();
+        tourCatalog.refresh(inserted);
+        chunk.clear();
+    }
+
+    private void insert(List<PendingTour> tours) {
+        Timestamp now = Timestamp.from(Instant.now());
+        jdbcTemplate.batchUpdate(INSERT_TOUR, tours, tours.size(), (ps, pending) -> {
+            Tour tour = pending.tour();
+            ps.setString(1, tour.getTourId());
+            ps.setString(2, tour.getTitle());
+            ps.setString(3, tour.getDescription());
+            ps.setInt(4, tour.getInitialQuantity());
+            ps.setInt(5, tour.getQuantity());
+            ps.setDouble(6, tour.getPriceAdult());
+            ps.setDouble(7, tour.getPriceChild());
+            ps.setString(8, tour.getDuration());
+            ps.setString(9, tour.getDestination());
+            ps.setBoolean(10, tour.getAvailability());
+            ps.setDate(11, Date.valueOf(tour.getStartDate()));
+            ps.setDate(12, tour.getEndDate() == null ? null : Date.valueOf(tour.getEndDate()));
+            ps.setString(13, tour.getTourStatus().name());
+            ps.setTimestamp(14, now);
+        });
+
+        List<String[]> steps = new ArrayList<>();
+        List<String[]> images = new ArrayList<>();
+        for (PendingTour pending : tours) {
+            String tourId = pending.tour().getTourId();
+            pending.tour().getItinerary().forEach(step -> steps.add(new String[] {tourId, step}));
+            pending.imageUrls().forEach(url -> images.add(new String[] {tourId, url}));
+        }
+        jdbcTemplate.batchUpdate(INSERT_ITINERARY_STEP, steps, chunkSize, (ps, step) -> {
+            ps.setString(1, step[0]);
+            ps.setString(2, step[1]);
+        });
+        Date uploadDate = Date.valueOf(LocalDate.now());
+        jdbcTemplate.batchUpdate(INSERT_IMAGE, images, chunkSize, (ps, image) -> {
+            ps.setString(1, UUID.randomUUID().toString());
+            ps.setString(2, image[1]);
+            ps.setDate(3, uploadDate);
+            ps.setString(4, image[0]);
+        });
+    }
+
+    private static String describe(Set<? extends ConstraintViolation<?>> violations) {
+        if (violations.isEmpty()) return null;
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private static String describe(JsonProcessingException e) {
+        if (e instanceof JsonMappingException mapping && !mapping.getPath().isEmpty()) {
+            String field = mapping.getPath().stream()
+                    .map(reference -> reference.getFieldName() != null
+                            ? reference.getFieldName()
+                            : "[" + reference.getIndex() + "]")
+                    .collect(Collectors.joining("."));
+            return "Invalid value for " + field;
+        }
+        return "Malformed row: " + e.getOriginalMessage();
+    }
+
+    private record ParsedRow(long line, TourCreateRequest request, String error) {}
+
+    private record PendingTour(long line, Tour tour, List<String> imageUrls) {}
+
+    private interface RowSource {
+        /** The next non-blank row, or null at end of input */
+        ParsedRow next() throws IOException;
+    }
+
+    private static final class NdjsonRows implements RowSource {
+        private final BufferedReader reader;
+        private long line;
+
+        NdjsonRows(BufferedReader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            for (String text = reader.readLine(); text != null; text = reader.readLine()) {
+                line++;
+                if (text.isBlank()) continue;
+                try {
+                    return new ParsedRow(line, TourBulkFormat.JSON.readValue(text, TourCreateRequest.class), null);
+                } catch (JsonProcessingException e) {
+                    return new ParsedRow(line, null, describe(e));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * CSV with a header row naming {@link TourCreateRequest} fields; list cells are split on
+     * {@link TourBulkRow#LIST_SEPARATOR} and unknown columns are ignored
+     */
+    private static final class CsvRows implements RowSource {
+        private static final Pattern LIST_SPLIT = Pattern.compile(Pattern.quote(TourBulkRow.LIST_SEPARATOR));
+
+        private final CsvRecordReader records;
+        private List<String> header;
+
+        CsvRows(BufferedReader reader) {
+            this.records = new CsvRecordReader(reader);
+        }
+
+        @Override
+        public ParsedRow next() throws IOException {
+            if (header == null) {
+                List<String> names = records.next();
+                if (names == null) return null;
+                header = names.stream().map(String::trim).toList();
+                // Spreadsheets often prepend a byte order mark to the first header cell
+                if (!header.isEmpty() && header.getFirst().startsWith("\uFEFF")) {
+                    List<String> stripped = new ArrayList<>(header);
+                    stripped.set(0, header.getFirst().substring(1));
+                    header = stripped;
+                }
+                // A header naming no tour column is not a tour file: refuse it before any row is imported
+                if (header.stream().noneMatch(TourBulkRow.CSV_COLUMNS::contains)) {
+                    throw new AppException(ErrorCode.INVALID_BULK_FILE);
+                }
+            }
+            for (List<String> values = records.next(); values != null; values = records.next()) {
+                if (values.stream().allMatch(String::isBlank)) continue;
+                try {
+                    return new ParsedRow(
+                            records.recordLine(),
+                            TourBulkFormat.JSON.treeToValue(toNode(values), TourCreateRequest.class),
+                            null);
+                } catch (JsonProcessingException e) {
+                    return new ParsedRow(records.recordLine(), null, describe(e));
+                }
+            }
+            return null;
+        }
+
+        private ObjectNode toNode(List<String> values) {
+            ObjectNode node = TourBulkFormat.JSON.createObjectNode();
+            for (int i = 0; i < Math.min(header.size(), values.size()); i++) {
+                String column = header.get(i);
+                String value = values.get(i).trim();
+                if (value.isEmpty()) continue;
+                if (TourBulkRow.LIST_COLUMNS.contains(column)) {
+                    ArrayNode entries = node.putArray(column);
+                    Arrays.stream(LIST_SPLIT.split(value))
+                            .map(String::trim)
+                            .filter(entry -> !entry.isEmpty())
+                            .forEach(entries::add);
+                } else {
+                    node.put(column, value);
+                }
+            }
+            return node;
+        }
+    }
+
+    private static final class ImportReport {
+        long received;
+        long imported;
+        long failed;
+        final List<TourImportError> errors = new ArrayList<>();
+
+        void reject(long line, String title, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(TourImportError.builder()
+                        .line(line)
+                        .title(title)
+                        .message(message)
+                        .build());
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package tourbooking.vietvivu.service.bulk;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import tourbooking.vietvivu.enumm.TourStatus;
+
+/**
+ * One exported tour. The import-side columns match {@code TourCreateRequest}, so an export
+ * can be fed back to the import; the remaining columns are informational and ignored on import.
+ */
+public record TourBulkRow(
+        String tourId,
+        String title,
+        String description,
+        String destination,
+        String duration,
+        LocalDate startDate,
+        LocalDate endDate,
+        Double priceAdult,
+        Double priceChild,
+        Integer initialQuantity,
+        Integer quantity,
+        Boolean availability,
+        TourStatus tourStatus,
+        List<String> itinerary,
+        List<String> imageUrls) {
+
+    /** Separates the entries of list columns (itinerary, imageUrls) inside one CSV cell */
+    static final String LIST_SEPARATOR = "|";
+
+    static final List<String> CSV_COLUMNS = List.of(
+            "tourId",
+            "title",
+            "description",
+            "destination",
+            "duration",
+            "startDate",
+            "endDate",
+            "priceAdult",
+            "priceChild",
+            "initialQuantity",
+            "quantity",
+            "availability",
+            "tourStatus",
+            "itinerary",
+            "imageUrls");
+
+    static final List<String> LIST_COLUMNS = List.of("itinerary", "imageUrls");
+
+    List<String> toCsvFields() {
+        List<String> fields = new ArrayList<>(CSV_COLUMNS.size());
+        fields.add(tourId);
+        fields.add(title);
+        fields.add(description);
+        fields.add(destination);
+        fields.add(duration);
+        fields.add(text(startDate));
+        fields.add(text(endDate));
+        fields.add(price(priceAdult));
+        fields.add(price(priceChild));
+        fields.add(text(initialQuantity));
+        fields.add(text(quantity));
+        fields.add(text(availability));
+        fields.add(text(tourStatus));
+        fields.add(itinerary == null ? null : String.join(LIST_SEPARATOR, itinerary));
+        fields.add(imageUrls == null ? null : String.join(LIST_SEPARATOR, imageUrls));
+        return fields;
+    }
+
+    // Plain notation: spreadsheets would otherwise receive prices like 1.5E7
+    private static String price(Double value) {
+        return value == null ? null : BigDecimal.valueOf(value).toPlainString();
+    }
+
+    private static String text(Object value) {
+        return Objects.toString(value, null);
+    }
+}
@@ -0,0 +1,22 @@
+package tourbooking.vietvivu.service.catalog;
+
+/**
+ * Validators for a conditional GET: a strong ETag and, when known, the last modification time
+ * (epoch millis, -1 when unknown) as expected by {@code WebRequest.checkNotModified}.
+ */
+public record ResourceVersion(String eTag, long lastModified) {
+
+    public static ResourceVersion of(String key, long lastModified) {
+        return new ResourceVersion("\"" + Long.toHexString(hash(key)) + "\"", lastModified);
+    }
+
+    // 64-bit FNV-1a, plenty to tell versions of the same resource apart
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,248 @@
+package tourbooking.vietvivu.service.catalog;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.mapper.TourMapper;
+import tourbooking.vietvivu.repository.ImageRepository;
+import tourbooking.vietvivu.repository.TourRepository;
+
+/**
+ * In-memory read model of the tour catalog.
+ * Public listing and detail reads are served from here; every committed write
+ * that publishes a {@link TourChangedEvent} reloads only the affected tour.
+ * Those events stay in this JVM, so a periodic resync against updated_at picks up
+ * what other replicas wrote.
+ */
+@Component
+@Slf4j
+public class TourCatalog {
+
+    // Same order as the old Sort.by("startDate").descending(), tie-broken by id
+    public static final Comparator<TourSnapshot> START_DATE_DESC = Comparator.comparing(
+                    TourSnapshot::startDate, Comparator.nullsFirst(Comparator.<LocalDate>reverseOrder()))
+            .thenComparing(TourSnapshot::tourId);
+
+    private final TourRepository tourRepository;
+    private final ImageRepository imageRepository;
+    private final TourMapper tourMapper;
+    private final TransactionTemplate readTransaction;
+    private final List<TourCatalogListener> listeners;
+
+    private final Map<String, TourSnapshot> byId = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<TourSnapshot> publicTours = new ConcurrentSkipListSet<>(START_DATE_DESC);
+
+    // Guards revisions/publicCount so that an older reload never overwrites a newer one
+    private final Object writeLock = new Object();
+    private final Map<String, Long> revisions = new HashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile int publicCount;
+    private volatile boolean ready;
+    // XOR of per-tour version hashes: changes whenever any tour is added, removed or updated
+    private volatile long publicFingerprint;
+    private volatile long allFingerprint;
+
+    public TourCatalog(
+            TourRepository tourRepository,
+            ImageRepository imageRepository,
+            TourMapper tourMapper,
+            PlatformTransactionManager transactionManager,
+            List<TourCatalogListener> listeners) {
+        this.tourRepository = tourRepository;
+        this.imageRepository = imageRepository;
+        this.tourMapper = tourMapper;
+        this.listeners = listeners;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long revision = sequence.incrementAndGet();
+        List<TourSnapshot> snapshots = readTransaction.execute(status -> toSnapshots(tourRepository.findAll()));
+        if (snapshots != null) {
+            snapshots.forEach(snapshot -> apply(snapshot.tourId(), revision, snapshot));
+        }
+        ready = true;
+        log.info("Tour catalog loaded {} tours ({} public)", byId.size(), publicCount);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTourChanged(TourChangedEvent event) {
+        refresh(event.tourId());
+    }
+
+    /**
+     * Reloads the tours whose updated_at no longer matches their snapshot, and drops deleted ones
+     */
+    @Scheduled(fixedDelayString = "${tour.catalog.resync-interval-ms:10000}")
+    public void resync() {
+        if (!ready) return;
+        Map<String, Instant> versions = new HashMap<>();
+        readTransaction.executeWithoutResult(status ->
+                tourRepository.findAllVersions().forEach(row -> versions.put((String) row[0], (Instant) row[1])));
+        Set<String> stale = new HashSet<>();
+        versions.forEach((tourId, updatedAt) -> {
+            TourSnapshot snapshot = byId.get(tourId);
+            if (snapshot == null || !Objects.equals(snapshot.updatedAt(), updatedAt)) {
+                stale.add(tourId);
+            }
+        });
+        byId.keySet().stream().filter(tourId -> !versions.containsKey(tourId)).forEach(stale::add);
+        if (!stale.isEmpty()) {
+            log.debug("Catalog resync reloading {} tours", stale.size());
+            refresh(stale);
+        }
+    }
+
+    public void refresh(String tourId) {
+        if (tourId == null) return;
+        long revision = sequence.incrementAndGet();
+        try {
+            TourSnapshot snapshot = readTransaction.execute(status -> tourRepository
+                    .findById(tourId)
+                    .map(tourMapper::toTourSnapshot)
+                    .orElse(null));
+            apply(tourId, revision, snapshot);
+        } catch (Exception e) {
+            // Drop the stale entry so readers fall back to the database instead of old data
+            log.error("Failed to refresh tour {} in catalog: {}", tourId, e.getMessage(), e);
+            apply(tourId, revision, null);
+        }
+    }
+
+    /**
+     * Reload many tours at once (bulk imports), with one query for the tours and one for their images
+     */
+    public void refresh(Collection<String> tourIds) {
+        if (tourIds.isEmpty()) return;
+        List<String> ids = List.copyOf(tourIds);
+        long revision = sequence.incrementAndGet();
+        try {
+            List<TourSnapshot> snapshots =
+                    readTransaction.execute(status -> toSnapshots(tourRepository.findAllById(ids)));
+            Map<String, TourSnapshot> loaded =
+                    snapshots.stream().collect(Collectors.toMap(TourSnapshot::tourId, snapshot -> snapshot));
+            ids.forEach(tourId -> apply(tourId, revision, loaded.get(tourId)));
+        } catch (Exception e) {
+            log.error("Failed to refresh {} tours in catalog: {}", ids.size(), e.getMessage(), e);
+            ids.forEach(tourId -> apply(tourId, revision, null));
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Optional<TourSnapshot> find(String tourId) {
+        return Optional.ofNullable(byId.get(tourId));
+    }
+
+    public Page<TourSnapshot> findPublicTours(Pageable pageable) {
+        List<TourSnapshot> content = publicTours.stream()
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .toList();
+        return new PageImpl<>(content, pageable, publicCount);
+    }
+
+    /**
+     * Keyset slice of the public listing: seeks straight to the cursor, so every slice costs the same
+     */
+    public List<TourSnapshot> findPublicToursAfter(TourCursor after, int limit) {
+        var tours = after == null ? publicTours : publicTours.tailSet(after.toProbe(), false);
+        return tours.stream().limit(limit).toList();
+    }
+
+    public long countPublicTours() {
+        return publicCount;
+    }
+
+    public long publicFingerprint() {
+        return publicFingerprint;
+    }
+
+    public long allFingerprint() {
+        return allFingerprint;
+    }
+
+    private List<TourSnapshot> toSnapshots(List<Tour> tours) {
+        Map<String, List<String>> imageUrls = imageRepository.findImageUrlsGroupedByTourId(
+                tours.stream().map(Tour::getTourId).toList());
+        return tours.stream()
+                .map(tour -> tourMapper.toTourSnapshot(tour, imageUrls.getOrDefault(tour.getTourId(), List.of())))
+                .toList();
+    }
+
+    // SplitMix64 finalizer over (tourId, updatedAt) so XOR-ed hashes do not cancel out
+    private static long versionHash(TourSnapshot snapshot) {
+        long z = ((long) snapshot.tourId().hashCode() << 32)
+                ^ (snapshot.updatedAt() == null ? 0 : snapshot.updatedAt().toEpochMilli());
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private void apply(String tourId, long revision, TourSnapshot snapshot) {
+        synchronized (writeLock) {
+            Long applied = revisions.get(tourId);
+            if (applied != null && applied > revision) {
+                return;
+            }
+            revisions.put(tourId, revision);
+
+            TourSnapshot previous = snapshot == null ? byId.remove(tourId) : byId.put(tourId, snapshot);
+            if (previous != null) {
+                allFingerprint ^= versionHash(previous);
+                if (publicTours.remove(previous)) {
+                    publicCount--;
+                    publicFingerprint ^= versionHash(previous);
+                }
+            }
+            if (snapshot != null) {
+                allFingerprint ^= versionHash(snapshot);
+                if (snapshot.isPublic() && publicTours.add(snapshot)) {
+                    publicCount++;
+                    publicFingerprint ^= versionHash(snapshot);
+                }
+            }
+            if (previous != null || snapshot != null) {
+                for (TourCatalogListener listener : listeners) {
+                    try {
+                        listener.onSnapshotChanged(tourId, previous, snapshot);
+                    } catch (Exception e) {
+                        log.error("Catalog listener {} failed for tour {}", listener, tourId, e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package tourbooking.vietvivu.service.catalog;
+
+/**
+ * Receives every change applied to {@link TourCatalog}, in order, so derived indexes stay in sync
+ */
+public interface TourCatalogListener {
+
+    /**
+     * @param previous snapshot being replaced, null for a new tour
+     * @param current new snapshot, null when the tour was deleted
+     */
+    void onSnapshotChanged(String tourId, TourSnapshot previous, TourSnapshot current);
+}
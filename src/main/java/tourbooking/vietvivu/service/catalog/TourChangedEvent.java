@@ -0,0 +1,6 @@
+package tourbooking.vietvivu.service.catalog;
+
+/**
+ * Published whenever a write changes what readers see for a tour
+ */
+public record TourChangedEvent(String tourId) {}
@@ -0,0 +1,66 @@
+package tourbooking.vietvivu.service.catalog;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Base64;
+
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+
+/**
+ * Position of the last tour a client has seen, in {@link TourCatalog#START_DATE_DESC} order.
+ * Relevance-ordered searches also carry the score of that tour.
+ * Sent to clients as an opaque URL-safe token.
+ */
+public record TourCursor(LocalDate startDate, String tourId, Float score) {
+
+    private static final String SEPARATOR = "|";
+
+    public static TourCursor after(TourSnapshot tour) {
+        return new TourCursor(tour.startDate(), tour.tourId(), null);
+    }
+
+    public static TourCursor after(TourSnapshot tour, float score) {
+        return new TourCursor(tour.startDate(), tour.tourId(), score);
+    }
+
+    /**
+     * Decode a token produced by {@link #encode()}; a blank token means "from the beginning"
+     */
+    public static TourCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 3);
+            if (parts.length != 3 || parts[2].isEmpty()) {
+                throw new AppException(ErrorCode.INVALID_CURSOR);
+            }
+            return new TourCursor(
+                    parts[1].isEmpty() ? null : LocalDate.parse(parts[1]),
+                    parts[2],
+                    parts[0].isEmpty() ? null : Float.valueOf(parts[0]));
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            throw new AppException(ErrorCode.INVALID_CURSOR);
+        }
+    }
+
+    public String encode() {
+        String raw = (score == null ? "" : score.toString())
+                + SEPARATOR
+                + (startDate == null ? "" : startDate.toString())
+                + SEPARATOR
+                + tourId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Snapshot carrying only the sort keys, used to seek in sorted sets
+     */
+    public TourSnapshot toProbe() {
+        return new TourSnapshot(
+                tourId, null, null, null, null, null, null, null, 0, null, null, startDate, null, null, null, null,
+                null, null, null);
+    }
+}
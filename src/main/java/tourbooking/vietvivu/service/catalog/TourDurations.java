@@ -0,0 +1,44 @@
+package tourbooking.vietvivu.service.catalog;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parses the free-text tour duration ("3 ngày 2 đêm", "3N2Đ", "3") into a number of days
+ */
+@Slf4j
+public final class TourDurations {
+
+    private static final Pattern DAYS_IN_WORDS = Pattern.compile("(\\d+)\\s*ngày", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DAYS_SHORT = Pattern.compile("(\\d+)\\s*N", Pattern.CASE_INSENSITIVE);
+
+    private TourDurations() {}
+
+    public static int extractDays(String duration) {
+        if (duration == null || duration.trim().isEmpty()) {
+            log.warn("Duration is null or empty");
+            return 1;
+        }
+
+        try {
+            Matcher matcher1 = DAYS_IN_WORDS.matcher(duration);
+            if (matcher1.find()) {
+                return Integer.parseInt(matcher1.group(1));
+            }
+
+            Matcher matcher2 = DAYS_SHORT.matcher(duration);
+            if (matcher2.find()) {
+                return Integer.parseInt(matcher2.group(1));
+            }
+
+            String trimmed = duration.trim().split("\\s+")[0];
+            return Integer.parseInt(trimmed);
+
+        } catch (Exception e) {
+            log.warn("Cannot parse duration: {}, error: {}", duration, e.getMessage());
+            return 1;
+        }
+    }
+}
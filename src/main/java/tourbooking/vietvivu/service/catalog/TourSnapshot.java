@@ -0,0 +1,47 @@
+package tourbooking.vietvivu.service.catalog;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import tourbooking.vietvivu.enumm.TourStatus;
+
+/**
+ * Immutable read-only copy of a tour held by {@link TourCatalog}
+ */
+public record TourSnapshot(
+        String tourId,
+        String title,
+        String description,
+        Integer initialQuantity,
+        Integer quantity,
+        Double priceAdult,
+        Double priceChild,
+        String duration,
+        int durationDays,
+        String destination,
+        Boolean availability,
+        LocalDate startDate,
+        LocalDate endDate,
+        TourStatus tourStatus,
+        List<String> itinerary,
+        List<String> imageUrls,
+        Integer totalBookings,
+        Integer favoriteCount,
+        Instant updatedAt) {
+
+    public TourSnapshot {
+        itinerary = freeze(itinerary);
+        imageUrls = freeze(imageUrls);
+    }
+
+    public boolean isPublic() {
+        return Boolean.TRUE.equals(availability) && tourStatus == TourStatus.OPEN_BOOKING;
+    }
+
+    private static List<String> freeze(List<String> values) {
+        return values == null ? List.of() : Collections.unmodifiableList(new ArrayList<>(values));
+    }
+}
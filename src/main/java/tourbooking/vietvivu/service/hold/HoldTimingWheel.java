@@ -0,0 +1,68 @@
+package tourbooking.vietvivu.service.hold;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Hashed timing wheel of hold deadlines. Scheduling is O(1) and each tick only looks at one slot,
+ * so the wheel is as cheap with a hundred thousand open holds as with ten. Deadlines further out
+ * than one turn stay in their slot until the turn they are due. Confirmed holds are not removed;
+ * they fire as usual and the database no longer has them.
+ */
+final class HoldTimingWheel {
+
+    private record Deadline(String bookingId, long tick) {}
+
+    private final long tickMillis;
+    private final List<List<Deadline>> slots;
+    private long currentTick;
+    private int size;
+
+    HoldTimingWheel(long tickMillis, int slotCount, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.slots = new ArrayList<>(slotCount);
+        for (int i = 0; i < slotCount; i++) {
+            slots.add(new ArrayList<>());
+        }
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    synchronized void schedule(String bookingId, long deadlineMillis) {
+        // Round up so a hold never fires before its deadline; overdue ones fire on the next tick
+        long tick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        slots.get(slotOf(tick)).add(new Deadline(bookingId, tick));
+        size++;
+    }
+
+    /**
+     * Moves the wheel up to {@code nowMillis} and returns the bookings whose holds fell due
+     */
+    synchronized List<String> advance(long nowMillis) {
+        long target = nowMillis / tickMillis;
+        List<String> due = new ArrayList<>();
+        // After a long pause every slot is visited once; later turns stay put because of the tick check
+        long from = Math.max(currentTick + 1, target - slots.size() + 1);
+        for (long tick = from; tick <= target; tick++) {
+            Iterator<Deadline> slot = slots.get(slotOf(tick)).iterator();
+            while (slot.hasNext()) {
+                Deadline deadline = slot.next();
+                if (deadline.tick() <= target) {
+                    due.add(deadline.bookingId());
+                    slot.remove();
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, target);
+        size -= due.size();
+        return due;
+    }
+
+    synchronized int size() {
+        return size;
+    }
+
+    private int slotOf(long tick) {
+        return (int) Math.floorMod(tick, (long) slots.size());
+    }
+}
@@ -0,0 +1,244 @@
+package tourbooking.vietvivu.service.hold;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.entity.Booking;
+import tourbooking.vietvivu.entity.SeatHold;
+import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.enumm.PaymentStatus;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.BookingRepository;
+import tourbooking.vietvivu.repository.SeatHoldRepository;
+import tourbooking.vietvivu.service.hot.BookingActivityEvent;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+
+/**
+ * Seats taken by an unpaid booking are held for a short TTL. Payment success turns the hold into
+ * a sale; otherwise the booking is cancelled and its seats go back on sale when the hold expires.
+ * The seat_holds table is the source of truth; an in-memory timing wheel only says when to look,
+ * and a slower sweep of the table catches holds this instance never scheduled (restarts, other nodes).
+ * The sweep runs under a job lease so replicas do not all scan the same rows; the wheel stays per node.
+ */
+@Service
+@Slf4j
+public class SeatHoldService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final int WHEEL_SLOTS = 1024;
+    private static final Duration SWEEP_LEASE = Duration.ofMinutes(5);
+    private static final String INSERT_HOLD =
+            "INSERT INTO seat_holds (booking_id, tour_id, seats, expires_at, created_at) VALUES (?, ?, ?, ?, ?)";
+
+    private final SeatHoldRepository seatHoldRepository;
+    private final BookingRepository bookingRepository;
+    private final SeatInventory seatInventory;
+    private final ApplicationEventPublisher eventPublisher;
+    private final JobLeaseRunner jobLeaseRunner;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate expiryTransaction;
+    private final Duration ttl;
+    private final HoldTimingWheel wheel;
+
+    public SeatHoldService(
+            SeatHoldRepository seatHoldRepository,
+            BookingRepository bookingRepository,
+            SeatInventory seatInventory,
+            ApplicationEventPublisher eventPublisher,
+            JobLeaseRunner jobLeaseRunner,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${booking.hold.ttl:PT15M}") Duration ttl,
+            @Value("${booking.hold.tick-ms:1000}") long tickMillis) {
+        this.seatHoldRepository = seatHoldRepository;
+        this.bookingRepository = bookingRepository;
+        this.seatInventory = seatInventory;
+        this.eventPublisher = eventPublisher;
+        this.jobLeaseRunner = jobLeaseRunner;
+        this.jdbcTemplate = jdbcTemplate;
+        this.expiryTransaction = new TransactionTemplate(transactionManager);
+        this.ttl = ttl;
+        this.wheel = new HoldTimingWheel(tickMillis, WHEEL_SLOTS, System.currentTimeMillis());
+    }
+
+    /**
+     * Records the hold for seats the booking has already reserved, in the caller's transaction;
+     * returns when it expires
+     */
+    public LocalDateTime hold(Booking booking, int seats) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(ttl);
+        seatHoldRepository.save(SeatHold.builder()
+                .bookingId(booking.getBookingId())
+                .tourId(booking.getTour().getTourId())
+                .seats(seats)
+                .expiresAt(expiresAt)
+                .createdAt(now)
+                .build());
+        // A rolled-back booking leaves a dead entry; it fires and finds no row
+        wheel.schedule(booking.getBookingId(), toMillis(expiresAt));
+        return expiresAt;
+    }
+
+    /**
+     * {@link #hold} for the bookings of a group order, inserted with one JDBC batch before the bookings
+     * themselves; each hold needs its bookingId, tourId and seats. Returns when they all expire.
+     */
+    public LocalDateTime holdAll(List<SeatHold> holds) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plus(ttl);
+        Timestamp created = Timestamp.valueOf(now);
+        Timestamp expires = Timestamp.valueOf(expiresAt);
+        jdbcTemplate.batchUpdate(INSERT_HOLD, holds, BATCH_SIZE, (ps, hold) -> {
+            ps.setString(1, hold.getBookingId());
+            ps.setString(2, hold.getTourId());
+            ps.setInt(3, hold.getSeats());
+            ps.setTimestamp(4, expires);
+            ps.setTimestamp(5, created);
+        });
+        long deadline = toMillis(expiresAt);
+        holds.forEach(hold -> wheel.schedule(hold.getBookingId(), deadline));
+        return expiresAt;
+    }
+
+    /**
+     * Called on payment success before the booking is read. Deleting the hold row is what claims
+     * the seats: it waits for an expiry that is running and fails if that expiry won. A booking whose
+     * hold already expired gets its seats back if the tour still has them.
+     */
+    @Transactional
+    public void confirm(String bookingId) {
+        if (!tryConfirm(bookingId)) {
+            throw new AppException(ErrorCode.SEAT_HOLD_EXPIRED);
+        }
+    }
+
+    /**
+     * {@link #confirm} in the caller's transaction, returning false instead of throwing when the hold
+     * expired and the tour is sold out. The booking is locked, so two payments for it cannot both take
+     * seats again, and the seats taken roll back with the caller.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public boolean tryConfirm(String bookingId) {
+        if (seatHoldRepository.deleteByBookingId(bookingId) > 0) {
+            return true;
+        }
+        Booking booking = bookingRepository
+                .findByIdForUpdate(bookingId)
+                .orElseThrow(() -> new AppException(ErrorCode.BOOKING_NOT_FOUND));
+        if (booking.getBookingStatus() != BookingStatus.CANCELLED
+                || booking.getPaymentStatus() != PaymentStatus.UNPAID) {
+            return true;
+        }
+        int seats = booking.getNumAdults() + booking.getNumChildren();
+        if (!seatInventory.tryReserve(booking.getTour().getTourId(), seats, bookingId)) {
+            log.warn("Booking {} was paid after its hold expired and tour is sold out", bookingId);
+            return false;
+        }
+        eventPublisher.publishEvent(
+                BookingActivityEvent.booked(booking.getTour().getTourId(), booking.getBookingDate()));
+        log.info("Booking {} was paid after its hold expired; took {} seats again", bookingId, seats);
+        return true;
+    }
+
+    /**
+     * Drops the hold of a booking that is being cancelled some other way, in the caller's transaction.
+     * It waits for an expiry that is running, and a later payment no longer finds the seats held;
+     * giving the seats back is up to the caller.
+     */
+    public void drop(String bookingId) {
+        seatHoldRepository.deleteByBookingId(bookingId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadHolds() {
+        List<Object[]> deadlines = seatHoldRepository.findAllDeadlines();
+        deadlines.forEach(row -> wheel.schedule((String) row[0], toMillis((LocalDateTime) row[1])));
+        log.info("Seat hold wheel loaded with {} open holds", deadlines.size());
+    }
+
+    @Scheduled(fixedDelayString = "${booking.hold.tick-ms:1000}")
+    public void expireDue() {
+        List<String> due = wheel.advance(System.currentTimeMillis());
+        for (int from = 0; from < due.size(); from += BATCH_SIZE) {
+            List<String> batch = due.subList(from, Math.min(from + BATCH_SIZE, due.size()));
+            expiryTransaction.executeWithoutResult(
+                    status -> expire(seatHoldRepository.lockExpired(batch, LocalDateTime.now())));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${booking.hold.sweep-interval-ms:60000}")
+    public void sweepExpired() {
+        jobLeaseRunner.run("seat-hold-sweep", SWEEP_LEASE, run -> {
+            int expired;
+            do {
+                expired = expiryTransaction.execute(status ->
+                        expire(seatHoldRepository.lockExpired(LocalDateTime.now(), PageRequest.of(0, BATCH_SIZE))));
+            } while (run.progress(expired) && expired == BATCH_SIZE);
+        });
+    }
+
+    /**
+     * Cancels the unpaid bookings behind the holds, gives their seats back with one release per tour
+     * and drops the holds. Holds of bookings that moved on (paid or cancelled some other way) are just dropped.
+     */
+    private int expire(List<SeatHold> holds) {
+        if (holds.isEmpty()) {
+            return 0;
+        }
+        Map<String, LocalDateTime> unpaid = new HashMap<>();
+        for (Object[] row : bookingRepository.findPendingUnpaid(
+                holds.stream().map(SeatHold::getBookingId).toList())) {
+            unpaid.put((String) row[0], (LocalDateTime) row[1]);
+        }
+        List<SeatHold> cancelled = holds.stream()
+                .filter(hold -> unpaid.containsKey(hold.getBookingId()))
+                .toList();
+        if (!cancelled.isEmpty()) {
+            bookingRepository.cancelPendingUnpaid(unpaid.keySet());
+            Map<String, Map<String, Integer>> seatsPerTour = cancelled.stream()
+                    .collect(Collectors.groupingBy(
+                            SeatHold::getTourId,
+                            Collectors.toMap(
+                                    SeatHold::getBookingId, SeatHold::getSeats, Integer::sum, LinkedHashMap::new)));
+            seatsPerTour.forEach(seatInventory::releaseAll);
+            cancelled.forEach(hold -> eventPublisher.publishEvent(
+                    BookingActivityEvent.withdrawn(hold.getTourId(), unpaid.get(hold.getBookingId()))));
+        }
+        seatHoldRepository.deleteAllInBatch(holds);
+
+        log.info(
+                "Expired {} seat holds: cancelled {} unpaid bookings, released seats on {} tours",
+                holds.size(),
+                cancelled.size(),
+                cancelled.stream().map(SeatHold::getTourId).distinct().count());
+        return holds.size();
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,18 @@
+package tourbooking.vietvivu.service.hot;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A booking started (+1) or stopped (-1) counting towards a tour's popularity
+ */
+public record BookingActivityEvent(String tourId, LocalDate bookingDay, int delta) {
+
+    public static BookingActivityEvent booked(String tourId, LocalDateTime bookingDate) {
+        return new BookingActivityEvent(tourId, bookingDate == null ? null : bookingDate.toLocalDate(), 1);
+    }
+
+    public static BookingActivityEvent withdrawn(String tourId, LocalDateTime bookingDate) {
+        return new BookingActivityEvent(tourId, bookingDate == null ? null : bookingDate.toLocalDate(), -1);
+    }
+}
@@ -0,0 +1,210 @@
+package tourbooking.vietvivu.service.hot;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.enumm.HotTourWindow;
+import tourbooking.vietvivu.repository.BookingRepository;
+import tourbooking.vietvivu.service.catalog.TourCatalog;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
+
+/**
+ * In-memory "hot tours" ranking by number of bookings (cancelled ones excluded), one sorted
+ * board per {@link HotTourWindow}. Windowed boards keep per-day buckets and drop the oldest
+ * day when the date rolls over, so reading the top K only walks the first K entries.
+ */
+@Component
+@Slf4j
+public class HotTourLeaderboard {
+
+    static final Set<BookingStatus> NOT_COUNTED =
+            EnumSet.of(BookingStatus.CANCELLED, BookingStatus.CONFIRMED_CANCELLATION);
+
+    private static final int MAX_WINDOW_DAYS = Arrays.stream(HotTourWindow.values())
+            .mapToInt(HotTourWindow::getDays)
+            .max()
+            .orElse(0);
+
+    private final BookingRepository bookingRepository;
+    private final TourCatalog tourCatalog;
+    private final TransactionTemplate readTransaction;
+    private final int defaultLimit;
+
+    private record Ranked(String tourId, long count) {}
+
+    private static final Comparator<Ranked> MOST_BOOKED =
+            Comparator.comparingLong(Ranked::count).reversed().thenComparing(Ranked::tourId);
+
+    private static final class Board {
+        private final Map<String, Long> counts = new HashMap<>();
+        private final TreeSet<Ranked> ranking = new TreeSet<>(MOST_BOOKED);
+
+        void add(String tourId, long delta) {
+            Long current = counts.get(tourId);
+            if (current != null) {
+                ranking.remove(new Ranked(tourId, current));
+            }
+            long next = (current == null ? 0 : current) + delta;
+            if (next > 0) {
+                counts.put(tourId, next);
+                ranking.add(new Ranked(tourId, next));
+            } else {
+                counts.remove(tourId);
+            }
+        }
+    }
+
+    private final Object lock = new Object();
+    private Map<HotTourWindow, Board> boards = emptyBoards();
+    // booking day -> tourId -> count, only for the last MAX_WINDOW_DAYS days
+    private TreeMap<LocalDate, Map<String, Long>> days = new TreeMap<>();
+    private LocalDate today = LocalDate.now();
+
+    public HotTourLeaderboard(
+            BookingRepository bookingRepository,
+            TourCatalog tourCatalog,
+            PlatformTransactionManager transactionManager,
+            @Value("${hot-tours.default-limit:3}") int defaultLimit) {
+        this.bookingRepository = bookingRepository;
+        this.tourCatalog = tourCatalog;
+        this.defaultLimit = defaultLimit;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Rebuild from the database; also run nightly to repair any drift
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 15 3 * * *")
+    public void warmUp() {
+        LocalDate now = LocalDate.now();
+        LocalDate since = now.minusDays(MAX_WINDOW_DAYS - 1L);
+        Map<HotTourWindow, Board> rebuilt = emptyBoards();
+        TreeMap<LocalDate, Map<String, Long>> rebuiltDays = new TreeMap<>();
+
+        readTransaction.executeWithoutResult(status -> {
+            for (Object[] row : bookingRepository.countBookingsPerTour(NOT_COUNTED)) {
+                rebuilt.get(HotTourWindow.ALL_TIME).add((String) row[0], (Long) row[1]);
+            }
+            for (Object[] row : bookingRepository.countBookingsPerTourAndDay(NOT_COUNTED, since.atStartOfDay())) {
+                rebuiltDays
+                        .computeIfAbsent((LocalDate) row[1], day -> new HashMap<>())
+                        .merge((String) row[0], (Long) row[2], Long::sum);
+            }
+        });
+
+        rebuiltDays.forEach((day, counts) -> counts.forEach((tourId, count) -> {
+            for (HotTourWindow window : HotTourWindow.values()) {
+                if (window.getDays() > 0 && isInWindow(day, now, window)) {
+                    rebuilt.get(window).add(tourId, count);
+                }
+            }
+        }));
+
+        synchronized (lock) {
+            boards = rebuilt;
+            days = rebuiltDays;
+            today = now;
+        }
+        log.info(
+                "Hot tour leaderboard loaded: {} tours all time, {} this week",
+                rebuilt.get(HotTourWindow.ALL_TIME).counts.size(),
+                rebuilt.get(HotTourWindow.WEEK).counts.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookingActivity(BookingActivityEvent event) {
+        if (event.tourId() == null) return;
+        synchronized (lock) {
+            rollOver(LocalDate.now());
+            boards.get(HotTourWindow.ALL_TIME).add(event.tourId(), event.delta());
+            LocalDate day = event.bookingDay();
+            if (day == null) {
+                return;
+            }
+            for (HotTourWindow window : HotTourWindow.values()) {
+                if (window.getDays() > 0 && isInWindow(day, today, window)) {
+                    boards.get(window).add(event.tourId(), event.delta());
+                }
+            }
+            if (isInWindow(day, today, MAX_WINDOW_DAYS)) {
+                days.computeIfAbsent(day, d -> new HashMap<>()).merge(event.tourId(), (long) event.delta(), Long::sum);
+            }
+        }
+    }
+
+    public int defaultLimit() {
+        return defaultLimit;
+    }
+
+    /**
+     * The {@code limit} most booked tours in the window that are still open for booking
+     */
+    public List<TourSnapshot> top(HotTourWindow window, int limit) {
+        List<TourSnapshot> result = new ArrayList<>(limit);
+        synchronized (lock) {
+            rollOver(LocalDate.now());
+            for (Ranked ranked : boards.get(window).ranking) {
+                if (result.size() == limit) break;
+                tourCatalog.find(ranked.tourId()).filter(TourSnapshot::isPublic).ifPresent(result::add);
+            }
+        }
+        return result;
+    }
+
+    // Move `today` forward one day at a time, dropping the day that leaves each window
+    private void rollOver(LocalDate now) {
+        while (today.isBefore(now)) {
+            today = today.plusDays(1);
+            for (HotTourWindow window : HotTourWindow.values()) {
+                if (window.getDays() == 0) continue;
+                Map<String, Long> expired = days.get(today.minusDays(window.getDays()));
+                if (expired != null) {
+                    Board board = boards.get(window);
+                    expired.forEach((tourId, count) -> board.add(tourId, -count));
+                }
+            }
+            days.headMap(today.minusDays(MAX_WINDOW_DAYS - 1L)).clear();
+        }
+    }
+
+    private static boolean isInWindow(LocalDate day, LocalDate today, HotTourWindow window) {
+        return isInWindow(day, today, window.getDays());
+    }
+
+    private static boolean isInWindow(LocalDate day, LocalDate today, int windowDays) {
+        return !day.isAfter(today) && day.isAfter(today.minusDays(windowDays));
+    }
+
+    private static Map<HotTourWindow, Board> emptyBoards() {
+        Map<HotTourWindow, Board> boards = new EnumMap<>(HotTourWindow.class);
+        for (HotTourWindow window : HotTourWindow.values()) {
+            boards.put(window, new Board());
+        }
+        return boards;
+    }
+}
@@ -0,0 +1,312 @@
+package tourbooking.vietvivu.service.idempotency;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.entity.IdempotencyRecord;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.IdempotencyRecordRepository;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+
+/**
+ * Runs a mutation at most once per Idempotency-Key. A bounded in-memory map gives single-flight on
+ * this instance: a duplicate arriving while the first request runs waits for it, and later replays
+ * get the stored response without touching the database. The idempotency_records table does the same
+ * across instances: the first request claims the key for a short lease, and its response is stored
+ * in the same transaction as its work, so either both commit or neither does. A request that fails
+ * releases the key and a retry runs it again. Keys are scoped to the endpoint and the caller, and a
+ * key sent again with a different body is rejected.
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    private static final int MAX_KEY_LENGTH = 128;
+    private static final long POLL_MILLIS = 100;
+    private static final int PURGE_CHUNK = 1000;
+    private static final Duration PURGE_LEASE = Duration.ofMinutes(5);
+
+    private enum ClaimState {
+        ACQUIRED,
+        COMPLETED,
+        BUSY
+    }
+
+    private record Claim(ClaimState state, IdempotencyRecord record) {}
+
+    /**
+     * One request under a key on this instance. Waiters get its stored response, or an exception
+     * when it failed and they should try themselves.
+     */
+    private static final class Flight {
+        final String requestHash;
+        final CompletableFuture<String> response = new CompletableFuture<>();
+        volatile long expiresAtMillis = Long.MAX_VALUE;
+
+        Flight(String requestHash) {
+            this.requestHash = requestHash;
+        }
+
+        boolean expired() {
+            return System.currentTimeMillis() >= expiresAtMillis;
+        }
+    }
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final JobLeaseRunner jobLeaseRunner;
+    private final TransactionTemplate claimTransaction;
+    private final TransactionTemplate workTransaction;
+    private final ObjectMapper storeMapper;
+    private final Map<String, Flight> flights;
+    private final Duration ttl;
+    private final Duration lease;
+    private final Duration waitFor;
+
+    public IdempotencyService(
+            IdempotencyRecordRepository recordRepository,
+            JobLeaseRunner jobLeaseRunner,
+            PlatformTransactionManager transactionManager,
+            @Value("${idempotency.ttl:PT24H}") Duration ttl,
+            @Value("${idempotency.lease:PT1M}") Duration lease,
+            @Value("${idempotency.wait:PT30S}") Duration waitFor,
+            @Value("${idempotency.max-entries:10000}") int maxEntries) {
+        this.recordRepository = recordRepository;
+        this.jobLeaseRunner = jobLeaseRunner;
+        this.claimTransaction = new TransactionTemplate(transactionManager);
+        this.claimTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.workTransaction = new TransactionTemplate(transactionManager);
+        // Stored responses are read back only here, so they use plain ISO dates whatever the API format is
+        this.storeMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.flights = Collections.synchronizedMap(new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Flight> eldest) {
+                return size() > maxEntries;
+            }
+        });
+        this.ttl = ttl;
+        this.lease = lease;
+        this.waitFor = waitFor;
+    }
+
+    /**
+     * Runs {@code work} once for this key and returns its result; a replay returns the first result
+     * instead. Without a key the work simply runs.
+     */
+    public <T> T execute(String scope, String key, Object request, Class<T> responseType, Supplier<T> work) {
+        if (key == null) {
+            return work.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new AppException(ErrorCode.INVALID_IDEMPOTENCY_KEY);
+        }
+        String recordKey = sha256(scope + '\n' + caller() + '\n' + key);
+        String requestHash = sha256(write(request));
+        long deadline = System.nanoTime() + waitFor.toNanos();
+
+        while (true) {
+            Flight flight = new Flight(requestHash);
+            Flight current = flights.putIfAbsent(recordKey, flight);
+            if (current != null && current.expired()) {
+                flights.remove(recordKey, current);
+                continue;
+            }
+            if (current != null) {
+                if (!current.requestHash.equals(requestHash)) {
+                    throw new AppException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+                }
+                String body = await(current, deadline);
+                if (body != null) {
+                    return read(body, responseType);
+                }
+                // The first request failed and released the key: run it ourselves
+                continue;
+            }
+
+            try {
+                String body = runOnce(recordKey, requestHash, work, deadline);
+                flight.expiresAtMillis = System.currentTimeMillis() + ttl.toMillis();
+                flight.response.complete(body);
+                return read(body, responseType);
+            } catch (RuntimeException e) {
+                flights.remove(recordKey, flight);
+                flight.response.completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Deletes records past their TTL, a chunk per transaction, on one instance at a time
+     */
+    @Scheduled(fixedDelayString = "${idempotency.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        jobLeaseRunner.run("idempotency-purge", PURGE_LEASE, run -> {
+            LocalDateTime now = LocalDateTime.now();
+            int deleted;
+            do {
+                deleted = workTransaction.execute(status -> {
+                    List<String> keys = recordRepository.findExpiredKeys(now, PageRequest.of(0, PURGE_CHUNK));
+                    recordRepository.deleteAllByIdInBatch(keys);
+                    return keys.size();
+                });
+            } while (run.progress(deleted) && deleted == PURGE_CHUNK);
+        });
+    }
+
+    /**
+     * Claims the key in the database and runs the work, or returns the response another instance stored.
+     * While another instance holds the key this polls until it finishes or its lease runs out.
+     */
+    private <T> String runOnce(String recordKey, String requestHash, Supplier<T> work, long deadline) {
+        while (true) {
+            Claim claim = claim(recordKey, requestHash);
+            if (claim.state() == ClaimState.COMPLETED) {
+                return claim.record().getResponseBody();
+            }
+            if (claim.state() == ClaimState.ACQUIRED) {
+                try {
+                    return workTransaction.execute(status -> {
+                        String body = write(work.get());
+                        // Lost the key to a takeover after our lease ran out: roll back rather than run twice
+                        if (recordRepository.complete(recordKey, body) == 0) {
+                            throw new AppException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS);
+                        }
+                        return body;
+                    });
+                } catch (RuntimeException e) {
+                    claimTransaction.executeWithoutResult(status -> recordRepository.release(recordKey));
+                    throw e;
+                }
+            }
+            if (System.nanoTime() >= deadline) {
+                throw new AppException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS);
+            }
+            sleep(POLL_MILLIS);
+        }
+    }
+
+    private Claim claim(String recordKey, String requestHash) {
+        Claim claim = claimTransaction.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            IdempotencyRecord record = recordRepository.findById(recordKey).orElse(null);
+            if (record != null && record.getExpiresAt().isBefore(now)) {
+                recordRepository.delete(record);
+                recordRepository.flush();
+                record = null;
+            }
+            if (record == null) {
+                return null;
+            }
+            if (!record.getRequestHash().equals(requestHash)) {
+                throw new AppException(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+            }
+            if (Boolean.TRUE.equals(record.getCompleted())) {
+                return new Claim(ClaimState.COMPLETED, record);
+            }
+            return recordRepository.takeOver(recordKey, now, now.plus(lease)) > 0
+                    ? new Claim(ClaimState.ACQUIRED, record)
+                    : new Claim(ClaimState.BUSY, record);
+        });
+        if (claim != null) {
+            return claim;
+        }
+        try {
+            claimTransaction.executeWithoutResult(status -> {
+                LocalDateTime now = LocalDateTime.now();
+                recordRepository.insert(recordKey, requestHash, now.plus(lease), now, now.plus(ttl));
+            });
+            return new Claim(ClaimState.ACQUIRED, null);
+        } catch (DataIntegrityViolationException e) {
+            // Another instance claimed it first
+            return new Claim(ClaimState.BUSY, null);
+        }
+    }
+
+    private String await(Flight flight, long deadline) {
+        try {
+            return flight.response.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            return null;
+        } catch (TimeoutException e) {
+            throw new AppException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.IDEMPOTENCY_REQUEST_IN_PROGRESS);
+        }
+    }
+
+    private static String caller() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "" : authentication.getName();
+    }
+
+    private String write(Object value) {
+        try {
+            return storeMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(
+                    "Cannot serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private <T> T read(String body, Class<T> type) {
+        try {
+            return storeMapper.readValue(body, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored " + type.getSimpleName(), e);
+        }
+    }
+
+    private static String sha256(String value) {
+        try {
+            return HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
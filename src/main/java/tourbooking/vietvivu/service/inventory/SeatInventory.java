@@ -0,0 +1,228 @@
+package tourbooking.vietvivu.service.inventory;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.enumm.SeatLedgerReason;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.service.catalog.TourChangedEvent;
+
+/**
+ * The only writer of tours.quantity after creation. Every change is a single conditional UPDATE,
+ * so concurrent bookings cannot both pass the seat check and drive the count below zero.
+ * Tours switched to striped mode claim from {@link StripedSeatCounter} instead of the tour row.
+ * Each change that goes through is also appended to the {@link SeatLedger} in the same transaction.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class SeatInventory {
+
+    TourRepository tourRepository;
+    StripedSeatCounter stripedSeatCounter;
+    SeatLedger seatLedger;
+    ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Takes the seats if they are all available; returns false, changing nothing, otherwise
+     */
+    @Transactional
+    public boolean tryReserve(String tourId, int seats) {
+        return tryReserve(tourId, seats, null);
+    }
+
+    /**
+     * {@link #tryReserve(String, int)} for a booking, which is recorded on the ledger entry
+     */
+    @Transactional
+    public boolean tryReserve(String tourId, int seats, String bookingId) {
+        return tryReserve(tourId, Collections.singletonMap(bookingId, seats), SeatLedgerReason.RESERVE);
+    }
+
+    /**
+     * Takes the seats of several bookings on one tour with a single update, or none of them;
+     * each booking gets its own ledger entry
+     */
+    @Transactional
+    public boolean tryReserveAll(String tourId, Map<String, Integer> seatsByBooking) {
+        return tryReserve(tourId, seatsByBooking, SeatLedgerReason.RESERVE);
+    }
+
+    private boolean tryReserve(String tourId, Map<String, Integer> seatsByBooking, SeatLedgerReason reason) {
+        int seats = sum(seatsByBooking);
+        if (seats <= 0) {
+            return true;
+        }
+        // Re-read the mode once when an attempt fails: an admin may have switched it in between
+        Integer stripes = tourRepository.findSeatStripesByTourId(tourId);
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (stripes == null) {
+                if (tourRepository.reserveSeats(tourId, seats) > 0) {
+                    seatsByBooking.forEach((bookingId, taken) -> seatLedger.record(tourId, -taken, reason, bookingId));
+                    eventPublisher.publishEvent(new TourChangedEvent(tourId));
+                    return true;
+                }
+            } else if (stripedSeatCounter.tryClaim(tourId, stripes, seats)) {
+                // Striped tours publish their quantity from the periodic sync, not per booking
+                seatsByBooking.forEach((bookingId, taken) -> seatLedger.record(tourId, -taken, reason, bookingId));
+                return true;
+            }
+            Integer current = tourRepository.findSeatStripesByTourId(tourId);
+            if (current == null ? stripes == null : current.equals(stripes)) {
+                break;
+            }
+            stripes = current;
+        }
+        log.info("Not enough seats left on tour {} for {}", tourId, seats);
+        return false;
+    }
+
+    @Transactional
+    public void reserve(String tourId, int seats, String bookingId) {
+        if (!tryReserve(tourId, seats, bookingId)) {
+            throw new AppException(ErrorCode.QUANTITY_NOT_ENOUGH);
+        }
+    }
+
+    @Transactional
+    public void release(String tourId, int seats) {
+        release(tourId, seats, null);
+    }
+
+    /**
+     * Gives seats back; {@code bookingId} is recorded on the ledger entry
+     */
+    @Transactional
+    public void release(String tourId, int seats, String bookingId) {
+        release(tourId, Collections.singletonMap(bookingId, seats), SeatLedgerReason.RELEASE);
+    }
+
+    /**
+     * Gives back the seats of several bookings on one tour with a single update; each booking gets
+     * its own ledger entry
+     */
+    @Transactional
+    public void releaseAll(String tourId, Map<String, Integer> seatsByBooking) {
+        release(tourId, seatsByBooking, SeatLedgerReason.RELEASE);
+    }
+
+    /**
+     * Moves a booking's seats to another tour: takes them there first and throws, changing nothing,
+     * when that tour is short
+     */
+    @Transactional
+    public void transfer(String fromTourId, String toTourId, int seats, String bookingId) {
+        if (!tryReserve(toTourId, Collections.singletonMap(bookingId, seats), SeatLedgerReason.TRANSFER)) {
+            throw new AppException(ErrorCode.QUANTITY_NOT_ENOUGH);
+        }
+        release(fromTourId, Collections.singletonMap(bookingId, seats), SeatLedgerReason.TRANSFER);
+        log.info("Moved {} seats of booking {} from tour {} to tour {}", seats, bookingId, fromTourId, toTourId);
+    }
+
+    private void release(String tourId, Map<String, Integer> seatsByBooking, SeatLedgerReason reason) {
+        int seats = sum(seatsByBooking);
+        if (seats <= 0) {
+            return;
+        }
+        int released = giveBack(tourId, seats);
+        // The ledger gets what went back: a release capped at the initial quantity is booked against
+        // the first bookings until it runs out
+        int left = released;
+        for (Map.Entry<String, Integer> entry : seatsByBooking.entrySet()) {
+            int delta = Math.min(entry.getValue(), left);
+            if (delta != 0) {
+                seatLedger.record(tourId, delta, reason, entry.getKey());
+                left -= delta;
+            }
+        }
+        if (released != seats) {
+            log.warn("Released {} of {} seats on tour {}: capped at its initial quantity", released, seats, tourId);
+        } else {
+            log.info("Released {} seats on tour {}", seats, tourId);
+        }
+    }
+
+    /**
+     * Adds the seats back, never above the initial quantity; returns how many it added
+     */
+    private int giveBack(String tourId, int seats) {
+        if (tourRepository.releaseSeats(tourId, seats) > 0) {
+            eventPublisher.publishEvent(new TourChangedEvent(tourId));
+            return seats;
+        }
+        // Either the tour is striped or the seats would overflow its initial quantity
+        Integer room = tourRepository.lockRoomToInitialQuantity(tourId);
+        if (room == null) {
+            return stripedSeatCounter.release(tourId, seats);
+        }
+        int released = Math.min(seats, room);
+        if (released == 0 || tourRepository.releaseSeats(tourId, released) == 0) {
+            return 0;
+        }
+        eventPublisher.publishEvent(new TourChangedEvent(tourId));
+        return released;
+    }
+
+    /**
+     * Moves a tour's initial quantity from {@code from} to {@code to} and puts the difference on sale, or
+     * takes it off; returns the seats now left and throws, changing nothing, when more seats are booked than
+     * {@code to} leaves room for
+     */
+    @Transactional
+    public int resize(String tourId, int from, int to) {
+        int delta = to - from;
+        Integer stripes = tourRepository.findSeatStripesByTourId(tourId);
+        int quantity;
+        if (stripes == null) {
+            if (tourRepository.resizeSeats(tourId, from, to) == 0) {
+                throw new AppException(ErrorCode.INITIAL_QUANTITY_BELOW_SOLD);
+            }
+            quantity = tourRepository.findQuantityByTourId(tourId);
+        } else {
+            quantity = tourRepository.updateInitialQuantity(tourId, from, to) > 0
+                    ? stripedSeatCounter.resize(tourId, delta)
+                    : -1;
+            if (quantity < 0) {
+                throw new AppException(ErrorCode.INITIAL_QUANTITY_BELOW_SOLD);
+            }
+        }
+        if (delta != 0) {
+            seatLedger.record(tourId, delta, SeatLedgerReason.RESIZE, null);
+        }
+        eventPublisher.publishEvent(new TourChangedEvent(tourId));
+        log.info("Tour {} resized from {} to {} seats, {} left", tourId, from, to, quantity);
+        return quantity;
+    }
+
+    private static int sum(Map<String, Integer> seatsByBooking) {
+        return seatsByBooking.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * Switches a tour between the single-row mode ({@code stripes} 0 or 1) and striped mode
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional
+    public void setStripes(String tourId, int stripes) {
+        if (stripes < 0 || stripes > StripedSeatCounter.MAX_STRIPES) {
+            throw new AppException(ErrorCode.INVALID_SEAT_STRIPES);
+        }
+        if (stripes <= 1) {
+            stripedSeatCounter.disable(tourId);
+        } else {
+            stripedSeatCounter.enable(tourId, stripes);
+        }
+    }
+}
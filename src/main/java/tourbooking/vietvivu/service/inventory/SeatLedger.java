@@ -0,0 +1,151 @@
+package tourbooking.vietvivu.service.inventory;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.dto.response.SeatLedgerResponse;
+import tourbooking.vietvivu.entity.SeatLedgerEntry;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.entity.TourSeatBalance;
+import tourbooking.vietvivu.enumm.SeatLedgerReason;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.SeatLedgerRepository;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.repository.TourSeatBalanceRepository;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+
+/**
+ * Append-only record of every seat change {@link SeatInventory} makes, written in the same transaction
+ * as the change: one insert, no row shared with other bookings. A leased job folds entries into a
+ * per-tour balance in chunks and flags them, so reading a tour's totals sums only the recent tail.
+ */
+@Component
+@Slf4j
+public class SeatLedger {
+
+    private static final Duration COMPACT_LEASE = Duration.ofMinutes(5);
+    private static final int MAX_RECENT = 200;
+
+    private final SeatLedgerRepository ledgerRepository;
+    private final TourSeatBalanceRepository balanceRepository;
+    private final TourRepository tourRepository;
+    private final JobLeaseRunner jobLeaseRunner;
+    private final TransactionTemplate chunkTransaction;
+    private final int chunkSize;
+
+    public SeatLedger(
+            SeatLedgerRepository ledgerRepository,
+            TourSeatBalanceRepository balanceRepository,
+            TourRepository tourRepository,
+            JobLeaseRunner jobLeaseRunner,
+            PlatformTransactionManager transactionManager,
+            @Value("${tour.inventory.ledger.chunk-size:1000}") int chunkSize) {
+        this.ledgerRepository = ledgerRepository;
+        this.balanceRepository = balanceRepository;
+        this.tourRepository = tourRepository;
+        this.jobLeaseRunner = jobLeaseRunner;
+        this.chunkTransaction = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Appends an entry in the caller's transaction; {@code delta} is negative for seats taken
+     */
+    void record(String tourId, int delta, SeatLedgerReason reason, String reference) {
+        ledgerRepository.save(SeatLedgerEntry.builder()
+                .tourId(tourId)
+                .delta(delta)
+                .reason(reason)
+                .reference(reference)
+                .createdAt(LocalDateTime.now())
+                .compacted(false)
+                .build());
+    }
+
+    @Scheduled(fixedDelayString = "${tour.inventory.ledger.compact-interval-ms:60000}")
+    public void compact() {
+        jobLeaseRunner.run("seat-ledger-compact", COMPACT_LEASE, run -> {
+            int folded;
+            do {
+                folded = chunkTransaction.execute(status -> compactChunk());
+            } while (run.progress(folded) && folded == chunkSize);
+        });
+    }
+
+    /**
+     * Ledger totals of the tour (compacted balance plus the tail) and its latest entries
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public SeatLedgerResponse statement(String tourId, int limit) {
+        Tour tour = tourRepository.findById(tourId).orElseThrow(() -> new AppException(ErrorCode.TOUR_NOT_FOUND));
+        TourSeatBalance balance = balanceRepository.findById(tourId).orElse(null);
+        Object[] tail = ledgerRepository.sumUncompacted(tourId).get(0);
+        long pending = ((Number) tail[2]).longValue();
+
+        List<SeatLedgerResponse.Entry> recent = ledgerRepository
+                .findByTourIdOrderByEntryIdDesc(tourId, PageRequest.of(0, Math.max(1, Math.min(limit, MAX_RECENT))))
+                .stream()
+                .map(entry -> SeatLedgerResponse.Entry.builder()
+                        .entryId(entry.getEntryId())
+                        .delta(entry.getDelta())
+                        .reason(entry.getReason().name())
+                        .reference(entry.getReference())
+                        .createdAt(entry.getCreatedAt())
+                        .build())
+                .toList();
+
+        return SeatLedgerResponse.builder()
+                .tourId(tourId)
+                .initialQuantity(tour.getInitialQuantity())
+                .quantity(tour.getQuantity())
+                .reserved((balance == null ? 0 : balance.getReserved()) + ((Number) tail[0]).longValue())
+                .released((balance == null ? 0 : balance.getReleased()) + ((Number) tail[1]).longValue())
+                .entries((balance == null ? 0 : balance.getEntries()) + pending)
+                .pendingEntries(pending)
+                .compactedAt(balance == null ? null : balance.getCompactedAt())
+                .recent(recent)
+                .build();
+    }
+
+    /**
+     * Folds the oldest unflagged entries into their tours' balances. Flagging each entry, rather than
+     * keeping a high-water mark, means an entry whose transaction commits late is still picked up.
+     */
+    private int compactChunk() {
+        List<Long> ids = ledgerRepository.findUncompactedIds(PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : ledgerRepository.sumByTour(ids)) {
+            String tourId = (String) row[0];
+            long reserved = ((Number) row[1]).longValue();
+            long released = ((Number) row[2]).longValue();
+            long entries = ((Number) row[3]).longValue();
+            // Only the lease holder compacts, so nobody else creates the row in between
+            if (balanceRepository.add(tourId, reserved, released, entries, now) == 0) {
+                balanceRepository.save(TourSeatBalance.builder()
+                        .tourId(tourId)
+                        .reserved(reserved)
+                        .released(released)
+                        .entries(entries)
+                        .compactedAt(now)
+                        .build());
+            }
+        }
+        ledgerRepository.markCompacted(ids);
+        log.debug("Compacted {} seat ledger entries", ids.size());
+        return ids.size();
+    }
+}
@@ -0,0 +1,242 @@
+package tourbooking.vietvivu.service.inventory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.entity.TourSeatStripe;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.repository.TourSeatStripeRepository;
+import tourbooking.vietvivu.service.catalog.TourChangedEvent;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+import tourbooking.vietvivu.service.job.JobRun;
+
+/**
+ * High-contention inventory mode. A tour's remaining seats are split across stripe rows and each
+ * booking claims from one of them, so concurrent bookings lock different rows instead of queueing on
+ * the tour row. A booking probes the stripes from a random one and takes the first unlocked stripe with
+ * enough seats (SKIP LOCKED, so it never queues behind another booking). When none is free it queues on
+ * the fullest stripe, and when that one is short it borrows from every unlocked stripe and spreads what
+ * is left evenly over them. tours.quantity is refreshed from the stripe
+ * sum on a schedule.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class StripedSeatCounter {
+
+    public static final int MAX_STRIPES = 64;
+    static final Duration SYNC_LEASE = Duration.ofMinutes(1);
+
+    TourRepository tourRepository;
+    TourSeatStripeRepository stripeRepository;
+    ApplicationEventPublisher eventPublisher;
+    JobLeaseRunner jobLeaseRunner;
+
+    /**
+     * Runs in the caller's transaction; false when the tour has fewer seats left (or no stripes any more).
+     * It only ever waits while holding no stripe, and the rows it waits on are held by bookings that never
+     * wait, so it cannot deadlock.
+     */
+    boolean tryClaim(String tourId, int stripes, int seats) {
+        // Probe from a random stripe so concurrent bookings spread out
+        int first = ThreadLocalRandom.current().nextInt(stripes);
+        for (int i = 0; i < stripes; i++) {
+            Optional<TourSeatStripe> free = stripeRepository.findFreeStripe(tourId, (first + i) % stripes, seats);
+            if (free.isPresent()) {
+                free.get().setSeats(free.get().getSeats() - seats);
+                return true;
+            }
+        }
+
+        // Every stripe is busy or short: queue on the fullest one, as the single-row mode would
+        List<Object[]> snapshot = stripeRepository.findSeatsByTourId(tourId);
+        Object[] fullest = snapshot.stream()
+                .max(Comparator.comparingInt(row -> (Integer) row[1]))
+                .orElse(null);
+        if (fullest == null
+                || snapshot.stream().mapToInt(row -> (Integer) row[1]).sum() < seats) {
+            return false;
+        }
+        TourSeatStripe waited = stripeRepository
+                .findStripeForUpdate(tourId, (Integer) fullest[0])
+                .orElse(null);
+        if (waited == null) {
+            return false;
+        }
+        if (waited.getSeats() >= seats) {
+            waited.setSeats(waited.getSeats() - seats);
+            return true;
+        }
+
+        // Too few on one stripe: borrow from every stripe nobody else holds and spread the rest over them
+        Map<Integer, TourSeatStripe> held = new HashMap<>();
+        held.put(waited.getStripe(), waited);
+        stripeRepository.findUnlockedByTourId(tourId).forEach(stripe -> held.putIfAbsent(stripe.getStripe(), stripe));
+        List<TourSeatStripe> borrowed = new ArrayList<>(held.values());
+        int total = sum(borrowed);
+        if (total < seats) {
+            return false;
+        }
+        spread(borrowed, total - seats);
+        log.debug("Borrowed {} seats across {} stripes of tour {}", seats, borrowed.size(), tourId);
+        return true;
+    }
+
+    /**
+     * Gives seats back (capped at the initial quantity) and publishes the new quantity right away,
+     * so a sold-out tour reopens without waiting for the next sync; returns how many went back,
+     * 0 when the tour has no stripes
+     */
+    int release(String tourId, int seats) {
+        List<TourSeatStripe> all = stripeRepository.findAllByTourIdForUpdate(tourId);
+        if (all.isEmpty()) {
+            return 0;
+        }
+        int before = sum(all);
+        int total = before + seats;
+        Integer initialQuantity =
+                tourRepository.findById(tourId).map(Tour::getInitialQuantity).orElse(null);
+        if (initialQuantity != null) {
+            total = Math.min(total, initialQuantity);
+        }
+        spread(all, total);
+        publish(tourId, total);
+        return total - before;
+    }
+
+    /**
+     * Adds {@code delta} seats to the stripes (or takes them off) and publishes the new quantity; returns it,
+     * or -1, changing nothing, when the tour has no stripes or fewer seats left than a decrease takes
+     */
+    int resize(String tourId, int delta) {
+        List<TourSeatStripe> all = stripeRepository.findAllByTourIdForUpdate(tourId);
+        int total = sum(all) + delta;
+        if (all.isEmpty() || total < 0) {
+            return -1;
+        }
+        spread(all, total);
+        publish(tourId, total);
+        return total;
+    }
+
+    /**
+     * Moves the tour's remaining seats into {@code stripes} stripes, or re-splits them when it is already striped
+     */
+    @Transactional
+    public void enable(String tourId, int stripes) {
+        Tour tour =
+                tourRepository.findByIdForUpdate(tourId).orElseThrow(() -> new AppException(ErrorCode.TOUR_NOT_FOUND));
+        List<TourSeatStripe> existing = stripeRepository.findAllByTourIdForUpdate(tourId);
+        int seats = tour.getSeatStripes() == null ? tour.getQuantity() : sum(existing);
+
+        // Reuse rows by stripe number: a delete and an insert of the same key in one flush would collide
+        Map<Integer, TourSeatStripe> byStripe = new HashMap<>();
+        existing.forEach(stripe -> byStripe.put(stripe.getStripe(), stripe));
+        List<TourSeatStripe> target = new ArrayList<>(stripes);
+        for (int i = 0; i < stripes; i++) {
+            TourSeatStripe stripe = byStripe.remove(i);
+            target.add(
+                    stripe != null
+                            ? stripe
+                            : TourSeatStripe.builder()
+                                    .tourId(tourId)
+                                    .stripe(i)
+                                    .seats(0)
+                                    .build());
+        }
+        stripeRepository.deleteAll(byStripe.values());
+        spread(target, seats);
+        stripeRepository.saveAll(target);
+
+        tourRepository.updateSeatStripes(tourId, stripes);
+        publish(tourId, seats);
+        log.info("Tour {} now uses {} seat stripes for {} seats", tourId, stripes, seats);
+    }
+
+    /**
+     * Folds the stripes back into tours.quantity and returns the tour to the single-row mode
+     */
+    @Transactional
+    public void disable(String tourId) {
+        Tour tour =
+                tourRepository.findByIdForUpdate(tourId).orElseThrow(() -> new AppException(ErrorCode.TOUR_NOT_FOUND));
+        if (tour.getSeatStripes() == null) {
+            return;
+        }
+        List<TourSeatStripe> existing = stripeRepository.findAllByTourIdForUpdate(tourId);
+        int seats = sum(existing);
+        stripeRepository.deleteAll(existing);
+        tourRepository.updateSeatStripes(tourId, null);
+        publish(tourId, seats);
+        log.info("Tour {} back to single-row inventory with {} seats", tourId, seats);
+    }
+
+    /**
+     * Periodic sum: what readers see as the quantity of a striped tour. One replica does it per round;
+     * the others pick the new quantity up through TourCatalog's resync.
+     */
+    @Scheduled(fixedDelayString = "${tour.inventory.sync-interval-ms:5000}")
+    @Transactional
+    public void syncQuantities() {
+        jobLeaseRunner.run("striped-quantity-sync", SYNC_LEASE, this::syncQuantities);
+    }
+
+    private void syncQuantities(JobRun run) {
+        List<Object[]> striped = tourRepository.findStripedQuantities();
+        if (striped.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> sums = new HashMap<>();
+        for (Object[] row : stripeRepository.sumSeatsPerTour()) {
+            sums.put((String) row[0], ((Number) row[1]).intValue());
+        }
+        int changed = 0;
+        for (Object[] row : striped) {
+            String tourId = (String) row[0];
+            int seats = sums.getOrDefault(tourId, 0);
+            if (row[1] == null || seats != ((Number) row[1]).intValue()) {
+                publish(tourId, seats);
+                changed++;
+            }
+        }
+        tourRepository.recountStripedTotalBookings();
+        run.progress(changed);
+    }
+
+    private void publish(String tourId, int seats) {
+        if (tourRepository.updateStripedQuantity(tourId, seats) > 0) {
+            eventPublisher.publishEvent(new TourChangedEvent(tourId));
+        }
+    }
+
+    private static int sum(List<TourSeatStripe> stripes) {
+        return stripes.stream().mapToInt(TourSeatStripe::getSeats).sum();
+    }
+
+    private static void spread(List<TourSeatStripe> stripes, int seats) {
+        int share = seats / stripes.size();
+        int extra = seats % stripes.size();
+        for (int i = 0; i < stripes.size(); i++) {
+            stripes.get(i).setSeats(share + (i < extra ? 1 : 0));
+        }
+    }
+}
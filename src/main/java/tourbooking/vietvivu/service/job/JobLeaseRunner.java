@@ -0,0 +1,93 @@
+package tourbooking.vietvivu.service.job;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.repository.JobLeaseRepository;
+
+/**
+ * Runs a scheduled job on at most one replica at a time. The job_leases row names the owner and
+ * how long its lease lasts; each checkpoint extends it, so a crashed owner's lease runs out and
+ * the next run elsewhere resumes from its last checkpoint. Lease writes commit on their own,
+ * outside whatever transaction the job uses.
+ */
+@Component
+@Slf4j
+public class JobLeaseRunner {
+
+    private final JobLeaseRepository jobLeaseRepository;
+    private final TransactionTemplate leaseTransaction;
+    private final String owner;
+
+    public JobLeaseRunner(JobLeaseRepository jobLeaseRepository, PlatformTransactionManager transactionManager) {
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.leaseTransaction = new TransactionTemplate(transactionManager);
+        this.leaseTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        // pid@host, plus a suffix so a restarted process never inherits its predecessor's lease
+        this.owner = ManagementFactory.getRuntimeMXBean().getName() + "/"
+                + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    /**
+     * Runs the job if this instance gets the lease; returns false when another instance holds it
+     * or this run lost the lease part way
+     */
+    public boolean run(String jobName, Duration leaseFor, LeasedJob job) {
+        LocalDateTime now = LocalDateTime.now();
+        createIfAbsent(jobName, now);
+        boolean acquired = Boolean.TRUE.equals(leaseTransaction.execute(
+                status -> jobLeaseRepository.acquire(jobName, owner, now, now.plus(leaseFor)) > 0));
+        if (!acquired) {
+            log.debug("Job {} is running on another instance, skipping", jobName);
+            return false;
+        }
+
+        JobRun run = new JobRun(this, jobName, leaseFor, jobLeaseRepository.findCheckpoint(jobName));
+        if (run.resumeFrom() != null) {
+            log.info("Job {} resuming from checkpoint {}", jobName, run.resumeFrom());
+        }
+        long started = System.nanoTime();
+        boolean completed = false;
+        try {
+            job.run(run);
+            completed = !run.isLeaseLost();
+        } finally {
+            long durationMs = (System.nanoTime() - started) / 1_000_000;
+            // A finished run starts the next one from scratch; a failed one leaves its checkpoint to resume from
+            String checkpoint = completed ? null : run.resumeFrom();
+            leaseTransaction.executeWithoutResult(status -> jobLeaseRepository.release(
+                    jobName, owner, LocalDateTime.now(), checkpoint, durationMs, run.rows()));
+            if (run.isLeaseLost()) {
+                log.warn("Job {} lost its lease after {} rows in {} ms", jobName, run.rows(), durationMs);
+            } else if (run.rows() > 0 || !completed) {
+                log.info("Job {} {}: {} rows in {} ms", jobName, completed ? "done" : "failed", run.rows(), durationMs);
+            }
+        }
+        return completed;
+    }
+
+    private void createIfAbsent(String jobName, LocalDateTime now) {
+        if (jobLeaseRepository.existsById(jobName)) {
+            return;
+        }
+        try {
+            leaseTransaction.executeWithoutResult(status -> jobLeaseRepository.insert(jobName, now));
+        } catch (DataIntegrityViolationException e) {
+            // Another instance created it first
+        }
+    }
+
+    boolean renew(String jobName, Duration leaseFor, String checkpoint) {
+        return Boolean.TRUE.equals(leaseTransaction.execute(status ->
+                jobLeaseRepository.renew(jobName, owner, LocalDateTime.now().plus(leaseFor), checkpoint) > 0));
+    }
+}
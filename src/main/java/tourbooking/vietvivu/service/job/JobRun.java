@@ -0,0 +1,57 @@
+package tourbooking.vietvivu.service.job;
+
+import java.time.Duration;
+
+/**
+ * One leased run of a job. The job reports each finished chunk here, which saves its position
+ * and renews the lease, and stops as soon as a report says the lease is gone.
+ */
+public final class JobRun {
+
+    private final JobLeaseRunner runner;
+    private final String jobName;
+    private final Duration leaseFor;
+    private String position;
+    private long rows;
+    private boolean leaseLost;
+
+    JobRun(JobLeaseRunner runner, String jobName, Duration leaseFor, String position) {
+        this.runner = runner;
+        this.jobName = jobName;
+        this.leaseFor = leaseFor;
+        this.position = position;
+    }
+
+    /**
+     * Where an interrupted earlier run stopped, or null to start from the beginning
+     */
+    public String resumeFrom() {
+        return position;
+    }
+
+    /**
+     * Records a finished chunk that ends at {@code position}; false when another instance has taken
+     * the job over and this run must stop
+     */
+    public boolean checkpoint(String position, int chunkRows) {
+        this.position = position;
+        rows += chunkRows;
+        leaseLost = !runner.renew(jobName, leaseFor, position);
+        return !leaseLost;
+    }
+
+    /**
+     * {@link #checkpoint} for jobs whose chunks drain their own work and need no position
+     */
+    public boolean progress(int chunkRows) {
+        return checkpoint(position, chunkRows);
+    }
+
+    public long rows() {
+        return rows;
+    }
+
+    boolean isLeaseLost() {
+        return leaseLost;
+    }
+}
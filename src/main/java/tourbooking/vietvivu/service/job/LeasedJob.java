@@ -0,0 +1,9 @@
+package tourbooking.vietvivu.service.job;
+
+/**
+ * Body of a scheduled job that runs on one instance at a time
+ */
+@FunctionalInterface
+public interface LeasedJob {
+    void run(JobRun run);
+}
@@ -0,0 +1,120 @@
+package tourbooking.vietvivu.service.outbound;
+
+/**
+ * Count-based circuit breaker over the outcomes of the last {@code window} calls. While open, calls are
+ * refused without touching the dependency; once {@code openFor} has passed a few trial calls go through,
+ * and the circuit closes if they all succeed or opens again on the first failure.
+ */
+final class CircuitBreaker {
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureRatePercent;
+    private final int minimumCalls;
+    private final long openForNanos;
+    private final int halfOpenCalls;
+    // Ring of the last outcomes, true for a failure
+    private final boolean[] outcomes;
+    private int next;
+    private int recorded;
+    private int failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsLeft;
+    private int trialSuccesses;
+
+    CircuitBreaker(OutboundPolicy policy) {
+        this.failureRatePercent = policy.failureRatePercent();
+        this.minimumCalls = policy.minimumCalls();
+        this.openForNanos = policy.openFor().toNanos();
+        this.halfOpenCalls = policy.halfOpenCalls();
+        this.outcomes = new boolean[policy.window()];
+    }
+
+    /**
+     * Whether a call may go ahead now; every true must be followed by exactly one of
+     * {@link #onSuccess}, {@link #onFailure} or {@link #release}
+     */
+    synchronized boolean tryAcquire(long nowNanos) {
+        if (state == State.OPEN) {
+            if (nowNanos - openedAt < openForNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialsLeft = halfOpenCalls;
+            trialSuccesses = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialsLeft == 0) {
+                return false;
+            }
+            trialsLeft--;
+        }
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            if (++trialSuccesses == halfOpenCalls) {
+                close();
+            }
+        } else if (state == State.CLOSED) {
+            record(false);
+        }
+    }
+
+    synchronized void onFailure(long nowNanos) {
+        if (state == State.HALF_OPEN) {
+            open(nowNanos);
+        } else if (state == State.CLOSED) {
+            record(true);
+            if (recorded >= minimumCalls && failures * 100 >= failureRatePercent * recorded) {
+                open(nowNanos);
+            }
+        }
+    }
+
+    /**
+     * Gives back a permit whose call never reached the dependency
+     */
+    synchronized void release() {
+        if (state == State.HALF_OPEN && trialsLeft < halfOpenCalls) {
+            trialsLeft++;
+        }
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failed) {
+        if (recorded == outcomes.length) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failed;
+        if (failed) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+    }
+
+    private void open(long nowNanos) {
+        state = State.OPEN;
+        openedAt = nowNanos;
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        next = 0;
+        recorded = 0;
+        failures = 0;
+    }
+}
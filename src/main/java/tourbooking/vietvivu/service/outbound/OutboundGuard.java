@@ -0,0 +1,161 @@
+package tourbooking.vietvivu.service.outbound;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.dto.response.OutboundStatsResponse;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+
+/**
+ * Wraps the calls to one outside dependency so that a slow or failing dependency costs its callers a
+ * bounded wait instead of a request thread each. A semaphore caps the calls in flight and turns callers
+ * away once it is full; the call itself runs on a virtual thread while the caller waits at most the
+ * timeout, and the slot is only freed when the call really ends, so calls abandoned on timeout still
+ * count against the cap. A circuit breaker stops calling a dependency that keeps failing.
+ * Callers get {@link ErrorCode#OUTBOUND_UNAVAILABLE}, {@link ErrorCode#OUTBOUND_BUSY} or
+ * {@link ErrorCode#OUTBOUND_TIMEOUT}; errors from the dependency itself pass through unchanged.
+ */
+@Slf4j
+public final class OutboundGuard implements AutoCloseable {
+
+    private final OutboundPolicy policy;
+    private final Predicate<Throwable> isFailure;
+    private final Semaphore slots;
+    private final CircuitBreaker breaker;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final ExecutorService executor;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder shortCircuited = new LongAdder();
+    private final LongAdder rejectedBusy = new LongAdder();
+
+    /**
+     * @param isFailure whether an error thrown by a call counts against the dependency; errors caused by
+     *     the request, such as a validation error, should not open the circuit
+     */
+    public OutboundGuard(OutboundPolicy policy, Predicate<Throwable> isFailure) {
+        this.policy = policy;
+        this.isFailure = isFailure;
+        this.slots = new Semaphore(policy.maxConcurrent());
+        this.breaker = new CircuitBreaker(policy);
+        this.executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("outbound-" + policy.name() + "-", 0).factory());
+    }
+
+    public <T> T call(Callable<T> work) throws Exception {
+        if (!breaker.tryAcquire(System.nanoTime())) {
+            shortCircuited.increment();
+            throw new AppException(ErrorCode.OUTBOUND_UNAVAILABLE);
+        }
+        if (!acquireSlot()) {
+            breaker.release();
+            rejectedBusy.increment();
+            throw new AppException(ErrorCode.OUTBOUND_BUSY);
+        }
+
+        long started = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                try {
+                    return work.call();
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            slots.release();
+            breaker.release();
+            throw new AppException(ErrorCode.OUTBOUND_UNAVAILABLE);
+        }
+
+        calls.increment();
+        try {
+            T result = future.get(policy.timeout().toNanos(), TimeUnit.NANOSECONDS);
+            breaker.onSuccess();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timeouts.increment();
+            breaker.onFailure(System.nanoTime());
+            log.warn(
+                    "Call to {} timed out after {} ms",
+                    policy.name(),
+                    policy.timeout().toMillis());
+            throw new AppException(ErrorCode.OUTBOUND_TIMEOUT);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (isFailure.test(cause)) {
+                failures.increment();
+                breaker.onFailure(System.nanoTime());
+                log.warn("Call to {} failed: {}", policy.name(), cause.toString());
+            } else {
+                breaker.onSuccess();
+            }
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            throw (Error) cause;
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            breaker.release();
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.OUTBOUND_UNAVAILABLE);
+        } finally {
+            latency.record(System.nanoTime() - started);
+        }
+    }
+
+    public String name() {
+        return policy.name();
+    }
+
+    public OutboundStatsResponse stats() {
+        return OutboundStatsResponse.builder()
+                .name(policy.name())
+                .circuit(breaker.state().name())
+                .maxConcurrent(policy.maxConcurrent())
+                .inFlight(policy.maxConcurrent() - slots.availablePermits())
+                .calls(calls.sum())
+                .failures(failures.sum())
+                .timeouts(timeouts.sum())
+                .shortCircuited(shortCircuited.sum())
+                .rejectedBusy(rejectedBusy.sum())
+                .latency(OutboundStatsResponse.Latency.builder()
+                        .count(latency.count())
+                        .meanMs(latency.meanMillis())
+                        .p50Ms(latency.percentileMillis(50))
+                        .p90Ms(latency.percentileMillis(90))
+                        .p99Ms(latency.percentileMillis(99))
+                        .maxMs(latency.maxMillis())
+                        .build())
+                .build();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private boolean acquireSlot() {
+        try {
+            return slots.tryAcquire(policy.acquireTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
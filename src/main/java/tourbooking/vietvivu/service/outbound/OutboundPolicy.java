@@ -0,0 +1,31 @@
+package tourbooking.vietvivu.service.outbound;
+
+import java.time.Duration;
+
+/**
+ * Limits for calls to one outside dependency. At most {@code maxConcurrent} calls are in flight, a caller
+ * waits up to {@code acquireTimeout} for a slot and up to {@code timeout} for the answer. The circuit opens
+ * once {@code failureRatePercent} of the last {@code window} calls failed (after at least
+ * {@code minimumCalls}), stays open for {@code openFor}, then lets {@code halfOpenCalls} trial calls through.
+ */
+public record OutboundPolicy(
+        String name,
+        int maxConcurrent,
+        Duration acquireTimeout,
+        Duration timeout,
+        int failureRatePercent,
+        int window,
+        int minimumCalls,
+        Duration openFor,
+        int halfOpenCalls) {
+
+    public OutboundPolicy {
+        if (maxConcurrent < 1 || window < 1 || halfOpenCalls < 1) {
+            throw new IllegalArgumentException("Outbound limits for " + name + " must be positive");
+        }
+        if (failureRatePercent < 1 || failureRatePercent > 100) {
+            throw new IllegalArgumentException("Failure rate for " + name + " must be between 1 and 100");
+        }
+        minimumCalls = Math.min(Math.max(minimumCalls, 1), window);
+    }
+}
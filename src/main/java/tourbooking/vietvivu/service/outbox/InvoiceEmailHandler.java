@@ -0,0 +1,25 @@
+package tourbooking.vietvivu.service.outbox;
+
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import tourbooking.vietvivu.dto.request.EmailRequest;
+import tourbooking.vietvivu.enumm.OutboxTopic;
+import tourbooking.vietvivu.service.EmailService;
+
+@Component
+@RequiredArgsConstructor
+public class InvoiceEmailHandler implements OutboxHandler {
+
+    private final EmailService emailService;
+
+    @Override
+    public OutboxTopic topic() {
+        return OutboxTopic.INVOICE_EMAIL;
+    }
+
+    @Override
+    public void deliver(String payload) throws Exception {
+        emailService.sendInvoiceEmail(OutboxService.read(payload, EmailRequest.class));
+    }
+}
@@ -0,0 +1,200 @@
+package tourbooking.vietvivu.service.outbox;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.entity.OutboxMessage;
+import tourbooking.vietvivu.enumm.OutboxStatus;
+import tourbooking.vietvivu.enumm.OutboxTopic;
+import tourbooking.vietvivu.repository.OutboxMessageRepository;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+
+/**
+ * Delivers outbox messages after their transaction has committed. Every instance polls: a short transaction
+ * locks a batch of due messages with SKIP LOCKED and pushes them {@code outbox.claim-timeout} into the future,
+ * then the batch is delivered with no transaction or connection held, and one more statement marks the
+ * delivered ones done. A failure is retried with exponential backoff until {@code outbox.max-attempts}; an
+ * instance dying mid-batch leaves its messages to be picked up again once the claim runs out.
+ * Delivery runs on the email executor, not the scheduler thread, so a slow SMTP server holds up no other job.
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+
+    private static final Duration PURGE_LEASE = Duration.ofMinutes(5);
+    private static final Duration MAX_BACKOFF = Duration.ofHours(1);
+    private static final int PURGE_CHUNK = 1000;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final JobLeaseRunner jobLeaseRunner;
+    private final Executor executor;
+    private final TransactionTemplate transaction;
+    private final Map<OutboxTopic, OutboxHandler> handlers = new EnumMap<>(OutboxTopic.class);
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration claimTimeout;
+    private final Duration backoff;
+    private final Duration retention;
+
+    public OutboxDispatcher(
+            OutboxMessageRepository outboxMessageRepository,
+            JobLeaseRunner jobLeaseRunner,
+            List<OutboxHandler> handlers,
+            @Qualifier("emailTaskExecutor") Executor executor,
+            PlatformTransactionManager transactionManager,
+            @Value("${outbox.batch-size:50}") int batchSize,
+            @Value("${outbox.max-attempts:10}") int maxAttempts,
+            @Value("${outbox.claim-timeout:PT5M}") Duration claimTimeout,
+            @Value("${outbox.backoff:PT30S}") Duration backoff,
+            @Value("${outbox.retention:P7D}") Duration retention) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.jobLeaseRunner = jobLeaseRunner;
+        this.executor = executor;
+        this.transaction = new TransactionTemplate(transactionManager);
+        handlers.forEach(handler -> this.handlers.put(handler.topic(), handler));
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.claimTimeout = claimTimeout;
+        this.backoff = backoff;
+        this.retention = retention;
+    }
+
+    /**
+     * Starts draining the due messages unless this instance already is
+     */
+    @Scheduled(fixedDelayString = "${outbox.poll-interval-ms:1000}")
+    public void poll() {
+        if (!draining.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    drain();
+                } finally {
+                    draining.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            // Executor saturated: try again on the next poll
+            draining.set(false);
+            log.warn("Outbox drain not started: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Delivers batches until fewer than a full batch is due; returns how many messages were delivered
+     */
+    public int drain() {
+        int delivered = 0;
+        List<OutboxMessage> batch;
+        do {
+            batch = transaction.execute(status -> claim());
+            delivered += deliver(batch);
+        } while (batch.size() == batchSize);
+        return delivered;
+    }
+
+    /**
+     * Forgets delivered messages past the retention period; failed ones stay for inspection
+     */
+    @Scheduled(fixedDelayString = "${outbox.purge-interval-ms:3600000}")
+    public void purgeDelivered() {
+        jobLeaseRunner.run("outbox-purge", PURGE_LEASE, run -> {
+            LocalDateTime before = LocalDateTime.now().minus(retention);
+            int deleted;
+            do {
+                deleted = transaction.execute(status -> {
+                    List<Long> ids = outboxMessageRepository.findProcessedBefore(
+                            OutboxStatus.DONE, before, PageRequest.of(0, PURGE_CHUNK));
+                    outboxMessageRepository.deleteAllByIdInBatch(ids);
+                    return ids.size();
+                });
+            } while (run.progress(deleted) && deleted == PURGE_CHUNK);
+        });
+    }
+
+    private List<OutboxMessage> claim() {
+        LocalDateTime now = LocalDateTime.now();
+        List<OutboxMessage> due = outboxMessageRepository.lockDue(now, batchSize);
+        if (!due.isEmpty()) {
+            outboxMessageRepository.claim(
+                    due.stream().map(OutboxMessage::getMessageId).toList(), now.plus(claimTimeout));
+        }
+        return due;
+    }
+
+    private int deliver(List<OutboxMessage> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Long> done = new ArrayList<>(batch.size());
+        for (OutboxMessage message : batch) {
+            OutboxHandler handler = handlers.get(message.getTopic());
+            try {
+                if (handler == null) {
+                    throw new IllegalStateException("No handler for " + message.getTopic());
+                }
+                handler.deliver(message.getPayload());
+                done.add(message.getMessageId());
+            } catch (Exception e) {
+                failed(message, e);
+            }
+        }
+        if (!done.isEmpty()) {
+            transaction.executeWithoutResult(status -> outboxMessageRepository.markDone(done, LocalDateTime.now()));
+        }
+        log.info("Outbox delivered {} of {} messages", done.size(), batch.size());
+        return done.size();
+    }
+
+    private void failed(OutboxMessage message, Exception e) {
+        // attempts as read before the claim counted this one
+        int attempts = message.getAttempts() + 1;
+        String error = truncate(e.getClass().getSimpleName() + ": " + e.getMessage());
+        LocalDateTime now = LocalDateTime.now();
+        if (attempts >= maxAttempts) {
+            log.error(
+                    "Outbox message {} ({}) failed for good after {} attempts",
+                    message.getMessageId(),
+                    message.getTopic(),
+                    attempts,
+                    e);
+            transaction.executeWithoutResult(
+                    status -> outboxMessageRepository.markFailed(message.getMessageId(), now, error));
+            return;
+        }
+        Duration delay = backoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        LocalDateTime next = now.plus(delay.compareTo(MAX_BACKOFF) > 0 ? MAX_BACKOFF : delay);
+        log.warn(
+                "Outbox message {} ({}) failed, attempt {}; retrying at {}: {}",
+                message.getMessageId(),
+                message.getTopic(),
+                attempts,
+                next,
+                error);
+        transaction.executeWithoutResult(
+                status -> outboxMessageRepository.retryLater(message.getMessageId(), next, error));
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,16 @@
+package tourbooking.vietvivu.service.outbox;
+
+import tourbooking.vietvivu.enumm.OutboxTopic;
+
+/**
+ * Delivers the outbox messages of one topic. Delivery is at least once, so a handler should tolerate a repeat.
+ */
+public interface OutboxHandler {
+
+    OutboxTopic topic();
+
+    /**
+     * Throws to have the message retried later
+     */
+    void deliver(String payload) throws Exception;
+}
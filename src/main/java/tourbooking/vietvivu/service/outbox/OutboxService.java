@@ -0,0 +1,59 @@
+package tourbooking.vietvivu.service.outbox;
+
+import java.time.LocalDateTime;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import lombok.RequiredArgsConstructor;
+import tourbooking.vietvivu.entity.OutboxMessage;
+import tourbooking.vietvivu.enumm.OutboxStatus;
+import tourbooking.vietvivu.enumm.OutboxTopic;
+import tourbooking.vietvivu.repository.OutboxMessageRepository;
+
+/**
+ * Queues side effects in the caller's transaction, so they happen if and only if it commits
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    // Payloads are read back only by handlers, so they use plain ISO dates whatever the API format is
+    static final ObjectMapper PAYLOAD_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final OutboxMessageRepository outboxMessageRepository;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(OutboxTopic topic, Object payload) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxMessageRepository.save(OutboxMessage.builder()
+                .topic(topic)
+                .payload(write(payload))
+                .status(OutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+    }
+
+    static <T> T read(String payload, Class<T> type) throws JsonProcessingException {
+        return PAYLOAD_MAPPER.readValue(payload, type);
+    }
+
+    private static String write(Object payload) {
+        try {
+            return PAYLOAD_MAPPER.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(
+                    "Cannot serialize " + payload.getClass().getSimpleName(), e);
+        }
+    }
+}
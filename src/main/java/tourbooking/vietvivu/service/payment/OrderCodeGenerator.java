@@ -0,0 +1,82 @@
+package tourbooking.vietvivu.service.payment;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Snowflake-style PayOS order codes: milliseconds since 2024 (41 bits), node id (5 bits) and a per-millisecond
+ * sequence (7 bits), 53 bits in all so a code stays within PayOS's limit (2^53 - 1, a safe JavaScript integer).
+ * Time and sequence live in one AtomicLong updated by compare-and-set, so {@link #next()} never locks and never
+ * allocates. When a millisecond's 128 codes run out, or the clock steps back, the sequence carries into the time
+ * bits: codes run slightly ahead of the clock instead of waiting for it, and never repeat on this node.
+ */
+@Component
+@Slf4j
+public class OrderCodeGenerator {
+
+    static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    static final int NODE_BITS = 5;
+    static final int SEQUENCE_BITS = 7;
+    static final int TIME_BITS = 41;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    public static final long MAX_CODE = (1L << (TIME_BITS + NODE_BITS + SEQUENCE_BITS)) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final long MAX_TIME = (1L << TIME_BITS) - 1;
+
+    // (milliseconds since the epoch << SEQUENCE_BITS) | sequence of the last code handed out
+    private final AtomicLong state = new AtomicLong();
+    private final long nodeBits;
+    private final LongSupplier clock;
+
+    @Autowired
+    public OrderCodeGenerator(@Value("${payment.order-code.node-id:-1}") int nodeId) {
+        this(nodeId < 0 ? derivedNodeId() : nodeId, System::currentTimeMillis);
+    }
+
+    OrderCodeGenerator(int nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Order code node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+        this.clock = clock;
+        log.info("Payment order codes use node id {}", nodeId);
+    }
+
+    /**
+     * A positive order code no other call on any node with a different id returns
+     */
+    public long next() {
+        while (true) {
+            long previous = state.get();
+            long now = clock.getAsLong() - EPOCH_MILLIS;
+            long next = now > previous >>> SEQUENCE_BITS ? now << SEQUENCE_BITS : previous + 1;
+            if (state.compareAndSet(previous, next)) {
+                long time = next >>> SEQUENCE_BITS;
+                if (time > MAX_TIME) {
+                    throw new IllegalStateException("Order code time bits exhausted");
+                }
+                return (time << (NODE_BITS + SEQUENCE_BITS)) | nodeBits | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+
+    /**
+     * Fallback when no node id is configured: unique enough for one or two replicas, and a duplicate
+     * code still fails on the payment_orders primary key instead of reaching PayOS
+     */
+    private static int derivedNodeId() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int nodeId = Math.floorMod(name.hashCode(), MAX_NODE_ID + 1);
+        log.warn("payment.order-code.node-id is not set; using {} derived from {}", nodeId, name);
+        return nodeId;
+    }
+}
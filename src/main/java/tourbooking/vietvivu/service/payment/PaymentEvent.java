@@ -0,0 +1,6 @@
+package tourbooking.vietvivu.service.payment;
+
+/**
+ * A verified PayOS "paid" callback, as queued for the batch writer
+ */
+record PaymentEvent(long orderCode, long amount, String reference) {}
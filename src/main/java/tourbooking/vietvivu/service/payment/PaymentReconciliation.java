@@ -0,0 +1,486 @@
+package tourbooking.vietvivu.service.payment;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.dto.response.ReconciliationReport;
+import tourbooking.vietvivu.entity.ReconciliationFinding;
+import tourbooking.vietvivu.entity.ReconciliationRun;
+import tourbooking.vietvivu.enumm.PaymentStatus;
+import tourbooking.vietvivu.enumm.ReconciliationIssue;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.ReconciliationFindingRepository;
+import tourbooking.vietvivu.repository.ReconciliationRunRepository;
+import tourbooking.vietvivu.service.bulk.CsvRecordWriter;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+import tourbooking.vietvivu.service.job.JobRun;
+
+/**
+ * Cross-checks every booking against its checkouts and invoices. The bookings are walked in windows of
+ * {@code payment.reconciliation.window-size} ids; for each window the three tables are read as cursors
+ * ordered by booking id, fetched {@code payment.reconciliation.fetch-size} rows at a time from one snapshot,
+ * and merged in a single pass, so memory holds one booking's rows and one window's findings whatever the
+ * table sizes. Findings and the run's position commit together per window, and the run is leased, so a
+ * run stopped part way resumes after its last window on whichever instance runs it next.
+ */
+@Service
+@Slf4j
+public class PaymentReconciliation {
+
+    static final String JOB_NAME = "payment-reconciliation";
+    static final List<String> CSV_COLUMNS =
+            List.of("finding_id", "booking_id", "issue", "expected", "actual", "detail");
+
+    private static final Duration LEASE = Duration.ofMinutes(10);
+    // Gateways round to whole dong
+    private static final double AMOUNT_TOLERANCE = 1.0;
+    private static final int EXPORT_CHUNK = 1000;
+
+    private static final String WINDOW_END =
+            "SELECT booking_id FROM bookings WHERE booking_id > ? ORDER BY booking_id LIMIT 1 OFFSET ?";
+    private static final String LAST_BOOKING = "SELECT MAX(booking_id) FROM bookings WHERE booking_id > ?";
+    private static final String BOOKINGS =
+            """
+			SELECT b.booking_id, b.payment_status, b.total_price, p.discount
+			FROM bookings b
+			LEFT JOIN promotions p ON p.promotion_id = b.promotion_id
+			WHERE b.booking_id > ? AND b.booking_id <= ?
+			ORDER BY b.booking_id
+			""";
+    private static final String CHECKOUTS =
+            """
+			SELECT booking_id, checkout_id, amount, payment_status
+			FROM checkout
+			WHERE booking_id > ? AND booking_id <= ?
+			ORDER BY booking_id, checkout_id
+			""";
+    private static final String INVOICES =
+            """
+			SELECT booking_id, invoice_id, checkout_id, amount
+			FROM invoices
+			WHERE booking_id > ? AND booking_id <= ?
+			ORDER BY booking_id, invoice_id
+			""";
+    private static final String INSERT_FINDING =
+            """
+			INSERT INTO reconciliation_findings (run_id, booking_id, issue, expected, actual, detail)
+			VALUES (?, ?, ?, ?, ?, ?)
+			""";
+
+    private record BookingLine(String bookingId, PaymentStatus paymentStatus, Double totalPrice, Double discount) {}
+
+    private record CheckoutLine(String bookingId, String checkoutId, Double amount, PaymentStatus paymentStatus) {}
+
+    private record InvoiceLine(String bookingId, String invoiceId, String checkoutId, Double amount) {}
+
+    record Finding(String bookingId, ReconciliationIssue issue, Double expected, Double actual, String detail) {}
+
+    private record Window(long bookings, List<Finding> findings) {}
+
+    private static final RowMapper<BookingLine> BOOKING_LINE = (rs, i) -> new BookingLine(
+            rs.getString(1), status(rs.getString(2)), rs.getObject(3, Double.class), rs.getObject(4, Double.class));
+    private static final RowMapper<CheckoutLine> CHECKOUT_LINE = (rs, i) ->
+            new CheckoutLine(rs.getString(1), rs.getString(2), rs.getObject(3, Double.class), status(rs.getString(4)));
+    private static final RowMapper<InvoiceLine> INVOICE_LINE = (rs, i) ->
+            new InvoiceLine(rs.getString(1), rs.getString(2), rs.getString(3), rs.getObject(4, Double.class));
+
+    /**
+     * Walks rows that arrive ordered by booking id, handing out one booking's rows at a time
+     */
+    private static final class Cursor<T> {
+        private final Iterator<T> rows;
+        private final Function<T, String> bookingId;
+        private T next;
+
+        Cursor(Stream<T> rows, Function<T, String> bookingId) {
+            this.rows = rows.iterator();
+            this.bookingId = bookingId;
+            advance();
+        }
+
+        /**
+         * The rows of {@code id}; both sides read the same snapshot in the same order, so they come next
+         */
+        List<T> take(String id) {
+            List<T> taken = List.of();
+            while (next != null && id.equals(bookingId.apply(next))) {
+                if (taken.isEmpty()) {
+                    taken = new ArrayList<>(2);
+                }
+                taken.add(next);
+                advance();
+            }
+            return taken;
+        }
+
+        long skipRest() {
+            long skipped = 0;
+            while (next != null) {
+                skipped++;
+                advance();
+            }
+            return skipped;
+        }
+
+        private void advance() {
+            next = rows.hasNext() ? rows.next() : null;
+        }
+    }
+
+    private final ReconciliationRunRepository runRepository;
+    private final ReconciliationFindingRepository findingRepository;
+    private final JobLeaseRunner jobLeaseRunner;
+    private final Executor executor;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readTransaction;
+    private final TransactionTemplate writeTransaction;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final int windowSize;
+
+    public PaymentReconciliation(
+            ReconciliationRunRepository runRepository,
+            ReconciliationFindingRepository findingRepository,
+            JobLeaseRunner jobLeaseRunner,
+            @Qualifier("taskExecutor") Executor executor,
+            DataSource dataSource,
+            PlatformTransactionManager transactionManager,
+            @Value("${payment.reconciliation.window-size:5000}") int windowSize,
+            @Value("${payment.reconciliation.fetch-size:500}") int fetchSize) {
+        this.runRepository = runRepository;
+        this.findingRepository = findingRepository;
+        this.jobLeaseRunner = jobLeaseRunner;
+        this.executor = executor;
+        // The driver pages through each cursor instead of loading the whole result
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        // One snapshot for the three cursors of a window, so a payment committed in between cannot misalign them
+        this.readTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Starts a run off the scheduler thread unless this instance already has one going
+     */
+    @Scheduled(cron = "${payment.reconciliation.cron:0 45 2 * * *}")
+    public void schedule() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    reconcile();
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            log.warn("Payment reconciliation not started: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs or resumes a reconciliation; false when another instance holds the job or this one lost it
+     */
+    public boolean reconcile() {
+        return jobLeaseRunner.run(JOB_NAME, LEASE, this::checkAll);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    public ReconciliationReport latestReport() {
+        ReconciliationRun run = runRepository
+                .findFirstByOrderByStartedAtDesc()
+                .orElseThrow(() -> new AppException(ErrorCode.RECONCILIATION_RUN_NOT_FOUND));
+        Map<ReconciliationIssue, Long> issues = new EnumMap<>(ReconciliationIssue.class);
+        for (Object[] row : findingRepository.countByIssue(run.getRunId())) {
+            issues.put((ReconciliationIssue) row[0], ((Number) row[1]).longValue());
+        }
+        return ReconciliationReport.builder()
+                .runId(run.getRunId())
+                .startedAt(run.getStartedAt())
+                .finishedAt(run.getFinishedAt())
+                .bookingsChecked(run.getBookingsChecked())
+                .findings(run.getFindings())
+                .issues(issues)
+                .build();
+    }
+
+    /**
+     * Streams the run's findings as CSV, a keyset chunk at a time
+     */
+    @PreAuthorize("hasRole('ADMIN')")
+    public StreamingResponseBody exportFindings(String runId) {
+        if (!runRepository.existsById(runId)) {
+            throw new AppException(ErrorCode.RECONCILIATION_RUN_NOT_FOUND);
+        }
+        return out -> writeFindings(runId, out);
+    }
+
+    private void checkAll(JobRun run) {
+        ReconciliationRun current = run.resumeFrom() == null
+                ? null
+                : runRepository.findById(run.resumeFrom()).orElse(null);
+        if (current == null || current.getFinishedAt() != null) {
+            current = runRepository.save(ReconciliationRun.builder()
+                    .runId(UUID.randomUUID().toString())
+                    .startedAt(LocalDateTime.now())
+                    .bookingsChecked(0L)
+                    .findings(0L)
+                    .build());
+            // Remember the run right away, so even a failure in its first window resumes it
+            if (!run.checkpoint(current.getRunId(), 0)) {
+                return;
+            }
+        }
+        String runId = current.getRunId();
+        String after = current.getPosition() == null ? "" : current.getPosition();
+        long started = System.nanoTime();
+        long bookings = 0;
+        long findings = 0;
+
+        String upper;
+        while ((upper = windowEnd(after)) != null) {
+            String from = after;
+            String to = upper;
+            Window window = readTransaction.execute(status -> check(from, to));
+            // Claim the window before writing its findings, so an instance that lost the job adds nothing
+            Boolean advanced = writeTransaction.execute(status -> {
+                if (runRepository.advance(
+                                runId,
+                                from,
+                                to,
+                                window.bookings(),
+                                window.findings().size())
+                        == 0) {
+                    return false;
+                }
+                insert(runId, window.findings());
+                return true;
+            });
+            if (!Boolean.TRUE.equals(advanced)) {
+                log.warn("Payment reconciliation {} moved past {} elsewhere; stopping here", runId, from);
+                return;
+            }
+            bookings += window.bookings();
+            findings += window.findings().size();
+            after = upper;
+            if (!run.checkpoint(runId, (int) window.bookings())) {
+                return;
+            }
+        }
+
+        writeTransaction.executeWithoutResult(status -> runRepository.finish(runId, LocalDateTime.now()));
+        long elapsedMs = Math.max((System.nanoTime() - started) / 1_000_000, 1);
+        log.info(
+                "Payment reconciliation {} finished: {} bookings checked, {} findings in this pass, {} ms ({} rows/s)",
+                runId,
+                bookings,
+                findings,
+                elapsedMs,
+                Math.round(bookings * 1000.0 / elapsedMs));
+    }
+
+    /**
+     * The last booking id of the window starting after {@code after}, or null when no bookings are left
+     */
+    private String windowEnd(String after) {
+        List<String> end = jdbcTemplate.queryForList(WINDOW_END, String.class, after, windowSize - 1);
+        if (!end.isEmpty()) {
+            return end.getFirst();
+        }
+        return jdbcTemplate.queryForObject(LAST_BOOKING, String.class, after);
+    }
+
+    private Window check(String after, String upper) {
+        long bookings = 0;
+        List<Finding> findings = new ArrayList<>();
+        try (Stream<BookingLine> bookingRows = jdbcTemplate.queryForStream(BOOKINGS, BOOKING_LINE, after, upper);
+                Stream<CheckoutLine> checkoutRows =
+                        jdbcTemplate.queryForStream(CHECKOUTS, CHECKOUT_LINE, after, upper);
+                Stream<InvoiceLine> invoiceRows = jdbcTemplate.queryForStream(INVOICES, INVOICE_LINE, after, upper)) {
+            Cursor<CheckoutLine> checkouts = new Cursor<>(checkoutRows, CheckoutLine::bookingId);
+            Cursor<InvoiceLine> invoices = new Cursor<>(invoiceRows, InvoiceLine::bookingId);
+            for (Iterator<BookingLine> it = bookingRows.iterator(); it.hasNext(); ) {
+                BookingLine booking = it.next();
+                check(booking, checkouts.take(booking.bookingId()), invoices.take(booking.bookingId()), findings);
+                bookings++;
+            }
+            long unmatched = checkouts.skipRest() + invoices.skipRest();
+            if (unmatched > 0) {
+                log.warn("{} checkout or invoice rows in ({}, {}] matched no booking", unmatched, after, upper);
+            }
+        }
+        return new Window(bookings, findings);
+    }
+
+    private static void check(
+            BookingLine booking, List<CheckoutLine> checkouts, List<InvoiceLine> invoices, List<Finding> findings) {
+        String bookingId = booking.bookingId();
+        boolean paid = booking.paymentStatus() == PaymentStatus.PAID;
+        List<CheckoutLine> paidCheckouts = checkouts.stream()
+                .filter(checkout -> checkout.paymentStatus() == PaymentStatus.PAID)
+                .toList();
+
+        if (paid && paidCheckouts.isEmpty()) {
+            findings.add(new Finding(bookingId, ReconciliationIssue.PAID_WITHOUT_CHECKOUT, null, null, null));
+        }
+        if (paid && invoices.isEmpty()) {
+            findings.add(new Finding(bookingId, ReconciliationIssue.PAID_WITHOUT_INVOICE, null, null, null));
+        }
+        if (!paid && !paidCheckouts.isEmpty()) {
+            findings.add(new Finding(
+                    bookingId,
+                    ReconciliationIssue.CHECKOUT_ON_UNPAID_BOOKING,
+                    null,
+                    paidCheckouts.getFirst().amount(),
+                    ids(paidCheckouts, CheckoutLine::checkoutId)));
+        }
+        if (paidCheckouts.size() > 1) {
+            findings.add(new Finding(
+                    bookingId,
+                    ReconciliationIssue.DUPLICATE_CHECKOUT,
+                    null,
+                    null,
+                    ids(paidCheckouts, CheckoutLine::checkoutId)));
+        }
+        if (invoices.size() > 1) {
+            findings.add(new Finding(
+                    bookingId,
+                    ReconciliationIssue.DUPLICATE_INVOICE,
+                    null,
+                    null,
+                    ids(invoices, InvoiceLine::invoiceId)));
+        }
+
+        // A booking's total is stored before its promotion at booking time and after it once a change reprices it
+        Double total = booking.totalPrice();
+        double discount = booking.discount() == null ? 0 : booking.discount();
+        for (CheckoutLine checkout : paidCheckouts) {
+            Double amount = checkout.amount();
+            boolean drifted = total == null
+                    || amount == null
+                    || amount > total + AMOUNT_TOLERANCE
+                    || amount < total - discount - AMOUNT_TOLERANCE;
+            if (drifted) {
+                findings.add(
+                        new Finding(bookingId, ReconciliationIssue.AMOUNT_DRIFT, total, amount, checkout.checkoutId()));
+            }
+        }
+
+        for (InvoiceLine invoice : invoices) {
+            CheckoutLine checkout = checkouts.stream()
+                    .filter(candidate -> candidate.checkoutId().equals(invoice.checkoutId()))
+                    .findFirst()
+                    .orElse(null);
+            if (checkout == null) {
+                findings.add(new Finding(
+                        bookingId,
+                        ReconciliationIssue.INVOICE_WITHOUT_CHECKOUT,
+                        null,
+                        invoice.amount(),
+                        invoice.invoiceId()));
+            } else if (!sameAmount(checkout.amount(), invoice.amount())) {
+                findings.add(new Finding(
+                        bookingId,
+                        ReconciliationIssue.INVOICE_AMOUNT_MISMATCH,
+                        checkout.amount(),
+                        invoice.amount(),
+                        invoice.invoiceId()));
+            }
+        }
+    }
+
+    private void insert(String runId, List<Finding> findings) {
+        if (findings.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_FINDING, findings, findings.size(), (ps, finding) -> {
+            ps.setString(1, runId);
+            ps.setString(2, finding.bookingId());
+            ps.setString(3, finding.issue().name());
+            ps.setObject(4, finding.expected());
+            ps.setObject(5, finding.actual());
+            ps.setString(6, finding.detail());
+        });
+    }
+
+    private void writeFindings(String runId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        CsvRecordWriter.write(writer, CSV_COLUMNS);
+        long after = 0;
+        List<ReconciliationFinding> chunk;
+        do {
+            long from = after;
+            chunk = readTransaction.execute(
+                    status -> findingRepository.findSliceAfter(runId, from, PageRequest.of(0, EXPORT_CHUNK)));
+            for (ReconciliationFinding finding : chunk) {
+                CsvRecordWriter.write(
+                        writer,
+                        List.of(
+                                String.valueOf(finding.getFindingId()),
+                                finding.getBookingId(),
+                                finding.getIssue().name(),
+                                Objects.toString(finding.getExpected(), ""),
+                                Objects.toString(finding.getActual(), ""),
+                                Objects.toString(finding.getDetail(), "")));
+            }
+            writer.flush();
+            if (!chunk.isEmpty()) {
+                after = chunk.getLast().getFindingId();
+            }
+        } while (chunk.size() == EXPORT_CHUNK);
+    }
+
+    private static boolean sameAmount(Double a, Double b) {
+        if (a == null || b == null) {
+            return a == null && b == null;
+        }
+        return Math.abs(a - b) <= AMOUNT_TOLERANCE;
+    }
+
+    private static <T> String ids(List<T> rows, Function<T, String> id) {
+        return rows.stream().map(id).collect(Collectors.joining(" "));
+    }
+
+    private static PaymentStatus status(String value) {
+        return value == null ? null : PaymentStatus.valueOf(value);
+    }
+}
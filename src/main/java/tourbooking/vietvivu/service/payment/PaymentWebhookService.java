@@ -0,0 +1,308 @@
+package tourbooking.vietvivu.service.payment;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.dto.request.EmailRequest;
+import tourbooking.vietvivu.entity.PaymentOrder;
+import tourbooking.vietvivu.enumm.OutboxTopic;
+import tourbooking.vietvivu.enumm.PaymentMethod;
+import tourbooking.vietvivu.enumm.PaymentStatus;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.BookingRepository;
+import tourbooking.vietvivu.repository.PaymentOrderRepository;
+import tourbooking.vietvivu.service.booking.BookingRow;
+import tourbooking.vietvivu.service.hold.SeatHoldService;
+import tourbooking.vietvivu.service.outbox.OutboxService;
+import vn.payos.PayOS;
+import vn.payos.model.webhooks.Webhook;
+import vn.payos.model.webhooks.WebhookData;
+
+/**
+ * PayOS payment callbacks. The request thread only checks the signature against the checksum key and
+ * queues the event, so a burst of callbacks after a sale costs each request microseconds; a full queue
+ * answers 503 and PayOS delivers again later. One writer thread drains the queue in batches: per batch one
+ * lookup of the order codes, a seat-hold confirm per booking, then a single transaction that locks the
+ * unpaid bookings, batch-inserts their checkouts and invoices, marks them paid and queues the invoice emails.
+ * Only "paid" events act and a booking already paid is skipped, so repeated and out-of-order deliveries,
+ * and the browser's own /payment/success call, change nothing twice.
+ */
+@Service
+@Slf4j
+public class PaymentWebhookService {
+
+    static final String PAID_CODE = "00";
+    static final String INSERT_CHECKOUT =
+            """
+			INSERT INTO checkout (checkout_id, payment_method, payment_date, amount, payment_status, transaction_id,
+				booking_id)
+			VALUES (?, ?, ?, ?, ?, ?, ?)
+			""";
+    static final String INSERT_INVOICE =
+            """
+			INSERT INTO invoices (invoice_id, amount, date_issued, details, checkout_id, booking_id)
+			VALUES (?, ?, ?, ?, ?, ?)
+			""";
+
+    private static final long POLL_MILLIS = 500;
+
+    /**
+     * A paid order ready to be written
+     */
+    private record Payment(String bookingId, PaymentEvent event, String checkoutId, String invoiceId) {}
+
+    private final PayOS payOS;
+    private final PaymentOrderRepository paymentOrderRepository;
+    private final BookingRepository bookingRepository;
+    private final SeatHoldService seatHoldService;
+    private final OutboxService outboxService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate batchTransaction;
+    private final BlockingQueue<PaymentEvent> queue;
+    private final int batchSize;
+    private volatile boolean running;
+    private Thread writer;
+
+    public PaymentWebhookService(
+            PayOS payOS,
+            PaymentOrderRepository paymentOrderRepository,
+            BookingRepository bookingRepository,
+            SeatHoldService seatHoldService,
+            OutboxService outboxService,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            @Value("${payment.webhook.queue-capacity:10000}") int queueCapacity,
+            @Value("${payment.webhook.batch-size:200}") int batchSize) {
+        this.payOS = payOS;
+        this.paymentOrderRepository = paymentOrderRepository;
+        this.bookingRepository = bookingRepository;
+        this.seatHoldService = seatHoldService;
+        this.outboxService = outboxService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Verifies a callback and queues it if it reports a payment; throws when the signature is wrong
+     * or the queue is full
+     */
+    public void accept(Webhook webhook) {
+        WebhookData data;
+        try {
+            data = payOS.webhooks().verify(webhook);
+        } catch (Exception e) {
+            log.warn("Rejected PayOS webhook: {}", e.getMessage());
+            throw new AppException(ErrorCode.INVALID_WEBHOOK_SIGNATURE);
+        }
+        if (!PAID_CODE.equals(data.getCode()) || data.getOrderCode() == null || data.getAmount() == null) {
+            log.info("PayOS webhook for order {} with code {}, nothing to record", data.getOrderCode(), data.getCode());
+            return;
+        }
+        if (!queue.offer(new PaymentEvent(data.getOrderCode(), data.getAmount(), data.getReference()))) {
+            log.warn("Payment webhook queue full, asking PayOS to retry order {}", data.getOrderCode());
+            throw new AppException(ErrorCode.WEBHOOK_QUEUE_FULL);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        writer = new Thread(this::drain, "payos-webhook-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Lets the writer finish what is queued before shutdown
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (writer != null) {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+    }
+
+    private void drain() {
+        List<PaymentEvent> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PaymentEvent first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the batch, falling back to one event at a time when the batch as a whole fails
+     */
+    private void write(List<PaymentEvent> batch) {
+        try {
+            record(batch);
+        } catch (RuntimeException e) {
+            log.error("Payment batch of {} failed, writing events one by one", batch.size(), e);
+            for (PaymentEvent event : batch) {
+                try {
+                    record(List.of(event));
+                } catch (RuntimeException single) {
+                    // Left for reconciliation against PayOS
+                    log.error("Could not record payment for order {}", event.orderCode(), single);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the payments in {@code events}; returns how many bookings became paid
+     */
+    int record(List<PaymentEvent> events) {
+        Map<Long, PaymentEvent> byOrderCode = new LinkedHashMap<>();
+        events.forEach(event -> byOrderCode.putIfAbsent(event.orderCode(), event));
+        Map<Long, PaymentOrder> orders = new HashMap<>();
+        paymentOrderRepository
+                .findAllById(byOrderCode.keySet())
+                .forEach(order -> orders.put(order.getOrderCode(), order));
+
+        // In booking id order, the order the seat holds and bookings are locked in below
+        Map<String, Payment> byBooking = new TreeMap<>();
+        for (PaymentEvent event : byOrderCode.values()) {
+            PaymentOrder order = orders.get(event.orderCode());
+            if (order == null || order.getBookingId() == null) {
+                log.warn("PayOS paid order {} that maps to no booking", event.orderCode());
+            } else if (order.getAmount() != null && event.amount() < order.getAmount()) {
+                log.warn(
+                        "PayOS order {} paid {} of {}, not confirming booking {}",
+                        event.orderCode(),
+                        event.amount(),
+                        order.getAmount(),
+                        order.getBookingId());
+            } else if (byBooking.putIfAbsent(
+                            order.getBookingId(),
+                            new Payment(
+                                    order.getBookingId(),
+                                    event,
+                                    UUID.randomUUID().toString(),
+                                    UUID.randomUUID().toString()))
+                    != null) {
+                log.warn("Booking {} paid again by order {}", order.getBookingId(), event.orderCode());
+            }
+        }
+
+        if (byBooking.isEmpty()) {
+            return 0;
+        }
+
+        Integer written = batchTransaction.execute(status -> {
+            // Claim the held seats in the batch's transaction, before the bookings are locked as the hold expiry
+            // does: a batch that rolls back gives them back for its retry, and a hold lost to expiry on a
+            // sold-out tour skips only that booking
+            byBooking.values().removeIf(payment -> {
+                if (seatHoldService.tryConfirm(payment.bookingId())) {
+                    return false;
+                }
+                log.error("Booking {} was paid but could not get its seats back", payment.bookingId());
+                return true;
+            });
+            if (byBooking.isEmpty()) {
+                return 0;
+            }
+            List<Payment> unpaid = bookingRepository.lockUnpaid(byBooking.keySet()).stream()
+                    .map(byBooking::get)
+                    .toList();
+            if (unpaid.isEmpty()) {
+                return 0;
+            }
+            insert(unpaid);
+            List<String> bookingIds = unpaid.stream().map(Payment::bookingId).toList();
+            bookingRepository.markPaid(bookingIds);
+            Map<String, BookingRow> rows = new HashMap<>();
+            bookingRepository.findRowsByIds(bookingIds).forEach(row -> rows.put(row.bookingId(), row));
+            unpaid.forEach(payment -> outboxService.enqueue(
+                    OutboxTopic.INVOICE_EMAIL, invoiceEmail(rows.get(payment.bookingId()), payment)));
+            return unpaid.size();
+        });
+        log.info("Recorded {} PayOS payments from {} events", written, events.size());
+        return written == null ? 0 : written;
+    }
+
+    private void insert(List<Payment> payments) {
+        Date today = Date.valueOf(LocalDate.now());
+        jdbcTemplate.batchUpdate(INSERT_CHECKOUT, payments, payments.size(), (ps, payment) -> {
+            ps.setString(1, payment.checkoutId());
+            ps.setString(2, PaymentMethod.VIETQR.name());
+            ps.setDate(3, today);
+            ps.setDouble(4, payment.event().amount());
+            ps.setString(5, PaymentStatus.PAID.name());
+            ps.setString(6, payment.event().reference());
+            ps.setString(7, payment.bookingId());
+        });
+        jdbcTemplate.batchUpdate(INSERT_INVOICE, payments, payments.size(), (ps, payment) -> {
+            ps.setString(1, payment.invoiceId());
+            ps.setDouble(2, payment.event().amount());
+            ps.setDate(3, today);
+            ps.setString(4, "Payment booking: " + payment.bookingId());
+            ps.setString(5, payment.checkoutId());
+            ps.setString(6, payment.bookingId());
+        });
+    }
+
+    private static EmailRequest invoiceEmail(BookingRow row, Payment payment) {
+        double amount = payment.event().amount();
+        return EmailRequest.builder()
+                .recipient(row.userEmail() != null ? row.userEmail() : row.contactEmail())
+                .subject("Your Invoice for Booking " + row.bookingId())
+                .bookingId(row.bookingId())
+                .bookingDate(row.bookingDate())
+                .tourTitle(row.tourTitle())
+                .tourDestination(row.tourDestination())
+                .tourDuration(row.tourDuration())
+                .numAdults(row.numAdults())
+                .numChildren(row.numChildren())
+                .priceAdult(row.priceAdult())
+                .priceChild(row.priceChild())
+                .totalPrice(row.totalPrice())
+                .discountAmount(row.totalPrice() == null ? null : row.totalPrice() - amount)
+                .finalAmount(amount)
+                .note(row.note())
+                .paymentMethod(PaymentMethod.VIETQR)
+                .paymentStatus(PaymentStatus.PAID)
+                .transactionId(payment.event().reference())
+                .invoiceId(payment.invoiceId())
+                .invoiceDate(LocalDate.now())
+                .build();
+    }
+}
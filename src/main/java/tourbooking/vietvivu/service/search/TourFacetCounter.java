@@ -0,0 +1,125 @@
+package tourbooking.vietvivu.service.search;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import tourbooking.vietvivu.dto.response.FacetCount;
+import tourbooking.vietvivu.dto.response.TourFacetsResponse;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
+
+/**
+ * Accumulates disjunctive facet counts while the search engine walks its candidates.
+ * A tour matching every filter counts in all dimensions; a tour failing exactly one
+ * facet filter still counts in that dimension, so the sidebar shows what selecting
+ * another value would return.
+ */
+final class TourFacetCounter {
+
+    static final int DESTINATION = 1;
+    static final int PRICE = 1 << 1;
+    static final int DURATION = 1 << 2;
+    static final int START_MONTH = 1 << 3;
+    static final int SEATS = 1 << 4;
+
+    // VND; bucket i covers [PRICE_BOUNDS[i], PRICE_BOUNDS[i + 1]), the last one is open-ended
+    static final double[] PRICE_BOUNDS = {0, 2_000_000, 5_000_000, 10_000_000};
+    static final int[] SEAT_THRESHOLDS = {1, 5, 10, 20};
+
+    private final Map<String, String> destinationLabels = new HashMap<>();
+    private final Map<String, Long> destinations = new HashMap<>();
+    private final long[] priceRanges = new long[PRICE_BOUNDS.length];
+    private final Map<Integer, Long> durations = new TreeMap<>();
+    private final Map<YearMonth, Long> startMonths = new TreeMap<>();
+    private final long[] seats = new long[SEAT_THRESHOLDS.length];
+
+    void count(TourSnapshot tour, String foldedDestination, int failedFacets) {
+        if (Integer.bitCount(failedFacets) > 1) {
+            return;
+        }
+        if (counts(failedFacets, DESTINATION) && foldedDestination != null && !foldedDestination.isBlank()) {
+            destinations.merge(foldedDestination, 1L, Long::sum);
+            destinationLabels.putIfAbsent(foldedDestination, tour.destination().trim());
+        }
+        if (counts(failedFacets, PRICE) && tour.priceAdult() != null) {
+            int bucket = priceBucket(tour.priceAdult());
+            if (bucket >= 0) {
+                priceRanges[bucket]++;
+            }
+        }
+        if (counts(failedFacets, DURATION)) {
+            durations.merge(tour.durationDays(), 1L, Long::sum);
+        }
+        if (counts(failedFacets, START_MONTH) && tour.startDate() != null) {
+            startMonths.merge(YearMonth.from(tour.startDate()), 1L, Long::sum);
+        }
+        if (counts(failedFacets, SEATS) && tour.quantity() != null) {
+            for (int i = 0; i < SEAT_THRESHOLDS.length && tour.quantity() >= SEAT_THRESHOLDS[i]; i++) {
+                seats[i]++;
+            }
+        }
+    }
+
+    TourFacetsResponse toResponse() {
+        List<FacetCount> destinationCounts = new ArrayList<>(destinations.size());
+        destinations.forEach((folded, count) -> destinationCounts.add(FacetCount.builder()
+                .value(destinationLabels.get(folded))
+                .count(count)
+                .build()));
+        destinationCounts.sort(
+                Comparator.comparingLong(FacetCount::getCount).reversed().thenComparing(FacetCount::getValue));
+
+        List<FacetCount> priceCounts = new ArrayList<>(PRICE_BOUNDS.length);
+        for (int i = 0; i < PRICE_BOUNDS.length; i++) {
+            Double max = i + 1 < PRICE_BOUNDS.length ? PRICE_BOUNDS[i + 1] : null;
+            priceCounts.add(FacetCount.builder()
+                    .value(max == null ? (long) PRICE_BOUNDS[i] + "+" : (long) PRICE_BOUNDS[i] + "-" + max.longValue())
+                    .min(PRICE_BOUNDS[i])
+                    .max(max)
+                    .count(priceRanges[i])
+                    .build());
+        }
+
+        List<FacetCount> durationCounts = new ArrayList<>(durations.size());
+        durations.forEach((days, count) -> durationCounts.add(
+                FacetCount.builder().value(String.valueOf(days)).count(count).build()));
+
+        List<FacetCount> monthCounts = new ArrayList<>(startMonths.size());
+        startMonths.forEach((month, count) -> monthCounts.add(
+                FacetCount.builder().value(month.toString()).count(count).build()));
+
+        List<FacetCount> seatCounts = new ArrayList<>(SEAT_THRESHOLDS.length);
+        for (int i = 0; i < SEAT_THRESHOLDS.length; i++) {
+            seatCounts.add(FacetCount.builder()
+                    .value(SEAT_THRESHOLDS[i] + "+")
+                    .min((double) SEAT_THRESHOLDS[i])
+                    .count(seats[i])
+                    .build());
+        }
+
+        return TourFacetsResponse.builder()
+                .destinations(destinationCounts)
+                .priceRanges(priceCounts)
+                .durations(durationCounts)
+                .startMonths(monthCounts)
+                .seats(seatCounts)
+                .build();
+    }
+
+    private static boolean counts(int failedFacets, int facet) {
+        return failedFacets == 0 || failedFacets == facet;
+    }
+
+    private static int priceBucket(double price) {
+        for (int i = PRICE_BOUNDS.length - 1; i >= 0; i--) {
+            if (price >= PRICE_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
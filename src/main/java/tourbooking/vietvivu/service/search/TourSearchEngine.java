@@ -0,0 +1,373 @@
+package tourbooking.vietvivu.service.search;
+
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.dto.request.TourSearchRequest;
+import tourbooking.vietvivu.dto.response.TourFacetsResponse;
+import tourbooking.vietvivu.service.catalog.TourCatalog;
+import tourbooking.vietvivu.service.catalog.TourCatalogListener;
+import tourbooking.vietvivu.service.catalog.TourCursor;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
+
+/**
+ * In-memory full-text index over the tour catalog.
+ * Title, destination and description are folded (no diacritics, lower case) and tokenized;
+ * keyword queries are ranked with BM25 and the last keyword is matched as a prefix
+ * so results stay useful while the user is still typing.
+ */
+@Component
+@Slf4j
+public class TourSearchEngine implements TourCatalogListener {
+
+    private static final float TITLE_BOOST = 3f;
+    private static final float DESTINATION_BOOST = 2f;
+    private static final float DESCRIPTION_BOOST = 1f;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final Map<String, IndexedTour> documents = new ConcurrentHashMap<>();
+    // term -> (tourId -> boosted term frequency); sorted so prefixes are a sub-map lookup
+    private final ConcurrentSkipListMap<String, Map<String, Float>> postings = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListSet<IndexedTour> byStartDate =
+            new ConcurrentSkipListSet<>(Comparator.comparing(IndexedTour::snapshot, TourCatalog.START_DATE_DESC));
+
+    private final Object writeLock = new Object();
+    private volatile double totalLength;
+
+    private record IndexedTour(TourSnapshot snapshot, Map<String, Float> terms, float length, String destination) {}
+
+    private record ScoredTour(TourSnapshot snapshot, float score) {}
+
+    private record Term(Map<String, Float> docs, double idf) {}
+
+    private static final Comparator<ScoredTour> RELEVANCE = (left, right) -> {
+        int byScore = Float.compare(right.score(), left.score());
+        return byScore != 0 ? byScore : TourCatalog.START_DATE_DESC.compare(left.snapshot(), right.snapshot());
+    };
+
+    @Override
+    public void onSnapshotChanged(String tourId, TourSnapshot previous, TourSnapshot current) {
+        synchronized (writeLock) {
+            IndexedTour old = documents.remove(tourId);
+            if (old != null) {
+                byStartDate.remove(old);
+                old.terms()
+                        .keySet()
+                        .forEach(term -> postings.computeIfPresent(term, (t, docs) -> {
+                            docs.remove(tourId);
+                            return docs.isEmpty() ? null : docs;
+                        }));
+                totalLength -= old.length();
+            }
+            if (current != null) {
+                IndexedTour indexed = analyze(current);
+                indexed.terms()
+                        .forEach((term, frequency) -> postings.computeIfAbsent(term, t -> new ConcurrentHashMap<>())
+                                .put(tourId, frequency));
+                documents.put(tourId, indexed);
+                byStartDate.add(indexed);
+                totalLength += indexed.length();
+            }
+        }
+    }
+
+    /**
+     * Search the index. Without a keyword results keep the catalog order (newest start date first),
+     * otherwise they are ordered by relevance.
+     */
+    public Page<TourSnapshot> search(TourSearchRequest request, boolean includeNonPublic, Pageable pageable) {
+        return execute(request, includeNonPublic, pageable, null);
+    }
+
+    /**
+     * Same as {@link #search} but also counts every facet dimension in the same pass over the candidates.
+     */
+    public FacetedResult searchWithFacets(TourSearchRequest request, boolean includeNonPublic, Pageable pageable) {
+        TourFacetCounter facets = new TourFacetCounter();
+        Page<TourSnapshot> page = execute(request, includeNonPublic, pageable, facets);
+        return new FacetedResult(page, facets.toResponse());
+    }
+
+    public record FacetedResult(Page<TourSnapshot> page, TourFacetsResponse facets) {}
+
+    /**
+     * Keyset variant of {@link #search}: returns up to {@code limit} hits after {@code after}.
+     * Browsing seeks directly in start-date order; keyword searches skip everything ranked
+     * at or above the cursor. The total is only counted when asked for.
+     */
+    public CursorSlice searchAfter(
+            TourSearchRequest request, boolean includeNonPublic, TourCursor after, int limit, boolean countTotal) {
+        String destination = TextFolding.fold(request.getDestination()).trim();
+        List<String> tokens = TextFolding.tokenize(request.getKeyword());
+        List<TourSnapshot> items = new ArrayList<>(limit);
+        int total = 0;
+
+        if (tokens.isEmpty()) {
+            TourSnapshot probe = after == null ? null : after.toProbe();
+            Iterable<IndexedTour> scan = probe == null || countTotal
+                    ? byStartDate
+                    : byStartDate.tailSet(new IndexedTour(probe, Map.of(), 0, ""), false);
+            boolean hasMore = false;
+            for (IndexedTour doc : scan) {
+                if (!isVisible(doc.snapshot(), request, includeNonPublic)
+                        || failedFacets(doc, request, destination) != 0) {
+                    continue;
+                }
+                total++;
+                if (probe != null && TourCatalog.START_DATE_DESC.compare(doc.snapshot(), probe) <= 0) {
+                    continue;
+                }
+                if (items.size() < limit) {
+                    items.add(doc.snapshot());
+                } else {
+                    hasMore = true;
+                    if (!countTotal) break;
+                }
+            }
+            TourCursor next = hasMore ? TourCursor.after(items.getLast()) : null;
+            return new CursorSlice(items, next, countTotal ? (long) total : null);
+        }
+
+        ScoredTour last =
+                after == null || after.score() == null ? null : new ScoredTour(after.toProbe(), after.score());
+        PriorityQueue<ScoredTour> best = new PriorityQueue<>(RELEVANCE.reversed());
+        for (Map.Entry<String, Float> entry : rank(tokens).entrySet()) {
+            IndexedTour doc = documents.get(entry.getKey());
+            if (doc == null
+                    || !isVisible(doc.snapshot(), request, includeNonPublic)
+                    || failedFacets(doc, request, destination) != 0) {
+                continue;
+            }
+            total++;
+            ScoredTour candidate = new ScoredTour(doc.snapshot(), entry.getValue());
+            if (last != null && RELEVANCE.compare(candidate, last) <= 0) {
+                continue;
+            }
+            if (best.size() <= limit) {
+                best.offer(candidate);
+            } else if (RELEVANCE.compare(candidate, best.peek()) < 0) {
+                best.poll();
+                best.offer(candidate);
+            }
+        }
+
+        List<ScoredTour> ordered = new ArrayList<>(best);
+        ordered.sort(RELEVANCE);
+        boolean hasMore = ordered.size() > limit;
+        List<ScoredTour> slice = hasMore ? ordered.subList(0, limit) : ordered;
+        slice.forEach(hit -> items.add(hit.snapshot()));
+        TourCursor next = hasMore
+                ? TourCursor.after(slice.getLast().snapshot(), slice.getLast().score())
+                : null;
+        return new CursorSlice(items, next, countTotal ? (long) total : null);
+    }
+
+    public record CursorSlice(List<TourSnapshot> items, TourCursor next, Long total) {}
+
+    private Page<TourSnapshot> execute(
+            TourSearchRequest request, boolean includeNonPublic, Pageable pageable, TourFacetCounter facets) {
+        String destination = TextFolding.fold(request.getDestination()).trim();
+        List<String> tokens = TextFolding.tokenize(request.getKeyword());
+        int from = (int) pageable.getOffset();
+        int to = from + pageable.getPageSize();
+
+        if (tokens.isEmpty()) {
+            List<TourSnapshot> content = new ArrayList<>(pageable.getPageSize());
+            int total = 0;
+            for (IndexedTour doc : byStartDate) {
+                if (!isVisible(doc.snapshot(), request, includeNonPublic)) {
+                    continue;
+                }
+                int failed = failedFacets(doc, request, destination);
+                if (facets != null) {
+                    facets.count(doc.snapshot(), doc.destination(), failed);
+                }
+                if (failed == 0) {
+                    if (total >= from && total < to) {
+                        content.add(doc.snapshot());
+                    }
+                    total++;
+                }
+            }
+            return new PageImpl<>(content, pageable, total);
+        }
+
+        // Keep only the best `to` hits instead of sorting every match
+        PriorityQueue<ScoredTour> best = new PriorityQueue<>(RELEVANCE.reversed());
+        int total = 0;
+        for (Map.Entry<String, Float> entry : rank(tokens).entrySet()) {
+            IndexedTour doc = documents.get(entry.getKey());
+            if (doc == null || !isVisible(doc.snapshot(), request, includeNonPublic)) {
+                continue;
+            }
+            int failed = failedFacets(doc, request, destination);
+            if (facets != null) {
+                facets.count(doc.snapshot(), doc.destination(), failed);
+            }
+            if (failed != 0) {
+                continue;
+            }
+            total++;
+            ScoredTour candidate = new ScoredTour(doc.snapshot(), entry.getValue());
+            if (best.size() < to) {
+                best.offer(candidate);
+            } else if (RELEVANCE.compare(candidate, best.peek()) < 0) {
+                best.poll();
+                best.offer(candidate);
+            }
+        }
+
+        List<ScoredTour> ordered = new ArrayList<>(best);
+        ordered.sort(RELEVANCE);
+        List<TourSnapshot> content = ordered.subList(Math.min(from, ordered.size()), ordered.size()).stream()
+                .map(ScoredTour::snapshot)
+                .toList();
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    // Every keyword must match (AND); the last one may match any term it is a prefix of.
+    // The rarest keyword drives the candidate set, the others are probed per candidate.
+    private Map<String, Float> rank(List<String> tokens) {
+        List<List<Term>> expanded = new ArrayList<>(tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            expanded.add(expand(tokens.get(i), i == tokens.size() - 1));
+        }
+        expanded.sort(Comparator.comparingLong(TourSearchEngine::postingCount));
+
+        int documentCount = Math.max(documents.size(), 1);
+        double averageLength = Math.max(totalLength / documentCount, 1d);
+
+        Map<String, Float> scores = new HashMap<>();
+        for (Term term : expanded.getFirst()) {
+            term.docs().forEach((tourId, tf) -> {
+                float score = score(term, tourId, tf, averageLength);
+                if (score > 0) {
+                    scores.merge(tourId, score, Float::sum);
+                }
+            });
+        }
+
+        for (List<Term> terms : expanded.subList(1, expanded.size())) {
+            if (scores.isEmpty()) {
+                break;
+            }
+            scores.entrySet().removeIf(entry -> {
+                float added = 0;
+                for (Term term : terms) {
+                    Float tf = term.docs().get(entry.getKey());
+                    if (tf != null) {
+                        added += score(term, entry.getKey(), tf, averageLength);
+                    }
+                }
+                if (added == 0) {
+                    return true;
+                }
+                entry.setValue(entry.getValue() + added);
+                return false;
+            });
+        }
+        return scores;
+    }
+
+    private List<Term> expand(String token, boolean prefix) {
+        int documentCount = Math.max(documents.size(), 1);
+        Map<String, Map<String, Float>> matched;
+        if (prefix) {
+            matched = postings.subMap(token, true, token + Character.MAX_VALUE, true);
+        } else {
+            Map<String, Float> exact = postings.get(token);
+            matched = exact == null ? Map.of() : Map.of(token, exact);
+        }
+        List<Term> terms = new ArrayList<>(matched.size());
+        matched.values().forEach(docs -> {
+            int frequency = docs.size();
+            double idf = Math.log(1 + (documentCount - frequency + 0.5) / (frequency + 0.5));
+            terms.add(new Term(docs, idf));
+        });
+        return terms;
+    }
+
+    private float score(Term term, String tourId, float tf, double averageLength) {
+        IndexedTour doc = documents.get(tourId);
+        if (doc == null) {
+            return 0;
+        }
+        double norm = tf * (K1 + 1) / (tf + K1 * (1 - B + B * doc.length() / averageLength));
+        return (float) (term.idf() * norm);
+    }
+
+    private static long postingCount(List<Term> terms) {
+        long count = 0;
+        for (Term term : terms) {
+            count += term.docs().size();
+        }
+        return count;
+    }
+
+    // Filters that are not facets: visibility, admin status filter and exact start date
+    private static boolean isVisible(TourSnapshot tour, TourSearchRequest request, boolean includeNonPublic) {
+        if (includeNonPublic) {
+            if (request.getTourStatus() != null && tour.tourStatus() != request.getTourStatus()) return false;
+        } else if (!tour.isPublic()) {
+            return false;
+        }
+        return request.getStartDate() == null || request.getStartDate().equals(tour.startDate());
+    }
+
+    // Bit mask of the facet filters this tour fails, 0 when it is a hit
+    private static int failedFacets(IndexedTour doc, TourSearchRequest request, String destination) {
+        TourSnapshot tour = doc.snapshot();
+        int failed = 0;
+        if (!destination.isEmpty() && !doc.destination().contains(destination)) {
+            failed |= TourFacetCounter.DESTINATION;
+        }
+        if ((request.getMinPrice() != null && (tour.priceAdult() == null || tour.priceAdult() < request.getMinPrice()))
+                || (request.getMaxPrice() != null
+                        && (tour.priceAdult() == null || tour.priceAdult() > request.getMaxPrice()))) {
+            failed |= TourFacetCounter.PRICE;
+        }
+        if (request.getDurationDays() != null && tour.durationDays() != request.getDurationDays()) {
+            failed |= TourFacetCounter.DURATION;
+        }
+        if (request.getStartMonth() != null
+                && (tour.startDate() == null || !request.getStartMonth().equals(YearMonth.from(tour.startDate())))) {
+            failed |= TourFacetCounter.START_MONTH;
+        }
+        if (request.getMinQuantity() != null
+                && (tour.quantity() == null || tour.quantity() < request.getMinQuantity())) {
+            failed |= TourFacetCounter.SEATS;
+        }
+        return failed;
+    }
+
+    private IndexedTour analyze(TourSnapshot tour) {
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, tour.title(), TITLE_BOOST);
+        addField(terms, tour.destination(), DESTINATION_BOOST);
+        addField(terms, tour.description(), DESCRIPTION_BOOST);
+        float length = 0;
+        for (float frequency : terms.values()) {
+            length += frequency;
+        }
+        return new IndexedTour(tour, terms, length, TextFolding.fold(tour.destination()));
+    }
+
+    private void addField(Map<String, Float> terms, String text, float boost) {
+        TextFolding.tokenize(text).forEach(token -> terms.merge(token, boost, Float::sum));
+    }
+}
@@ -0,0 +1,84 @@
+package tourbooking.vietvivu.service.status;
+
+import java.time.LocalDate;
+
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.enumm.TourStatus;
+import tourbooking.vietvivu.service.catalog.TourDurations;
+
+/**
+ * Pure tour status rules: which status a tour should have on a given day and when that next changes.
+ * A tour is locked for booking from its start date (the day after its lock date),
+ * completed the day after its end date, and a sold-out tour is closed for booking immediately.
+ */
+public final class TourStatusPolicy {
+
+    private TourStatusPolicy() {}
+
+    public static TourStatus resolve(
+            LocalDate today,
+            LocalDate startDate,
+            LocalDate endDate,
+            Integer quantity,
+            Boolean availability,
+            TourStatus current) {
+        if (startDate == null) {
+            return TourStatus.COMPLETED;
+        }
+        if (endDate != null && today.isAfter(endDate)) {
+            return TourStatus.COMPLETED;
+        }
+        if (!today.isBefore(startDate) || isSoldOut(quantity)) {
+            return TourStatus.IN_PROGRESS;
+        }
+        // Before the lock date the status set by the admin is kept
+        if (current == null || current == TourStatus.COMPLETED) {
+            return Boolean.TRUE.equals(availability) ? TourStatus.OPEN_BOOKING : TourStatus.IN_PROGRESS;
+        }
+        return current;
+    }
+
+    /**
+     * First day after {@code today} on which {@link #resolve} can return something else
+     * because of the calendar alone, or null when the tour has no more time-driven transitions
+     */
+    public static LocalDate nextTransition(LocalDate today, LocalDate startDate, LocalDate endDate) {
+        if (startDate != null && today.isBefore(startDate)) {
+            return startDate;
+        }
+        if (startDate != null && endDate != null && !today.isAfter(endDate)) {
+            return endDate.plusDays(1);
+        }
+        return null;
+    }
+
+    public static LocalDate effectiveEndDate(LocalDate startDate, LocalDate endDate, int durationDays) {
+        if (endDate != null || startDate == null) {
+            return endDate;
+        }
+        return startDate.plusDays(Math.max(durationDays, 1) - 1);
+    }
+
+    public static boolean isSoldOut(Integer quantity) {
+        return quantity != null && quantity == 0;
+    }
+
+    /**
+     * Bring a tour that is about to be written up to date (end date, availability, status)
+     */
+    public static void apply(Tour tour, LocalDate today) {
+        if (tour.getEndDate() == null && tour.getStartDate() != null && tour.getDuration() != null) {
+            tour.setEndDate(effectiveEndDate(tour.getStartDate(), null, TourDurations.extractDays(tour.getDuration())));
+        }
+        if (isSoldOut(tour.getQuantity())) {
+            tour.setAvailability(false);
+        }
+        tour.setTourStatus(resolve(
+                today,
+                tour.getStartDate(),
+                tour.getEndDate(),
+                tour.getQuantity(),
+                tour.getAvailability(),
+                tour.getTourStatus()));
+    }
+}
@@ -0,0 +1,176 @@
+package tourbooking.vietvivu.service.status;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.enumm.TourStatus;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.service.catalog.TourCatalogListener;
+import tourbooking.vietvivu.service.catalog.TourChangedEvent;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
+
+/**
+ * Applies time-driven tour status transitions.
+ * Every tour known to the catalog is queued at the day of its next transition (start date,
+ * day after end date) or today when it is already out of date (e.g. just sold out);
+ * each tick drains what is due and writes it back with one set-based update per target status.
+ */
+@Component
+@Slf4j
+public class TourStatusScheduler implements TourCatalogListener {
+
+    private static final int BATCH_SIZE = 500;
+
+    private final TourRepository tourRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate writeTransaction;
+
+    private record Due(LocalDate date, String tourId) {}
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Due> queue = new PriorityQueue<>(Comparator.comparing(Due::date));
+    private final Map<String, TourSnapshot> tracked = new HashMap<>();
+    // Latest due date per tour; queue entries that do not match it are stale and skipped
+    private final Map<String, LocalDate> dueDates = new HashMap<>();
+
+    public TourStatusScheduler(
+            TourRepository tourRepository,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager) {
+        this.tourRepository = tourRepository;
+        this.eventPublisher = eventPublisher;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void onSnapshotChanged(String tourId, TourSnapshot previous, TourSnapshot current) {
+        synchronized (lock) {
+            if (current == null) {
+                tracked.remove(tourId);
+                dueDates.remove(tourId);
+                return;
+            }
+            tracked.put(tourId, current);
+            schedule(current, LocalDate.now());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${tour.status.tick-interval-ms:60000}")
+    public void tick() {
+        LocalDate today = LocalDate.now();
+        Map<TourStatus, List<String>> transitions = new EnumMap<>(TourStatus.class);
+        List<String> soldOut = new ArrayList<>();
+        List<String> affected = new ArrayList<>();
+
+        synchronized (lock) {
+            while (!queue.isEmpty() && !queue.peek().date().isAfter(today)) {
+                Due due = queue.poll();
+                if (!due.date().equals(dueDates.get(due.tourId()))) {
+                    continue;
+                }
+                dueDates.remove(due.tourId());
+                TourSnapshot tour = tracked.get(due.tourId());
+                if (tour == null) {
+                    continue;
+                }
+
+                TourStatus target = resolve(tour, today);
+                boolean closeBooking =
+                        TourStatusPolicy.isSoldOut(tour.quantity()) && Boolean.TRUE.equals(tour.availability());
+                if (target != tour.tourStatus()) {
+                    transitions
+                            .computeIfAbsent(target, status -> new ArrayList<>())
+                            .add(tour.tourId());
+                }
+                if (closeBooking) {
+                    soldOut.add(tour.tourId());
+                }
+                if (target != tour.tourStatus() || closeBooking) {
+                    // Rescheduled when the catalog reloads the updated tour
+                    affected.add(tour.tourId());
+                } else {
+                    schedule(tour, today);
+                }
+            }
+        }
+
+        if (affected.isEmpty()) {
+            return;
+        }
+
+        try {
+            writeTransaction.executeWithoutResult(status -> {
+                transitions.forEach((target, tourIds) ->
+                        partition(tourIds).forEach(batch -> tourRepository.updateStatusByIds(batch, target)));
+                partition(soldOut).forEach(tourRepository::closeSoldOutByIds);
+                affected.forEach(tourId -> eventPublisher.publishEvent(new TourChangedEvent(tourId)));
+            });
+            log.info(
+                    "Tour status tick: {} transitions {}, {} sold out",
+                    affected.size(),
+                    summary(transitions),
+                    soldOut.size());
+        } catch (Exception e) {
+            log.error("Tour status tick failed for {} tours, retrying next tick", affected.size(), e);
+            synchronized (lock) {
+                affected.forEach(tourId -> {
+                    if (tracked.containsKey(tourId)) {
+                        dueDates.put(tourId, today);
+                        queue.add(new Due(today, tourId));
+                    }
+                });
+            }
+        }
+    }
+
+    private void schedule(TourSnapshot tour, LocalDate today) {
+        LocalDate endDate = TourStatusPolicy.effectiveEndDate(tour.startDate(), tour.endDate(), tour.durationDays());
+        boolean outOfDate = resolve(tour, today) != tour.tourStatus()
+                || (TourStatusPolicy.isSoldOut(tour.quantity()) && Boolean.TRUE.equals(tour.availability()));
+        LocalDate due = outOfDate ? today : TourStatusPolicy.nextTransition(today, tour.startDate(), endDate);
+        if (due == null) {
+            dueDates.remove(tour.tourId());
+            return;
+        }
+        if (!due.equals(dueDates.put(tour.tourId(), due))) {
+            queue.add(new Due(due, tour.tourId()));
+        }
+    }
+
+    private static TourStatus resolve(TourSnapshot tour, LocalDate today) {
+        return TourStatusPolicy.resolve(
+                today,
+                tour.startDate(),
+                TourStatusPolicy.effectiveEndDate(tour.startDate(), tour.endDate(), tour.durationDays()),
+                tour.quantity(),
+                tour.availability(),
+                tour.tourStatus());
+    }
+
+    private static List<List<String>> partition(List<String> tourIds) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int from = 0; from < tourIds.size(); from += BATCH_SIZE) {
+            batches.add(tourIds.subList(from, Math.min(from + BATCH_SIZE, tourIds.size())));
+        }
+        return batches;
+    }
+
+    private static Map<TourStatus, Integer> summary(Map<TourStatus, List<String>> transitions) {
+        Map<TourStatus, Integer> counts = new EnumMap<>(TourStatus.class);
+        transitions.forEach((status, tourIds) -> counts.put(status, tourIds.size()));
+        return counts;
+    }
+}
@@ -0,0 +1,15 @@
+package tourbooking.vietvivu;
+
+import org.springframework.boot.SpringApplication;
+
+/**
+ * Starts the application against the local PayOS stand-in; run with {@code mvn spring-boot:test-run}
+ */
+public class PayOSStubApplication {
+
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(VietVivuApplication.class);
+        application.setAdditionalProfiles("payos-stub");
+        application.run(args);
+    }
+}
@@ -0,0 +1,200 @@
+package tourbooking.vietvivu.service.idempotency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import tourbooking.vietvivu.dto.response.PaymentSuccessResponse;
+import tourbooking.vietvivu.entity.IdempotencyRecord;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.IdempotencyRecordRepository;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+
+/**
+ * Replays, key reuse and failures against the records table, on one instance and across two.
+ */
+@DataJpaTest(
+        properties = {
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.show-sql=false",
+            "spring.datasource.url=jdbc:h2:mem:idempotency;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+            "spring.datasource.driver-class-name=org.h2.Driver",
+            "spring.datasource.username=sa",
+            "spring.datasource.password="
+        })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({IdempotencyService.class, JobLeaseRunner.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class IdempotencyServiceTest {
+
+    private static final String SCOPE = "payment-success";
+
+    @Autowired
+    IdempotencyService idempotencyService;
+
+    @Autowired
+    IdempotencyRecordRepository recordRepository;
+
+    @Autowired
+    JobLeaseRunner jobLeaseRunner;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        recordRepository.deleteAll();
+    }
+
+    @Test
+    void replayWithSameKeyAndBodyReturnsTheFirstResponse() {
+        AtomicInteger runs = new AtomicInteger();
+
+        PaymentSuccessResponse first = execute(idempotencyService, "key-1", Map.of("bookingId", "b1"), runs);
+        PaymentSuccessResponse replay = execute(idempotencyService, "key-1", Map.of("bookingId", "b1"), runs);
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(replay.getCheckoutId()).isEqualTo(first.getCheckoutId()).isEqualTo("checkout-1");
+        assertThat(recordRepository.findAll()).singleElement().satisfies(record -> assertThat(record.getCompleted())
+                .isTrue());
+    }
+
+    @Test
+    void concurrentDuplicatesRunTheWorkOnce() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<PaymentSuccessResponse>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(executor.submit(() -> idempotencyService.execute(
+                        SCOPE, "key-2", Map.of("bookingId", "b2"), PaymentSuccessResponse.class, () -> {
+                            sleep(100);
+                            return response("checkout-" + runs.incrementAndGet());
+                        })));
+            }
+            for (Future<PaymentSuccessResponse> future : futures) {
+                assertThat(future.get(30, TimeUnit.SECONDS).getCheckoutId()).isEqualTo("checkout-1");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void keyReusedWithDifferentBodyIsRejected() {
+        AtomicInteger runs = new AtomicInteger();
+        execute(idempotencyService, "key-3", Map.of("bookingId", "b3"), runs);
+
+        assertReused(() -> execute(idempotencyService, "key-3", Map.of("bookingId", "other"), runs));
+        // Another instance only has the table to go by
+        assertReused(() -> execute(otherInstance(), "key-3", Map.of("bookingId", "other"), runs));
+        assertThat(runs.get()).isEqualTo(1);
+    }
+
+    @Test
+    void anotherInstanceReplaysFromTheTable() {
+        AtomicInteger runs = new AtomicInteger();
+        execute(idempotencyService, "key-4", Map.of("bookingId", "b4"), runs);
+
+        PaymentSuccessResponse replay = execute(otherInstance(), "key-4", Map.of("bookingId", "b4"), runs);
+
+        assertThat(runs.get()).isEqualTo(1);
+        assertThat(replay.getCheckoutId()).isEqualTo("checkout-1");
+    }
+
+    @Test
+    void failedRequestReleasesTheKey() {
+        AtomicInteger runs = new AtomicInteger();
+        assertThatThrownBy(() -> idempotencyService.execute(
+                        SCOPE, "key-5", Map.of("bookingId", "b5"), PaymentSuccessResponse.class, () -> {
+                            runs.incrementAndGet();
+                            throw new AppException(ErrorCode.BOOKING_NOT_FOUND);
+                        }))
+                .isInstanceOf(AppException.class);
+        assertThat(recordRepository.findAll()).isEmpty();
+
+        PaymentSuccessResponse retried = execute(idempotencyService, "key-5", Map.of("bookingId", "b5"), runs);
+
+        assertThat(runs.get()).isEqualTo(2);
+        assertThat(retried.getCheckoutId()).isEqualTo("checkout-2");
+    }
+
+    @Test
+    void invalidKeysAreRejectedAndNoKeyJustRuns() {
+        AtomicInteger runs = new AtomicInteger();
+        assertThatThrownBy(() -> execute(idempotencyService, " ", Map.of(), runs))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.INVALID_IDEMPOTENCY_KEY);
+        assertThatThrownBy(() -> execute(idempotencyService, "k".repeat(129), Map.of(), runs))
+                .isInstanceOf(AppException.class);
+
+        execute(idempotencyService, null, Map.of(), runs);
+        execute(idempotencyService, null, Map.of(), runs);
+        assertThat(runs.get()).isEqualTo(2);
+        assertThat(recordRepository.findAll())
+                .extracting(IdempotencyRecord::getRecordKey)
+                .isEmpty();
+    }
+
+    private PaymentSuccessResponse execute(IdempotencyService service, String key, Object request, AtomicInteger runs) {
+        return service.execute(
+                SCOPE,
+                key,
+                request,
+                PaymentSuccessResponse.class,
+                () -> response("checkout-" + runs.incrementAndGet()));
+    }
+
+    /** A second node: same table, empty in-memory map */
+    private IdempotencyService otherInstance() {
+        return new IdempotencyService(
+                recordRepository,
+                jobLeaseRunner,
+                transactionManager,
+                Duration.ofHours(1),
+                Duration.ofMinutes(1),
+                Duration.ofSeconds(5),
+                100);
+    }
+
+    private static void assertReused(Runnable call) {
+        assertThatThrownBy(call::run)
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.IDEMPOTENCY_KEY_REUSED);
+    }
+
+    private static PaymentSuccessResponse response(String checkoutId) {
+        return PaymentSuccessResponse.builder().checkoutId(checkoutId).build();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package tourbooking.vietvivu.service.inventory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.entity.TourSeatStripe;
+import tourbooking.vietvivu.enumm.TourStatus;
+import tourbooking.vietvivu.exception.AppException;
+import tourbooking.vietvivu.exception.ErrorCode;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.repository.TourSeatStripeRepository;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+
+/**
+ * Fires thousands of concurrent reservations at one tour and checks the seat count never goes negative
+ * and every seat handed out is accounted for; with {@code -Dbenchmark=true} it also compares single-row and
+ * striped throughput.
+ */
+@DataJpaTest(
+        properties = {
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.show-sql=false",
+            "spring.datasource.url=jdbc:h2:mem:seats;MODE=PostgreSQL;LOCK_TIMEOUT=30000;DB_CLOSE_DELAY=-1",
+            "spring.datasource.driver-class-name=org.h2.Driver",
+            "spring.datasource.username=sa",
+            "spring.datasource.password=",
+            "spring.datasource.hikari.maximum-pool-size=16"
+        })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SeatInventory.class, StripedSeatCounter.class, SeatLedger.class, JobLeaseRunner.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Slf4j
+class SeatInventoryStressTest {
+
+    private static final int SEATS = 500;
+    private static final int BOOKINGS = 4000;
+    private static final int THREADS = 32;
+    private static final int BENCHMARK_SEATS = 600;
+    private static final int BENCHMARK_BOOKINGS = 400;
+    private static final int BENCHMARK_THREADS = 16;
+    private static final int BENCHMARK_STRIPES = 16;
+    private static final long BENCHMARK_WORK_MS = 20;
+
+    @Autowired
+    SeatInventory seatInventory;
+
+    @Autowired
+    StripedSeatCounter stripedSeatCounter;
+
+    @Autowired
+    TourRepository tourRepository;
+
+    @Autowired
+    TourSeatStripeRepository stripeRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        stripeRepository.deleteAll();
+        tourRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentReservationsNeverOversell() throws Exception {
+        String tourId = saveTour(SEATS);
+        AtomicInteger reservedSeats = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+
+        runConcurrently(BOOKINGS, () -> {
+            int seats = ThreadLocalRandom.current().nextInt(1, 4);
+            if (seatInventory.tryReserve(tourId, seats)) {
+                reservedSeats.addAndGet(seats);
+                accepted.incrementAndGet();
+            }
+        });
+
+        Tour tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getQuantity()).isGreaterThanOrEqualTo(0);
+        assertThat(reservedSeats.get()).isEqualTo(SEATS - tour.getQuantity());
+        // Demand is far above supply, so at most a couple of seats can be left over
+        assertThat(tour.getQuantity()).isLessThan(3);
+        assertThat(accepted.get()).isLessThan(BOOKINGS);
+        if (tour.getQuantity() == 0) {
+            assertThat(tour.getAvailability()).isFalse();
+        }
+    }
+
+    @Test
+    void concurrentReserveAndReleaseKeepSeatsConsistent() throws Exception {
+        String tourId = saveTour(50);
+        AtomicInteger held = new AtomicInteger();
+
+        runConcurrently(BOOKINGS, () -> {
+            if (seatInventory.tryReserve(tourId, 1)) {
+                held.incrementAndGet();
+                if (ThreadLocalRandom.current().nextBoolean()) {
+                    seatInventory.release(tourId, 1);
+                    held.decrementAndGet();
+                }
+            }
+        });
+
+        Tour tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getQuantity()).isBetween(0, 50);
+        assertThat(held.get()).isEqualTo(50 - tour.getQuantity());
+    }
+
+    @Test
+    void concurrentStripedReservationsNeverOversell() throws Exception {
+        String tourId = saveTour(SEATS);
+        seatInventory.setStripes(tourId, 8);
+        AtomicInteger reservedSeats = new AtomicInteger();
+
+        runConcurrently(BOOKINGS, () -> {
+            int seats = ThreadLocalRandom.current().nextInt(1, 4);
+            if (seatInventory.tryReserve(tourId, seats)) {
+                reservedSeats.addAndGet(seats);
+            }
+        });
+
+        int left = stripeRepository.findAll().stream()
+                .mapToInt(TourSeatStripe::getSeats)
+                .sum();
+        assertThat(stripeRepository.findAll())
+                .allSatisfy(stripe -> assertThat(stripe.getSeats()).isGreaterThanOrEqualTo(0));
+        assertThat(reservedSeats.get()).isEqualTo(SEATS - left);
+        // Borrowing lets a booking use seats spread over several stripes, so nothing is stranded
+        assertThat(left).isLessThan(3);
+
+        stripedSeatCounter.syncQuantities();
+        assertThat(tourRepository.findById(tourId).orElseThrow().getQuantity()).isEqualTo(left);
+
+        seatInventory.setStripes(tourId, 0);
+        Tour tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getSeatStripes()).isNull();
+        assertThat(tour.getQuantity()).isEqualTo(left);
+        assertThat(stripeRepository.count()).isZero();
+    }
+
+    @Test
+    void stripedReleaseIsCappedAndReopensTour() {
+        String tourId = saveTour(4);
+        seatInventory.setStripes(tourId, 3);
+
+        assertThat(seatInventory.tryReserve(tourId, 4)).isTrue();
+        assertThat(seatInventory.tryReserve(tourId, 1)).isFalse();
+        stripedSeatCounter.syncQuantities();
+        assertThat(tourRepository.findById(tourId).orElseThrow().getAvailability())
+                .isFalse();
+
+        seatInventory.release(tourId, 10);
+        Tour tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getQuantity()).isEqualTo(4);
+        assertThat(tour.getAvailability()).isTrue();
+        // Re-splitting keeps the seats
+        seatInventory.setStripes(tourId, 2);
+        assertThat(stripeRepository.findAll()).hasSize(2);
+        assertThat(seatInventory.tryReserve(tourId, 4)).isTrue();
+    }
+
+    @Test
+    void failedReservationChangesNothing() {
+        String tourId = saveTour(2);
+
+        assertThat(seatInventory.tryReserve(tourId, 3)).isFalse();
+        assertThat(seatInventory.tryReserve(tourId, 2)).isTrue();
+        assertThat(seatInventory.tryReserve(tourId, 1)).isFalse();
+
+        Tour tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getQuantity()).isZero();
+        assertThat(tour.getAvailability()).isFalse();
+
+        seatInventory.release(tourId, 5);
+        tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getQuantity()).isEqualTo(2);
+        assertThat(tour.getAvailability()).isTrue();
+    }
+
+    @Test
+    void resizeMovesSeatsOnSaleBothWays() {
+        String tourId = saveTour(20);
+        assertThat(seatInventory.tryReserve(tourId, 20)).isTrue();
+
+        // Raising the capacity of a sold-out tour puts the new seats on sale and reopens it
+        assertThat(seatInventory.resize(tourId, 20, 30)).isEqualTo(10);
+        Tour tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getInitialQuantity()).isEqualTo(30);
+        assertThat(tour.getQuantity()).isEqualTo(10);
+        assertThat(tour.getAvailability()).isTrue();
+
+        // Lowering it takes unsold seats off sale, but never below the seats already booked
+        assertThat(seatInventory.resize(tourId, 30, 24)).isEqualTo(4);
+        assertThatThrownBy(() -> seatInventory.resize(tourId, 24, 19))
+                .isInstanceOf(AppException.class)
+                .extracting(e -> ((AppException) e).getErrorCode())
+                .isEqualTo(ErrorCode.INITIAL_QUANTITY_BELOW_SOLD);
+        tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getInitialQuantity()).isEqualTo(24);
+        assertThat(tour.getQuantity()).isEqualTo(4);
+
+        assertThat(seatInventory.resize(tourId, 24, 20)).isZero();
+        tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getQuantity()).isZero();
+        assertThat(tour.getAvailability()).isFalse();
+        // Releases are capped at the new initial quantity
+        seatInventory.release(tourId, 25);
+        assertThat(tourRepository.findById(tourId).orElseThrow().getQuantity()).isEqualTo(20);
+    }
+
+    @Test
+    void resizeOfStripedTourGoesThroughTheStripes() {
+        String tourId = saveTour(12);
+        seatInventory.setStripes(tourId, 3);
+        assertThat(seatInventory.tryReserve(tourId, 5)).isTrue();
+
+        assertThat(seatInventory.resize(tourId, 12, 20)).isEqualTo(15);
+        assertThat(stripeRepository.findAll().stream()
+                        .mapToInt(TourSeatStripe::getSeats)
+                        .sum())
+                .isEqualTo(15);
+        assertThat(seatInventory.resize(tourId, 20, 5)).isZero();
+        assertThatThrownBy(() -> seatInventory.resize(tourId, 5, 4)).isInstanceOf(AppException.class);
+
+        Tour tour = tourRepository.findById(tourId).orElseThrow();
+        assertThat(tour.getInitialQuantity()).isEqualTo(5);
+        assertThat(tour.getQuantity()).isZero();
+        assertThat(tour.getAvailability()).isFalse();
+        assertThat(stripeRepository.findAll())
+                .allSatisfy(stripe -> assertThat(stripe.getSeats()).isZero());
+    }
+
+    /**
+     * Booking throughput on one hot tour with a single seat row against striped counters. Each booking holds
+     * its seat lock for {@code BENCHMARK_WORK_MS}, standing in for the rest of {@code bookTour}, so lock waits
+     * rather than CPU decide the result. Run with {@code -Dbenchmark=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void stripedCountersOutrunSingleRow() throws Exception {
+        double single = bookingsPerSecond(saveTour(BENCHMARK_SEATS), 0);
+        double striped = bookingsPerSecond(saveTour(BENCHMARK_SEATS), BENCHMARK_STRIPES);
+
+        log.info("Striped counters: {}x the single-row throughput", String.format("%.1f", striped / single));
+        assertThat(striped).isGreaterThan(single);
+    }
+
+    /** Books one seat per transaction from many threads and returns bookings per second. */
+    private double bookingsPerSecond(String tourId, int stripes) throws Exception {
+        if (stripes > 1) {
+            seatInventory.setStripes(tourId, stripes);
+        }
+        TransactionTemplate booking = new TransactionTemplate(transactionManager);
+        AtomicInteger accepted = new AtomicInteger();
+        long started = System.nanoTime();
+        runConcurrently(
+                BENCHMARK_THREADS,
+                BENCHMARK_BOOKINGS,
+                () -> booking.executeWithoutResult(status -> {
+                    if (seatInventory.tryReserve(tourId, 1)) {
+                        accepted.incrementAndGet();
+                        holdLock();
+                    }
+                }));
+        double elapsedMs = (System.nanoTime() - started) / 1_000_000.0;
+
+        assertThat(accepted.get()).isEqualTo(BENCHMARK_BOOKINGS);
+        int left = stripes > 1
+                ? stripeRepository.findAll().stream()
+                        .filter(stripe -> stripe.getTourId().equals(tourId))
+                        .mapToInt(TourSeatStripe::getSeats)
+                        .sum()
+                : tourRepository.findById(tourId).orElseThrow().getQuantity();
+        assertThat(left).isEqualTo(BENCHMARK_SEATS - BENCHMARK_BOOKINGS);
+
+        double perSecond = accepted.get() * 1000.0 / elapsedMs;
+        log.info(
+                "{} stripes: {} bookings, {} threads, {} ms held: {} ms, {} bookings/s",
+                stripes,
+                accepted.get(),
+                BENCHMARK_THREADS,
+                BENCHMARK_WORK_MS,
+                Math.round(elapsedMs),
+                Math.round(perSecond));
+        return perSecond;
+    }
+
+    private static void holdLock() {
+        try {
+            Thread.sleep(BENCHMARK_WORK_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String saveTour(int seats) {
+        return tourRepository
+                .save(Tour.builder()
+                        .title("Flash sale")
+                        .initialQuantity(seats)
+                        .quantity(seats)
+                        .priceAdult(1_000_000.0)
+                        .priceChild(500_000.0)
+                        .duration("3 ngày 2 đêm")
+                        .destination("Đà Nẵng")
+                        .availability(true)
+                        .startDate(LocalDate.now().plusMonths(1))
+                        .tourStatus(TourStatus.OPEN_BOOKING)
+                        .build())
+                .getTourId();
+    }
+
+    private static void runConcurrently(int tasks, Runnable task) throws Exception {
+        runConcurrently(THREADS, tasks, task);
+    }
+
+    private static void runConcurrently(int threads, int tasks, Runnable task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
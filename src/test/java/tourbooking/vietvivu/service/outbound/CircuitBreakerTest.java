@@ -0,0 +1,110 @@
+package tourbooking.vietvivu.service.outbound;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Walks the breaker through its states on a hand-driven clock.
+ */
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_FOR = Duration.ofSeconds(30);
+
+    // 50% of the last 4 calls, at least 4 calls, 2 trial calls
+    private final CircuitBreaker breaker = new CircuitBreaker(
+            new OutboundPolicy("test", 10, Duration.ZERO, Duration.ofSeconds(1), 50, 4, 4, OPEN_FOR, 2));
+    private long now = 1_000_000_000L;
+
+    @Test
+    void opensOnFailureRateThenClosesAfterSuccessfulTrials() {
+        succeed();
+        fail();
+        succeed();
+        // 1 of 3 failed and below the minimum number of calls
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire(now)).isFalse();
+
+        advance(OPEN_FOR.minusMillis(1));
+        assertThat(breaker.tryAcquire(now)).isFalse();
+        advance(Duration.ofMillis(1));
+        // Exactly halfOpenCalls trial calls go through
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        assertThat(breaker.tryAcquire(now)).isFalse();
+
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // Closing starts a fresh window: one failure does not reopen it
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void failedTrialReopensForAnotherFullPeriod() {
+        tripOpen();
+        advance(OPEN_FOR);
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        breaker.onFailure(now);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        advance(OPEN_FOR.minusMillis(1));
+        assertThat(breaker.tryAcquire(now)).isFalse();
+        advance(Duration.ofMillis(1));
+        assertThat(breaker.tryAcquire(now)).isTrue();
+    }
+
+    @Test
+    void releasedTrialPermitCanBeTakenAgain() {
+        tripOpen();
+        advance(OPEN_FOR);
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        assertThat(breaker.tryAcquire(now)).isFalse();
+
+        breaker.release();
+        assertThat(breaker.tryAcquire(now)).isTrue();
+    }
+
+    @Test
+    void rateIsTakenOverTheLastWindowOnly() {
+        fail();
+        for (int i = 0; i < 4; i++) {
+            succeed();
+        }
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        // 3 of 7 calls failed overall, but 2 of the last 4
+        fail();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 4; i++) {
+            fail();
+        }
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void succeed() {
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        breaker.onSuccess();
+    }
+
+    private void fail() {
+        assertThat(breaker.tryAcquire(now)).isTrue();
+        breaker.onFailure(now);
+    }
+
+    private void advance(Duration duration) {
+        now += duration.toNanos();
+    }
+}
@@ -0,0 +1,78 @@
+package tourbooking.vietvivu.service.outbound;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the bucket layout and the percentiles read from it.
+ */
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesGetABucketEach() {
+        for (int micros = 0; micros < 8; micros++) {
+            assertThat(LatencyHistogram.bucketOf(micros)).isEqualTo(micros);
+            assertThat(LatencyHistogram.upperBound(micros)).isEqualTo(micros);
+        }
+    }
+
+    @Test
+    void bucketsSplitEachPowerOfTwoInQuarters() {
+        assertThat(LatencyHistogram.bucketOf(8)).isEqualTo(LatencyHistogram.bucketOf(9));
+        assertThat(LatencyHistogram.bucketOf(10)).isEqualTo(LatencyHistogram.bucketOf(8) + 1);
+        assertThat(LatencyHistogram.upperBound(LatencyHistogram.bucketOf(8))).isEqualTo(9);
+        assertThat(LatencyHistogram.upperBound(LatencyHistogram.bucketOf(1023))).isEqualTo(1023);
+        assertThat(LatencyHistogram.bucketOf(1024)).isEqualTo(LatencyHistogram.bucketOf(1023) + 1);
+        assertThat(LatencyHistogram.upperBound(LatencyHistogram.bucketOf(1024))).isEqualTo(1279);
+        assertThat(LatencyHistogram.bucketOf(1280)).isEqualTo(LatencyHistogram.bucketOf(1024) + 1);
+    }
+
+    @Test
+    void bucketsAreContiguousAndWithinAQuarter() {
+        int previous = -1;
+        for (long micros = 0; micros < 1L << 22; micros++) {
+            int bucket = LatencyHistogram.bucketOf(micros);
+            // Every value lands in the same bucket as the one before it or the next one
+            assertThat(bucket - previous).isBetween(0, 1);
+            if (bucket != previous && bucket > 0) {
+                assertThat(LatencyHistogram.upperBound(bucket - 1)).isEqualTo(micros - 1);
+            }
+            previous = bucket;
+            long upper = LatencyHistogram.upperBound(bucket);
+            assertThat(upper).isGreaterThanOrEqualTo(micros);
+            assertThat(upper - micros).isLessThanOrEqualTo(micros / 4);
+        }
+    }
+
+    @Test
+    void valuesPastTheLastBucketAreClampedIntoIt() {
+        int last = LatencyHistogram.bucketOf(Long.MAX_VALUE);
+        assertThat(LatencyHistogram.bucketOf(300_000_000_000L)).isEqualTo(last);
+        assertThat(LatencyHistogram.bucketOf(LatencyHistogram.upperBound(last))).isEqualTo(last);
+        assertThat(LatencyHistogram.bucketOf(LatencyHistogram.upperBound(last - 1)))
+                .isEqualTo(last - 1);
+    }
+
+    @Test
+    void percentilesReportTheBucketBoundCappedAtTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.percentileMillis(99)).isZero();
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1_000_000); // 1 ms
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(100_000_000); // 100 ms
+        }
+
+        assertThat(histogram.count()).isEqualTo(100);
+        assertThat(histogram.meanMillis()).isEqualTo(10.9);
+        // 1000 us lands in [896, 1023]
+        assertThat(histogram.percentileMillis(50)).isEqualTo(1.023);
+        assertThat(histogram.percentileMillis(90)).isEqualTo(1.023);
+        // The top bucket's bound is above every recorded value, so the max is reported instead
+        assertThat(histogram.percentileMillis(91)).isEqualTo(100.0);
+        assertThat(histogram.percentileMillis(100)).isEqualTo(histogram.maxMillis());
+    }
+}
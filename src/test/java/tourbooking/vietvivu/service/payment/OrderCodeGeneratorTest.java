@@ -0,0 +1,105 @@
+package tourbooking.vietvivu.service.payment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Draws millions of order codes from several generators (one per simulated node) on many threads at once
+ * and checks every code is distinct and within PayOS's limit.
+ */
+class OrderCodeGeneratorTest {
+
+    private static final int NODES = 4;
+    private static final int THREADS_PER_NODE = 4;
+    private static final int CODES_PER_THREAD = 250_000;
+
+    @Test
+    void concurrentCodesAcrossNodesNeverCollide() throws Exception {
+        List<OrderCodeGenerator> generators = new ArrayList<>(NODES);
+        for (int node = 0; node < NODES; node++) {
+            generators.add(new OrderCodeGenerator(node, System::currentTimeMillis));
+        }
+        long[][] drawn = new long[NODES * THREADS_PER_NODE][];
+
+        runConcurrently(NODES * THREADS_PER_NODE, task -> {
+            OrderCodeGenerator generator = generators.get(task % NODES);
+            long[] codes = new long[CODES_PER_THREAD];
+            for (int i = 0; i < codes.length; i++) {
+                codes[i] = generator.next();
+            }
+            drawn[task] = codes;
+        });
+
+        long[] all = Arrays.stream(drawn).flatMapToLong(Arrays::stream).toArray();
+        assertThat(all).hasSize(NODES * THREADS_PER_NODE * CODES_PER_THREAD);
+        Arrays.sort(all);
+        assertThat(all[0]).isPositive();
+        assertThat(all[all.length - 1]).isLessThanOrEqualTo(OrderCodeGenerator.MAX_CODE);
+        for (int i = 1; i < all.length; i++) {
+            assertThat(all[i]).as("code %d repeats", all[i]).isNotEqualTo(all[i - 1]);
+        }
+    }
+
+    @Test
+    void codesKeepIncreasingWhenTheClockStepsBack() {
+        AtomicLong now = new AtomicLong(System.currentTimeMillis());
+        OrderCodeGenerator generator = new OrderCodeGenerator(7, now::get);
+
+        long previous = generator.next();
+        for (int i = 0; i < 1_000; i++) {
+            // Stands still, then jumps back a second: the sequence carries on rather than repeating
+            if (i == 500) {
+                now.addAndGet(-1_000);
+            }
+            long code = generator.next();
+            assertThat(code).isGreaterThan(previous);
+            previous = code;
+        }
+    }
+
+    @Test
+    void rejectsNodeIdsThatDoNotFitTheLayout() {
+        assertThatThrownBy(() -> new OrderCodeGenerator(OrderCodeGenerator.MAX_NODE_ID + 1, System::currentTimeMillis))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new OrderCodeGenerator(-1, System::currentTimeMillis))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private interface Task {
+        void run(int task);
+    }
+
+    private static void runConcurrently(int tasks, Task task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
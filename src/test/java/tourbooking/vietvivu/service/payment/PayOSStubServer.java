@@ -0,0 +1,200 @@
+package tourbooking.vietvivu.service.payment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+import vn.payos.crypto.CryptoProvider;
+import vn.payos.crypto.CryptoProviderImpl;
+
+/**
+ * Local stand-in for the PayOS merchant API, started with the payos-stub profile so the payment path can
+ * be run and benchmarked offline. It lives on the test classpath only; {@code mvn spring-boot:test-run}
+ * starts the application with it through {@link tourbooking.vietvivu.PayOSStubApplication}. It answers payment link creation with a response signed by the checksum
+ * key, as the SDK expects, after {@code latency-ms} plus up to {@code jitter-ms}; {@code failure-rate} of
+ * the calls answer 500 and {@code hang-rate} of them wait {@code hang-ms} first. It listens on its own port
+ * and threads so a slow stub never ties up the application's workers, and its settings can be read and
+ * changed while it runs through {@code GET} and {@code POST /__stub/config?latency-ms=...}.
+ */
+@Component
+@Profile("payos-stub")
+@Slf4j
+public class PayOSStubServer {
+
+    static final String CREATE_PATH = "/v2/payment-requests";
+    static final String CONFIG_PATH = "/__stub/config";
+
+    private record Settings(long latencyMs, long jitterMs, double failureRate, double hangRate, long hangMs) {
+
+        Settings with(Map<String, String> changes) {
+            return new Settings(
+                    Long.parseLong(changes.getOrDefault("latency-ms", String.valueOf(latencyMs))),
+                    Long.parseLong(changes.getOrDefault("jitter-ms", String.valueOf(jitterMs))),
+                    Double.parseDouble(changes.getOrDefault("failure-rate", String.valueOf(failureRate))),
+                    Double.parseDouble(changes.getOrDefault("hang-rate", String.valueOf(hangRate))),
+                    Long.parseLong(changes.getOrDefault("hang-ms", String.valueOf(hangMs))));
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("latency-ms", latencyMs);
+            map.put("jitter-ms", jitterMs);
+            map.put("failure-rate", failureRate);
+            map.put("hang-rate", hangRate);
+            map.put("hang-ms", hangMs);
+            return map;
+        }
+    }
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final CryptoProvider crypto = new CryptoProviderImpl();
+    private final String checksumKey;
+    private final int port;
+    private volatile Settings settings;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PayOSStubServer(
+            @Value("${payos.checksum-key}") String checksumKey,
+            @Value("${payos.stub.port:8099}") int port,
+            @Value("${payos.stub.latency-ms:200}") long latencyMs,
+            @Value("${payos.stub.jitter-ms:100}") long jitterMs,
+            @Value("${payos.stub.failure-rate:0}") double failureRate,
+            @Value("${payos.stub.hang-rate:0}") double hangRate,
+            @Value("${payos.stub.hang-ms:60000}") long hangMs) {
+        this.checksumKey = checksumKey;
+        this.port = port;
+        this.settings = new Settings(latencyMs, jitterMs, failureRate, hangRate, hangMs);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        executor = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("payos-stub-", 0).factory());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext(CREATE_PATH, this::createPaymentLink);
+        server.createContext(CONFIG_PATH, this::config);
+        server.start();
+        log.info("PayOS stub listening on port {} with {}", port, settings);
+    }
+
+    @PreDestroy
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void createPaymentLink(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Map<String, Object> request = read(exchange.getRequestBody());
+            Settings current = settings;
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delayMs = current.latencyMs() + (current.jitterMs() > 0 ? random.nextLong(current.jitterMs() + 1) : 0);
+            if (random.nextDouble() < current.hangRate()) {
+                delayMs += current.hangMs();
+            }
+            Thread.sleep(delayMs);
+
+            if (random.nextDouble() < current.failureRate()) {
+                send(exchange, 500, Map.of("code", "20", "desc", "Injected failure"));
+                return;
+            }
+            String paymentLinkId = UUID.randomUUID().toString().replace("-", "");
+            Map<String, Object> data = new LinkedHashMap<>();
+            data.put("bin", "970422");
+            data.put("accountNumber", "0000000000");
+            data.put("accountName", "VIETVIVU STUB");
+            data.put("amount", request.get("amount"));
+            data.put("description", request.get("description"));
+            data.put("orderCode", request.get("orderCode"));
+            data.put("currency", "VND");
+            data.put("paymentLinkId", paymentLinkId);
+            data.put("status", "PENDING");
+            data.put("checkoutUrl", "http://localhost:" + port + "/web/" + paymentLinkId);
+            data.put("qrCode", "stub-qr-" + request.get("orderCode"));
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("code", "00");
+            body.put("desc", "success");
+            body.put("data", data);
+            body.put("signature", crypto.createSignatureFromObj(data, checksumKey));
+            send(exchange, 200, body);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void config(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if ("POST".equals(exchange.getRequestMethod())) {
+                try {
+                    settings = settings.with(query(exchange.getRequestURI().getRawQuery()));
+                } catch (NumberFormatException e) {
+                    send(exchange, 400, Map.of("error", e.getMessage()));
+                    return;
+                }
+                log.info("PayOS stub now running with {}", settings);
+            }
+            send(exchange, 200, settings.toMap());
+        }
+    }
+
+    private Map<String, Object> read(InputStream body) throws IOException {
+        byte[] bytes = body.readAllBytes();
+        return bytes.length == 0 ? Map.of() : mapper.readValue(bytes, new TypeReference<>() {});
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = mapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                params.put(
+                        URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return params;
+    }
+}
@@ -0,0 +1,320 @@
+package tourbooking.vietvivu.service.payment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import tourbooking.vietvivu.entity.Booking;
+import tourbooking.vietvivu.entity.PaymentOrder;
+import tourbooking.vietvivu.entity.Tour;
+import tourbooking.vietvivu.enumm.BookingStatus;
+import tourbooking.vietvivu.enumm.PaymentStatus;
+import tourbooking.vietvivu.enumm.TourStatus;
+import tourbooking.vietvivu.repository.BookingRepository;
+import tourbooking.vietvivu.repository.CheckoutRepository;
+import tourbooking.vietvivu.repository.InvoiceRepository;
+import tourbooking.vietvivu.repository.OutboxMessageRepository;
+import tourbooking.vietvivu.repository.PaymentOrderRepository;
+import tourbooking.vietvivu.repository.SeatHoldRepository;
+import tourbooking.vietvivu.repository.SeatLedgerRepository;
+import tourbooking.vietvivu.repository.TourRepository;
+import tourbooking.vietvivu.service.hold.SeatHoldService;
+import tourbooking.vietvivu.service.inventory.SeatInventory;
+import tourbooking.vietvivu.service.inventory.SeatLedger;
+import tourbooking.vietvivu.service.inventory.StripedSeatCounter;
+import tourbooking.vietvivu.service.job.JobLeaseRunner;
+import tourbooking.vietvivu.service.outbox.OutboxService;
+import vn.payos.PayOS;
+import vn.payos.model.webhooks.Webhook;
+import vn.payos.model.webhooks.WebhookData;
+import vn.payos.service.blocking.webhooks.WebhooksService;
+
+/**
+ * Runs payment batches against H2 with the real seat holds and inventory. Holds are created already past
+ * their TTL and the expiry timers are pushed out, so a sweep expires them only when a test asks.
+ */
+@DataJpaTest(
+        properties = {
+            "spring.jpa.hibernate.ddl-auto=create-drop",
+            "spring.jpa.show-sql=false",
+            "spring.datasource.url=jdbc:h2:mem:webhook;MODE=PostgreSQL;LOCK_TIMEOUT=10000;DB_CLOSE_DELAY=-1",
+            "spring.datasource.driver-class-name=org.h2.Driver",
+            "spring.datasource.username=sa",
+            "spring.datasource.password=",
+            "booking.hold.ttl=-PT1M",
+            "booking.hold.tick-ms=100000000",
+            "booking.hold.sweep-interval-ms=100000000"
+        })
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({
+    PaymentWebhookService.class,
+    OutboxService.class,
+    SeatHoldService.class,
+    SeatInventory.class,
+    StripedSeatCounter.class,
+    SeatLedger.class,
+    JobLeaseRunner.class
+})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class PaymentWebhookServiceTest {
+
+    private static final long PRICE = 100_000;
+
+    @MockBean
+    PayOS payOS;
+
+    @Autowired
+    PaymentWebhookService paymentWebhookService;
+
+    @Autowired
+    SeatHoldService seatHoldService;
+
+    @Autowired
+    SeatInventory seatInventory;
+
+    @Autowired
+    TourRepository tourRepository;
+
+    @Autowired
+    BookingRepository bookingRepository;
+
+    @Autowired
+    PaymentOrderRepository paymentOrderRepository;
+
+    @Autowired
+    SeatHoldRepository seatHoldRepository;
+
+    @Autowired
+    SeatLedgerRepository seatLedgerRepository;
+
+    @Autowired
+    CheckoutRepository checkoutRepository;
+
+    @Autowired
+    InvoiceRepository invoiceRepository;
+
+    @Autowired
+    OutboxMessageRepository outboxMessageRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        outboxMessageRepository.deleteAll();
+        invoiceRepository.deleteAll();
+        checkoutRepository.deleteAll();
+        seatHoldRepository.deleteAll();
+        paymentOrderRepository.deleteAll();
+        bookingRepository.deleteAll();
+        seatLedgerRepository.deleteAll();
+        tourRepository.deleteAll();
+    }
+
+    @Test
+    void paysEachHeldBookingOnceAndIgnoresUnknownOrders() {
+        String tourId = saveTour(10);
+        String first = book(tourId, 1, BookingStatus.PENDING);
+        String second = book(tourId, 2, BookingStatus.PENDING);
+
+        int paid = paymentWebhookService.record(
+                List.of(paid(1, PRICE), paid(1, PRICE), paid(2, PRICE + 5_000), paid(99, PRICE)));
+
+        assertThat(paid).isEqualTo(2);
+        assertPaid(first);
+        assertPaid(second);
+        assertThat(checkoutRepository.count()).isEqualTo(2);
+        assertThat(invoiceRepository.count()).isEqualTo(2);
+        assertThat(outboxMessageRepository.count()).isEqualTo(2);
+        // The holds became sales: the seats stay taken
+        assertThat(seatHoldRepository.count()).isZero();
+        assertThat(quantity(tourId)).isEqualTo(6);
+    }
+
+    @Test
+    void underpaidOrderLeavesTheBookingUnpaid() {
+        String tourId = saveTour(10);
+        String booking = book(tourId, 1, BookingStatus.PENDING);
+
+        assertThat(paymentWebhookService.record(List.of(paid(1, PRICE - 1)))).isZero();
+
+        assertUnpaid(booking, BookingStatus.PENDING);
+        assertThat(seatHoldRepository.count()).isEqualTo(1);
+        assertThat(checkoutRepository.count()).isZero();
+    }
+
+    @Test
+    void alreadyPaidBookingIsSkipped() {
+        String tourId = saveTour(10);
+        String booking = book(tourId, 1, BookingStatus.PENDING);
+        paymentOrderRepository.save(order(2, booking));
+        assertThat(paymentWebhookService.record(List.of(paid(1, PRICE)))).isEqualTo(1);
+
+        // PayOS delivers again, and the booking's second order is paid too
+        assertThat(paymentWebhookService.record(List.of(paid(1, PRICE), paid(2, PRICE))))
+                .isZero();
+
+        assertPaid(booking);
+        assertThat(checkoutRepository.count()).isEqualTo(1);
+        assertThat(outboxMessageRepository.count()).isEqualTo(1);
+        assertThat(quantity(tourId)).isEqualTo(8);
+    }
+
+    @Test
+    void bookingCancelledByContactIsNotPaid() {
+        String tourId = saveTour(10);
+        String booking = book(tourId, 1, BookingStatus.CONFIRMED_CANCELLATION);
+
+        assertThat(paymentWebhookService.record(List.of(paid(1, PRICE)))).isZero();
+
+        assertUnpaid(booking, BookingStatus.CONFIRMED_CANCELLATION);
+        assertThat(checkoutRepository.count()).isZero();
+        assertThat(quantity(tourId)).isEqualTo(10);
+    }
+
+    @Test
+    void expiredHoldIsTakenAgainWhileSeatsAreLeft() {
+        String tourId = saveTour(4);
+        String late = book(tourId, 1, BookingStatus.PENDING);
+        String tooLate = book(tourId, 2, BookingStatus.PENDING);
+        seatHoldService.sweepExpired();
+        assertUnpaid(late, BookingStatus.CANCELLED);
+        assertThat(quantity(tourId)).isEqualTo(4);
+
+        // Someone else buys two of the four seats in the meantime
+        new TransactionTemplate(transactionManager)
+                .executeWithoutResult(status -> seatInventory.reserve(tourId, 2, null));
+
+        assertThat(paymentWebhookService.record(List.of(paid(1, PRICE)))).isEqualTo(1);
+        assertPaid(late);
+        assertThat(quantity(tourId)).isZero();
+
+        // Sold out now: the second late payment is skipped and its booking stays cancelled
+        assertThat(paymentWebhookService.record(List.of(paid(2, PRICE)))).isZero();
+        assertUnpaid(tooLate, BookingStatus.CANCELLED);
+        assertThat(quantity(tourId)).isZero();
+        assertThat(checkoutRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedBatchIsWrittenOneEventAtATime() throws Exception {
+        String tourId = saveTour(10);
+        String good = book(tourId, 1, BookingStatus.PENDING);
+        String bad = book(tourId, 2, BookingStatus.PENDING);
+        WebhooksService webhooks = mock(WebhooksService.class);
+        when(payOS.webhooks()).thenReturn(webhooks);
+        when(webhooks.verify(any())).thenAnswer(call -> ((Webhook) call.getArgument(0)).getData());
+
+        // The context started a writer already; stop it so both events are queued before the next one starts
+        paymentWebhookService.stop();
+        // Queued before the writer starts, so both land in one batch; the reference of the second does not fit
+        // its column and fails the batch insert
+        paymentWebhookService.accept(webhook(1, PRICE, "ref-1"));
+        paymentWebhookService.accept(webhook(2, PRICE, "x".repeat(300)));
+        paymentWebhookService.start();
+        paymentWebhookService.stop();
+
+        assertPaid(good);
+        assertUnpaid(bad, BookingStatus.PENDING);
+        assertThat(checkoutRepository.count()).isEqualTo(1);
+        // The failed batch gave its seat confirms back, so the bad booking is still held
+        assertThat(seatHoldRepository.findAll()).singleElement().satisfies(hold -> assertThat(hold.getBookingId())
+                .isEqualTo(bad));
+        assertThat(quantity(tourId)).isEqualTo(6);
+    }
+
+    private String saveTour(int seats) {
+        return tourRepository
+                .save(Tour.builder()
+                        .title("Flash sale")
+                        .initialQuantity(seats)
+                        .quantity(seats)
+                        .priceAdult((double) PRICE / 2)
+                        .priceChild((double) PRICE / 2)
+                        .duration("3 ngày 2 đêm")
+                        .destination("Đà Nẵng")
+                        .availability(true)
+                        .startDate(LocalDate.now().plusMonths(1))
+                        .tourStatus(TourStatus.OPEN_BOOKING)
+                        .build())
+                .getTourId();
+    }
+
+    /**
+     * A two-seat booking with one order; a pending one takes its seats and holds them as bookTour does
+     */
+    private String book(String tourId, long orderCode, BookingStatus status) {
+        return new TransactionTemplate(transactionManager).execute(tx -> {
+            Booking booking = bookingRepository.save(Booking.builder()
+                    .tour(tourRepository.findById(tourId).orElseThrow())
+                    .bookingDate(LocalDateTime.now())
+                    .numAdults(1)
+                    .numChildren(1)
+                    .totalPrice((double) PRICE)
+                    .bookingStatus(status)
+                    .paymentStatus(PaymentStatus.UNPAID)
+                    .build());
+            if (status == BookingStatus.PENDING) {
+                seatInventory.reserve(tourId, 2, booking.getBookingId());
+                seatHoldService.hold(booking, 2);
+            }
+            paymentOrderRepository.save(order(orderCode, booking.getBookingId()));
+            return booking.getBookingId();
+        });
+    }
+
+    private static PaymentOrder order(long orderCode, String bookingId) {
+        return PaymentOrder.builder()
+                .orderCode(orderCode)
+                .bookingId(bookingId)
+                .amount(PRICE)
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+
+    private static PaymentEvent paid(long orderCode, long amount) {
+        return new PaymentEvent(orderCode, amount, "ref-" + orderCode);
+    }
+
+    private static Webhook webhook(long orderCode, long amount, String reference) {
+        WebhookData data = new WebhookData();
+        data.setOrderCode(orderCode);
+        data.setAmount(amount);
+        data.setCode(PaymentWebhookService.PAID_CODE);
+        data.setReference(reference);
+        return new Webhook(PaymentWebhookService.PAID_CODE, "success", true, data, "signature");
+    }
+
+    private int quantity(String tourId) {
+        return tourRepository.findById(tourId).orElseThrow().getQuantity();
+    }
+
+    private void assertPaid(String bookingId) {
+        Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+        assertThat(booking.getPaymentStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(booking.getBookingStatus()).isEqualTo(BookingStatus.CONFIRMED);
+    }
+
+    private void assertUnpaid(String bookingId, BookingStatus status) {
+        Booking booking = bookingRepository.findById(bookingId).orElseThrow();
+        assertThat(booking.getPaymentStatus()).isEqualTo(PaymentStatus.UNPAID);
+        assertThat(booking.getBookingStatus()).isEqualTo(status);
+    }
+}
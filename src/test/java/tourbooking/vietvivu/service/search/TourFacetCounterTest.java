@@ -0,0 +1,80 @@
+package tourbooking.vietvivu.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import tourbooking.vietvivu.dto.response.FacetCount;
+import tourbooking.vietvivu.dto.response.TourFacetsResponse;
+
+/**
+ * Feeds tours with chosen failed-facet masks straight to the counter.
+ */
+class TourFacetCounterTest {
+
+    private static final LocalDate JUNE = LocalDate.of(2030, 6, 10);
+
+    @Test
+    void hitCountsInEveryDimension() {
+        TourFacetCounter counter = new TourFacetCounter();
+        counter.count(TourSearchEngineTest.tour("a", "A", "Huế", "", 2_500_000, 2, JUNE), "hue", 0);
+
+        TourFacetsResponse facets = counter.toResponse();
+        assertThat(counts(facets.getDestinations())).containsExactly("Huế=1");
+        assertThat(counts(facets.getPriceRanges()))
+                .containsExactly("0-2000000=0", "2000000-5000000=1", "5000000-10000000=0", "10000000+=0");
+        assertThat(counts(facets.getDurations())).containsExactly("2=1");
+        assertThat(counts(facets.getStartMonths())).containsExactly("2030-06=1");
+        // quantity 20 reaches every seat threshold
+        assertThat(counts(facets.getSeats())).containsExactly("1+=1", "5+=1", "10+=1", "20+=1");
+    }
+
+    @Test
+    void tourFailingOneFilterCountsOnlyInThatDimension() {
+        TourFacetCounter counter = new TourFacetCounter();
+        counter.count(
+                TourSearchEngineTest.tour("a", "A", "Huế", "", 2_500_000, 2, JUNE), "hue", TourFacetCounter.PRICE);
+
+        TourFacetsResponse facets = counter.toResponse();
+        assertThat(counts(facets.getPriceRanges())).contains("2000000-5000000=1");
+        assertThat(facets.getDestinations()).isEmpty();
+        assertThat(facets.getDurations()).isEmpty();
+        assertThat(facets.getStartMonths()).isEmpty();
+        assertThat(facets.getSeats())
+                .allSatisfy(facet -> assertThat(facet.getCount()).isZero());
+    }
+
+    @Test
+    void tourFailingTwoFiltersCountsNowhere() {
+        TourFacetCounter counter = new TourFacetCounter();
+        counter.count(
+                TourSearchEngineTest.tour("a", "A", "Huế", "", 2_500_000, 2, JUNE),
+                "hue",
+                TourFacetCounter.PRICE | TourFacetCounter.DURATION);
+
+        TourFacetsResponse facets = counter.toResponse();
+        assertThat(facets.getDestinations()).isEmpty();
+        assertThat(facets.getDurations()).isEmpty();
+        assertThat(facets.getPriceRanges())
+                .allSatisfy(facet -> assertThat(facet.getCount()).isZero());
+    }
+
+    @Test
+    void destinationsShareAFoldedBucketAndSortByCount() {
+        TourFacetCounter counter = new TourFacetCounter();
+        counter.count(TourSearchEngineTest.tour("a", "A", "Đà Nẵng", "", 1, 1, JUNE), "da nang", 0);
+        counter.count(TourSearchEngineTest.tour("b", "B", "Da Nang ", "", 1, 1, JUNE), "da nang", 0);
+        counter.count(TourSearchEngineTest.tour("c", "C", "Huế", "", 1, 1, JUNE), "hue", TourFacetCounter.DESTINATION);
+
+        assertThat(counts(counter.toResponse().getDestinations())).containsExactly("Đà Nẵng=2", "Huế=1");
+    }
+
+    private static List<String> counts(List<FacetCount> facets) {
+        return facets.stream()
+                .map(facet -> facet.getValue() + "=" + facet.getCount())
+                .toList();
+    }
+}
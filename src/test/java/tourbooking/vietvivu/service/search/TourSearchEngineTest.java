@@ -0,0 +1,188 @@
+package tourbooking.vietvivu.service.search;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import tourbooking.vietvivu.dto.request.TourSearchRequest;
+import tourbooking.vietvivu.dto.response.FacetCount;
+import tourbooking.vietvivu.dto.response.TourFacetsResponse;
+import tourbooking.vietvivu.enumm.TourStatus;
+import tourbooking.vietvivu.service.catalog.TourCursor;
+import tourbooking.vietvivu.service.catalog.TourSnapshot;
+
+/**
+ * Indexes a handful of tours and checks folding, keyword matching, ranking, facets and keyset slices.
+ */
+class TourSearchEngineTest {
+
+    private static final LocalDate START = LocalDate.of(2030, 6, 1);
+
+    private final TourSearchEngine engine = new TourSearchEngine();
+
+    @Test
+    void diacriticsAreFoldedOnBothSides() {
+        index(tour("dn", "Khám phá Đà Nẵng", "Đà Nẵng", "Bà Nà Hills", 1_500_000, 3, START));
+        index(tour("hn", "Phố cổ Hà Nội", "Hà Nội", "Hồ Gươm", 1_500_000, 3, START));
+
+        assertThat(TextFolding.fold("Đà Nẵng")).isEqualTo("da nang");
+        assertThat(ids(search(TourSearchRequest.builder().keyword("da nang").build())))
+                .containsExactly("dn");
+        assertThat(ids(search(TourSearchRequest.builder().keyword("ĐÀ NẴNG").build())))
+                .containsExactly("dn");
+        assertThat(ids(search(TourSearchRequest.builder().destination("da nang").build())))
+                .containsExactly("dn");
+    }
+
+    @Test
+    void everyKeywordMustMatchAndOnlyTheLastIsAPrefix() {
+        index(tour("halong", "Vịnh Hạ Long", "Quảng Ninh", "Du thuyền", 3_000_000, 2, START));
+        index(tour("hanoi", "Hà Nội về đêm", "Hà Nội", "Phố cổ", 1_000_000, 1, START));
+
+        // "ha" matches both tours, "lo" only "long" as a prefix
+        assertThat(ids(search(TourSearchRequest.builder().keyword("ha lo").build())))
+                .containsExactly("halong");
+        assertThat(ids(search(TourSearchRequest.builder().keyword("ha").build())))
+                .containsExactlyInAnyOrder("halong", "hanoi");
+        // Earlier keywords must match a whole term
+        assertThat(search(TourSearchRequest.builder().keyword("lo ha").build())).isEmpty();
+        assertThat(search(TourSearchRequest.builder().keyword("ha long sapa").build()))
+                .isEmpty();
+    }
+
+    @Test
+    void bm25RanksTitleAboveDestinationAboveDescription() {
+        index(tour("description", "Trekking", "Lào Cai", "Sapa", 2_000_000, 2, START.plusDays(2)));
+        index(tour("destination", "Trekking", "Sapa", "Núi", 2_000_000, 2, START.plusDays(1)));
+        index(tour("title", "Sapa", "Lào Cai", "Núi", 2_000_000, 2, START));
+        index(tour("other", "Biển", "Nha Trang", "Lặn", 2_000_000, 2, START));
+
+        assertThat(ids(search(TourSearchRequest.builder().keyword("sapa").build())))
+                .containsExactly("title", "destination", "description");
+    }
+
+    @Test
+    void facetsCountToursFailingOnlyThatFacet() {
+        index(tour("dn-cheap", "Biển", "Đà Nẵng", "", 1_500_000, 3, START));
+        index(tour("dn-dear", "Biển", "Đà Nẵng", "", 6_000_000, 3, START));
+        index(tour("hn-cheap", "Phố", "Hà Nội", "", 1_500_000, 3, START));
+        index(tour("hn-dear", "Phố", "Hà Nội", "", 6_000_000, 4, START));
+
+        TourSearchRequest request = TourSearchRequest.builder()
+                .destination("Da Nang")
+                .maxPrice(2_000_000.0)
+                .build();
+        TourSearchEngine.FacetedResult result = engine.searchWithFacets(request, false, PageRequest.of(0, 10));
+
+        assertThat(ids(result.page().getContent())).containsExactly("dn-cheap");
+        TourFacetsResponse facets = result.facets();
+        // Each dimension ignores its own filter but keeps the other one
+        assertThat(counts(facets.getDestinations())).containsExactlyInAnyOrder("Đà Nẵng=1", "Hà Nội=1");
+        assertThat(counts(facets.getPriceRanges()))
+                .containsExactly("0-2000000=1", "2000000-5000000=0", "5000000-10000000=1", "10000000+=0");
+        // hn-dear fails two filters and counts nowhere
+        assertThat(counts(facets.getDurations())).containsExactly("3=1");
+    }
+
+    @Test
+    void keywordSlicesNeitherSkipNorRepeat() {
+        // Equal texts tie on score, so the start date and id have to break the ties consistently
+        for (int i = 0; i < 7; i++) {
+            index(tour("tie-" + i, "Tour Phú Quốc", "Kiên Giang", "Biển", 3_000_000, 3, START.plusDays(i % 3)));
+        }
+        index(tour("best", "Phú Quốc Phú Quốc", "Phú Quốc", "Phú Quốc", 3_000_000, 3, START));
+        index(tour("weak", "Nghỉ dưỡng", "Kiên Giang", "Gần Phú Quốc và nhiều nơi khác nữa", 3_000_000, 3, START));
+        index(tour("miss", "Côn Đảo", "Bà Rịa", "Biển", 3_000_000, 3, START));
+        TourSearchRequest request =
+                TourSearchRequest.builder().keyword("phu quoc").build();
+        List<String> expected = ids(search(request));
+        assertThat(expected).hasSize(9).startsWith("best").endsWith("weak");
+
+        for (int limit = 1; limit <= 4; limit++) {
+            List<String> paged = new ArrayList<>();
+            TourCursor after = null;
+            do {
+                TourSearchEngine.CursorSlice slice = engine.searchAfter(request, false, after, limit, true);
+                assertThat(slice.total()).isEqualTo(9);
+                assertThat(slice.items()).hasSizeLessThanOrEqualTo(limit);
+                paged.addAll(ids(slice.items()));
+                // Round-trip the cursor the way clients do
+                after = slice.next() == null
+                        ? null
+                        : TourCursor.decode(slice.next().encode());
+            } while (after != null);
+            assertThat(paged).as("slices of %d", limit).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void browsingSlicesFollowStartDateOrder() {
+        for (int i = 0; i < 5; i++) {
+            index(tour("t" + i, "Tour " + i, "Huế", "", 1_000_000, 1, START.plusDays(i)));
+        }
+        TourSearchRequest request = TourSearchRequest.builder().build();
+
+        List<String> paged = new ArrayList<>();
+        TourCursor after = null;
+        do {
+            TourSearchEngine.CursorSlice slice = engine.searchAfter(request, false, after, 2, false);
+            paged.addAll(ids(slice.items()));
+            after = slice.next();
+        } while (after != null);
+
+        assertThat(paged).containsExactly("t4", "t3", "t2", "t1", "t0");
+    }
+
+    private void index(TourSnapshot tour) {
+        engine.onSnapshotChanged(tour.tourId(), null, tour);
+    }
+
+    private List<TourSnapshot> search(TourSearchRequest request) {
+        return engine.search(request, false, PageRequest.of(0, 100)).getContent();
+    }
+
+    private static List<String> ids(List<TourSnapshot> tours) {
+        return tours.stream().map(TourSnapshot::tourId).toList();
+    }
+
+    private static List<String> counts(List<FacetCount> facets) {
+        return facets.stream()
+                .map(facet -> facet.getValue() + "=" + facet.getCount())
+                .toList();
+    }
+
+    static TourSnapshot tour(
+            String id,
+            String title,
+            String destination,
+            String description,
+            double price,
+            int days,
+            LocalDate startDate) {
+        return new TourSnapshot(
+                id,
+                title,
+                description,
+                20,
+                20,
+                price,
+                price / 2,
+                days + " ngày",
+                days,
+                destination,
+                true,
+                startDate,
+                startDate.plusDays(days - 1),
+                TourStatus.OPEN_BOOKING,
+                List.of(),
+                List.of(),
+                0,
+                0,
+                null);
+    }
+}